@@ -0,0 +1,11 @@
+#!/bin/bash
+# Run the JMH benchmarks and keep a JSON result file per run for regression tracking.
+# Extra arguments go to JMH, e.g. ./run.sh LeaderboardBenchmark -p results=100000
+
+if [ ! -f "target/benchmarks.jar" ]; then
+    echo "benchmarks.jar not found! Run 'mvn -B install -DskipTests' in the project root, then 'mvn -B package' here"
+    exit 1
+fi
+
+mkdir -p results
+java $JAVA_OPTS -jar target/benchmarks.jar -rf json -rff "results/jmh-$(date +%Y%m%d-%H%M%S).json" "$@"
@@ -0,0 +1,83 @@
+package main.bench;
+
+import main.controller.LeaderboardManager;
+import main.model.QuizResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LeaderboardManager with 1k-100k stored results (ten per user). Reads return the
+ * cached ranked snapshot, so getLeaderboard, getTopTen and getUserRank time a read
+ * with no writes in between; addResult times a write alone. The write-then-read
+ * benchmarks add a result and then read, so each read re-ranks every user: that is
+ * what a board that changes with every answer costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LeaderboardBenchmark {
+
+    private static final int RESULTS_PER_USER = 10;
+
+    @Param({"1000", "10000", "100000"})
+    public int results;
+
+    private LeaderboardManager leaderboard;
+    private String someUser;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        leaderboard = new LeaderboardManager();
+        random = new Random(7);
+        int users = Math.max(1, results / RESULTS_PER_USER);
+        for (int i = 0; i < results; i++) {
+            String user = "student" + (i % users);
+            leaderboard.addResult(user, randomResult(user));
+        }
+        someUser = "student" + (users / 2);
+    }
+
+    private QuizResult randomResult(String user) {
+        int correct = random.nextInt(21);
+        return new QuizResult("quiz-" + random.nextInt(50), user, 20, correct, 40, correct * 2);
+    }
+
+    @Benchmark
+    public List<LeaderboardManager.LeaderboardEntry> getLeaderboard() {
+        return leaderboard.getLeaderboard();
+    }
+
+    @Benchmark
+    public List<LeaderboardManager.LeaderboardEntry> getTopTen() {
+        return leaderboard.getTopEntries(10);
+    }
+
+    @Benchmark
+    public int getUserRank() {
+        return leaderboard.getUserRank(someUser);
+    }
+
+    @Benchmark
+    public void addResult() {
+        leaderboard.addResult(someUser, randomResult(someUser));
+    }
+
+    @Benchmark
+    public List<LeaderboardManager.LeaderboardEntry> addResultThenTopTen() {
+        leaderboard.addResult(someUser, randomResult(someUser));
+        return leaderboard.getTopEntries(10);
+    }
+
+    @Benchmark
+    public int addResultThenUserRank() {
+        leaderboard.addResult(someUser, randomResult(someUser));
+        return leaderboard.getUserRank(someUser);
+    }
+}
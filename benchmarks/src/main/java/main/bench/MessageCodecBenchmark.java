@@ -0,0 +1,62 @@
+package main.bench;
+
+import main.model.Message;
+import main.model.QuizAnswer;
+import main.network.PeerConnection;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wire codec cost per message: PeerConnection.encode / decode, i.e. one standalone
+ * ObjectOutputStream per Message, for a chat line and a 20-question quiz answer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    private Message chat;
+    private Message quizAnswer;
+    private byte[] chatBytes;
+    private byte[] quizAnswerBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        chat = new Message("student42", "all", "Has anyone finished question 3?", Message.MessageType.TEXT);
+
+        QuizAnswer answer = new QuizAnswer("quiz-1", "student42");
+        for (int q = 0; q < 20; q++) {
+            answer.addAnswer(q, q % 4);
+        }
+        quizAnswer = new Message("student42", "all", "", Message.MessageType.QUIZ_ANSWER);
+        quizAnswer.setQuizAnswer(answer);
+
+        chatBytes = PeerConnection.encode(chat);
+        quizAnswerBytes = PeerConnection.encode(quizAnswer);
+    }
+
+    @Benchmark
+    public byte[] encodeChat() throws IOException {
+        return PeerConnection.encode(chat);
+    }
+
+    @Benchmark
+    public Object decodeChat() throws Exception {
+        return PeerConnection.decode(chatBytes);
+    }
+
+    @Benchmark
+    public byte[] encodeQuizAnswer() throws IOException {
+        return PeerConnection.encode(quizAnswer);
+    }
+
+    @Benchmark
+    public Object decodeQuizAnswer() throws Exception {
+        return PeerConnection.decode(quizAnswerBytes);
+    }
+}
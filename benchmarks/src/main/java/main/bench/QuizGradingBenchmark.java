@@ -0,0 +1,43 @@
+package main.bench;
+
+import main.model.Quiz;
+import main.model.QuizAnswer;
+import main.model.QuizQuestion;
+import main.model.QuizResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Quiz.gradeQuiz for one submission at different quiz lengths
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuizGradingBenchmark {
+
+    @Param({"10", "50", "200"})
+    public int questions;
+
+    private Quiz quiz;
+    private QuizAnswer answer;
+
+    @Setup
+    public void setUp() {
+        quiz = new Quiz("Benchmark quiz", 600);
+        answer = new QuizAnswer(quiz.getQuizId(), "student42");
+        for (int q = 0; q < questions; q++) {
+            quiz.addQuestion(new QuizQuestion("Question " + q, Arrays.asList("A", "B", "C", "D"), q % 4, 1 + q % 3));
+            answer.addAnswer(q, (q * 7) % 4);
+        }
+    }
+
+    @Benchmark
+    public QuizResult gradeQuiz() {
+        return quiz.gradeQuiz(answer);
+    }
+}
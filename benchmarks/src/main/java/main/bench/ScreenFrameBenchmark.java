@@ -0,0 +1,52 @@
+package main.bench;
+
+import main.model.ScreenFrame;
+import main.network.UDPBroadcaster;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Screen-share frame pipeline without the Robot capture: scale + JPEG of a
+ * 1920x1080 desktop-like image, and serialization of the resulting ScreenFrame.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ScreenFrameBenchmark {
+
+    private BufferedImage screenshot;
+    private ScreenFrame frame;
+
+    @Setup
+    public void setUp() throws IOException {
+        screenshot = new BufferedImage(1920, 1080, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = screenshot.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 1920, 1080);
+        g.setColor(Color.DARK_GRAY);
+        for (int y = 40; y < 1080; y += 24) {
+            // Lines of "text" so the JPEG encoder has realistic detail to compress
+            g.fillRect(80, y, 400 + (y * 37) % 1200, 12);
+        }
+        g.dispose();
+        frame = new ScreenFrame(UDPBroadcaster.encodeImage(screenshot, 640, 480), 640, 480, "admin");
+    }
+
+    @Benchmark
+    public byte[] encodeImage() throws IOException {
+        return UDPBroadcaster.encodeImage(screenshot, 640, 480);
+    }
+
+    @Benchmark
+    public byte[] encodeFrame() throws IOException {
+        return UDPBroadcaster.encodeFrame(frame);
+    }
+}
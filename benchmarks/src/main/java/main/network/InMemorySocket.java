@@ -0,0 +1,88 @@
+package main.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Socket stand-in for benchmarks: writes are counted and discarded, reads block
+ * until the socket is closed. Lets a PeerConnection run its real framing and
+ * writer thread without the kernel in the measurement.
+ */
+class InMemorySocket extends Socket {
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final Object closeLock = new Object();
+    private volatile boolean closed;
+
+    @Override
+    public InputStream getInputStream() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                synchronized (closeLock) {
+                    while (!closed) {
+                        try {
+                            closeLock.wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                    }
+                }
+                return -1;
+            }
+        };
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+                bytesWritten.incrementAndGet();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                bytesWritten.addAndGet(len);
+            }
+        };
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+        return InetAddress.getLoopbackAddress();
+    }
+
+    @Override
+    public void setKeepAlive(boolean on) {
+    }
+
+    @Override
+    public void setSoTimeout(int timeout) {
+    }
+
+    @Override
+    public void setTcpNoDelay(boolean on) {
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        synchronized (closeLock) {
+            closed = true;
+            closeLock.notifyAll();
+        }
+    }
+
+    long getBytesWritten() {
+        return bytesWritten.get();
+    }
+}
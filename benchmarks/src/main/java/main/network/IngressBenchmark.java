@@ -0,0 +1,85 @@
+package main.network;
+
+import main.model.Message;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server ingress handoff (reader thread to pipeline worker) with the
+ * ArrayBlockingQueue shards against the preallocated ring, four readers at once.
+ *
+ * handoff: submit one chat message and wait until a worker has handled it, so
+ * the sampled time is the reader-to-handler latency including worker wake-up.
+ * burst: readers submit as fast as they can ("everyone types yes"), bounded by
+ * the shards' backpressure. Add -prof gc to compare allocation per message.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class IngressBenchmark {
+
+    @Param({"QUEUE", "RING"})
+    public MessagePipeline.Ingress ingress;
+
+    @Param({"4"})
+    public int workers;
+
+    private final Map<String, AtomicLong> handled = new ConcurrentHashMap<>();
+    private final AtomicInteger readers = new AtomicInteger();
+    private MessagePipeline pipeline;
+
+    @Setup
+    public void setUp() {
+        pipeline = new MessagePipeline("Bench", ExecutionMode.PLATFORM, ingress,
+            (message, connection) -> handled.get(message.getSender()).incrementAndGet())
+            .stage("messages", workers, 1024);
+        pipeline.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pipeline.stop();
+    }
+
+    @State(Scope.Thread)
+    public static class Reader {
+        Message message;
+        AtomicLong handled;
+        long submitted;
+
+        @Setup
+        public void setUp(IngressBenchmark bench) {
+            String sender = "student" + bench.readers.getAndIncrement();
+            message = new Message(sender, "all", "yes", Message.MessageType.TEXT);
+            handled = new AtomicLong();
+            bench.handled.put(sender, handled);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long handoff(Reader reader) {
+        pipeline.submit(reader.message, null);
+        long target = ++reader.submitted;
+        while (reader.handled.get() < target) {
+            Thread.yield(); // let the worker run even on a machine with few cores
+        }
+        return target;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void burst(Reader reader) {
+        pipeline.submit(reader.message, null);
+        reader.submitted++;
+    }
+}
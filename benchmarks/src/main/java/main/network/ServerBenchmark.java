@@ -0,0 +1,96 @@
+package main.network;
+
+import main.model.FileTransfer;
+import main.model.Message;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server hot paths against N in-memory connections: global broadcast fan-out
+ * (encode once, enqueue per connection) and P2P routing to a named recipient.
+ * The connections' writer threads drain into counting sinks in the background.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServerBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int connections;
+
+    private Server server;
+    private List<PeerConnection> peers;
+    private PrintStream originalOut;
+    private Message chat;
+    private Message direct;
+    private PeerConnection sender;
+
+    @Setup
+    public void setUp() {
+        // The server logs every forwarded message; keep that out of the measurement
+        originalOut = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+
+        server = new Server(0, new SilentHandler(), "admin");
+        peers = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            PeerConnection peer = new PeerConnection(new InMemorySocket(), new SilentHandler(), "admin");
+            server.attach(peer, "student" + i);
+            peers.add(peer);
+        }
+        sender = peers.get(0);
+        chat = new Message("student0", "all", "Has anyone finished question 3?", Message.MessageType.TEXT);
+        // Worst case for a linear lookup: the most recently attached user
+        direct = new Message("student0", "student" + (connections - 1), "see you in the lab",
+            Message.MessageType.PEER_TO_PEER);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (PeerConnection peer : peers) {
+            peer.close();
+        }
+        server.stop();
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public void broadcastFanOut() {
+        server.broadcast(chat);
+    }
+
+    @Benchmark
+    public void p2pRouting() {
+        server.handleClientMessage(direct, sender);
+    }
+
+    private static class SilentHandler implements MessageHandler {
+        @Override
+        public void onMessageReceived(Message message, PeerConnection connection) {
+        }
+
+        @Override
+        public void onFileReceived(FileTransfer fileTransfer, PeerConnection connection) {
+        }
+
+        @Override
+        public void onServerStatus(String status) {
+        }
+
+        @Override
+        public void onConnectionLost(PeerConnection connection) {
+        }
+    }
+}
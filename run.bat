@@ -13,5 +13,5 @@ if not exist target\StudyConnect-1.0.0.jar (
 )
 
 REM Run StudyConnect P2P Application
-java -cp "target\StudyConnect-1.0.0.jar;target\lib\*" main.StudyConnectMain
+java %JAVA_OPTS% -cp "target\StudyConnect-1.0.0.jar;target\lib\*" main.StudyConnectMain
 pause
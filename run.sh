@@ -13,5 +13,6 @@ fi
 
 #!/bin/bash
 # Run StudyConnect P2P Application
+# Extra JVM flags can be passed via JAVA_OPTS, e.g. JAVA_OPTS=-Dstudyconnect.threads=virtual
 
-java -cp "target/StudyConnect-1.0.0.jar:target/lib/*" main.StudyConnectMain
+java $JAVA_OPTS -cp "target/StudyConnect-1.0.0.jar:target/lib/*" main.StudyConnectMain
@@ -0,0 +1,91 @@
+package main;
+
+import main.log.Log;
+import main.model.FileTransfer;
+import main.model.Message;
+import main.network.MessageHandler;
+import main.network.PeerConnection;
+import main.network.Server;
+import main.util.NetworkConstants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Headless entry point for running a StudyConnect server without the Swing UI.
+ *
+ * Usage: java -cp ... main.ServerMain [--port 8888] [--host 127.0.0.1]
+ *        [--peers host:port,host:port] [--cluster-secret secret]
+ *        [--max-connections 50] [--max-queued 1000]
+ *        [--jfr server.jfr]
+ *
+ * With --peers the server joins a cluster: start one process per port and list the
+ * other nodes, e.g.
+ *   main.ServerMain --port 9001 --peers 127.0.0.1:9002 --cluster-secret s3cret
+ *   main.ServerMain --port 9002 --peers 127.0.0.1:9001 --cluster-secret s3cret
+ * Nodes only link with peers that know the same secret; it can also be given as
+ * -Dstudyconnect.cluster.secret so it doesn't show up in the process list.
+ *
+ * --jfr keeps a continuous flight recording (bundled studyconnect.jfc profile) and
+ * writes it to the given file on shutdown.
+ */
+public class ServerMain {
+
+    public static void main(String[] args) throws InterruptedException {
+        int port = NetworkConstants.DEFAULT_PORT;
+        String host = "127.0.0.1";
+        List<String> peers = new ArrayList<>();
+
+        for (int i = 0; i < args.length - 1; i += 2) {
+            switch (args[i]) {
+                case "--port": port = Integer.parseInt(args[i + 1]); break;
+                case "--host": host = args[i + 1]; break;
+                case "--peers": peers.addAll(Arrays.asList(args[i + 1].split(","))); break;
+                case "--cluster-secret": System.setProperty("studyconnect.cluster.secret", args[i + 1]); break;
+                case "--max-connections": System.setProperty("studyconnect.maxConnections", args[i + 1]); break;
+                case "--max-queued": System.setProperty("studyconnect.maxQueued", args[i + 1]); break;
+                case "--jfr": System.setProperty("studyconnect.jfr", args[i + 1]); break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(1);
+            }
+        }
+
+        Server server = new Server(port, new ConsoleHandler(), "admin");
+        if (!peers.isEmpty()) {
+            server.enableCluster(host + ":" + port, peers);
+        }
+        server.start();
+
+        CountDownLatch shutdown = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            shutdown.countDown();
+        }, "ServerShutdown"));
+        shutdown.await();
+    }
+
+    /**
+     * Prints server status lines; the headless server has no dashboard to update
+     */
+    private static class ConsoleHandler implements MessageHandler {
+        @Override
+        public void onMessageReceived(Message message, PeerConnection connection) {
+        }
+
+        @Override
+        public void onFileReceived(FileTransfer fileTransfer, PeerConnection connection) {
+        }
+
+        @Override
+        public void onServerStatus(String status) {
+            Log.get("SERVER").info(status);
+        }
+
+        @Override
+        public void onConnectionLost(PeerConnection connection) {
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package main.controller;
+
+import main.controller.LeaderboardManager.LeaderboardEntry;
+import main.model.QuizResult;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Ranked leaderboard kept up to date one result at a time.
+ *
+ * Each user's aggregate (sum of percentages, quiz count, total points) lives in a
+ * node of an order-statistics treap sorted best-first, with subtree sizes for
+ * ranking. Recording a result re-positions that one user in O(log n); rank-of-user
+ * is O(log n) and top-K is O(log n + K), so nothing is re-sorted per answer.
+ * Ties are broken by username, so the order is stable.
+ *
+ * Not thread-safe; callers synchronize.
+ */
+public class LeaderboardIndex {
+    /** Highest average percentage first (LeaderboardManager) */
+    public static final Comparator<LeaderboardEntry> BY_AVERAGE_SCORE =
+        (a, b) -> Double.compare(b.getAverageScore(), a.getAverageScore());
+
+    /** Most points first (live quiz leaderboard) */
+    public static final Comparator<LeaderboardEntry> BY_TOTAL_SCORE =
+        (a, b) -> Integer.compare(b.getTotalScore(), a.getTotalScore());
+
+    private final Comparator<LeaderboardEntry> order;
+    private final Map<String, Node> users;
+    private Node root;
+
+    public LeaderboardIndex() {
+        this(BY_AVERAGE_SCORE);
+    }
+
+    /**
+     * @param order Ranking, best first; ties fall back to username
+     */
+    public LeaderboardIndex(Comparator<LeaderboardEntry> order) {
+        this.order = order.thenComparing(LeaderboardEntry::getUsername);
+        this.users = new HashMap<>();
+    }
+
+    /**
+     * Add a result to the user's aggregate
+     * @return The user's updated entry
+     */
+    public LeaderboardEntry add(String username, QuizResult result) {
+        Node node = users.get(username);
+        if (node == null) {
+            return insert(username, result.getPercentage(), 1, result.getEarnedPoints());
+        }
+        root = remove(root, node.entry);
+        node.percentageSum += result.getPercentage();
+        node.count++;
+        node.points += result.getEarnedPoints();
+        return reinsert(node);
+    }
+
+    /**
+     * Replace the user's aggregate with this one result (e.g. the current quiz only)
+     * @return The user's updated entry
+     */
+    public LeaderboardEntry put(String username, QuizResult result) {
+        return put(username, result.getPercentage(), result.getEarnedPoints());
+    }
+
+    /**
+     * Replace the user's aggregate with a single score (e.g. one received from the host)
+     * @return The user's updated entry
+     */
+    public LeaderboardEntry put(String username, double percentage, int points) {
+        Node node = users.get(username);
+        if (node == null) {
+            return insert(username, percentage, 1, points);
+        }
+        root = remove(root, node.entry);
+        node.percentageSum = percentage;
+        node.count = 1;
+        node.points = points;
+        return reinsert(node);
+    }
+
+    /**
+     * @return true if the user was ranked
+     */
+    public boolean remove(String username) {
+        Node node = users.remove(username);
+        if (node == null) {
+            return false;
+        }
+        root = remove(root, node.entry);
+        return true;
+    }
+
+    /**
+     * The user's current entry, or null if they have no results
+     */
+    public LeaderboardEntry get(String username) {
+        Node node = users.get(username);
+        return node == null ? null : node.entry;
+    }
+
+    /**
+     * @return Rank (1-based) or -1 if the user has no results
+     */
+    public int rank(String username) {
+        Node node = users.get(username);
+        if (node == null) {
+            return -1;
+        }
+        int rank = 0;
+        Node current = root;
+        while (current != null) {
+            int c = order.compare(node.entry, current.entry);
+            if (c < 0) {
+                current = current.left;
+            } else {
+                rank += size(current.left) + 1;
+                if (c == 0) {
+                    return rank;
+                }
+                current = current.right;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The entry at a rank (1-based), or null if out of range
+     */
+    public LeaderboardEntry entryAt(int rank) {
+        int index = rank - 1;
+        if (index < 0 || index >= size(root)) {
+            return null;
+        }
+        Node current = root;
+        while (true) {
+            int leftSize = size(current.left);
+            if (index < leftSize) {
+                current = current.left;
+            } else if (index == leftSize) {
+                return current.entry;
+            } else {
+                index -= leftSize + 1;
+                current = current.right;
+            }
+        }
+    }
+
+    /**
+     * The best k entries, best first
+     */
+    public List<LeaderboardEntry> top(int k) {
+        int count = Math.max(0, Math.min(k, size(root)));
+        List<LeaderboardEntry> top = new ArrayList<>(count);
+        Deque<Node> path = new ArrayDeque<>();
+        Node current = root;
+        while (top.size() < count) {
+            while (current != null) {
+                path.push(current);
+                current = current.left;
+            }
+            Node next = path.pop();
+            top.add(next.entry);
+            current = next.right;
+        }
+        return top;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public void clear() {
+        users.clear();
+        root = null;
+    }
+
+    private LeaderboardEntry insert(String username, double percentageSum, int count, int points) {
+        Node node = new Node(username, ThreadLocalRandom.current().nextInt());
+        node.percentageSum = percentageSum;
+        node.count = count;
+        node.points = points;
+        users.put(username, node);
+        return reinsert(node);
+    }
+
+    /**
+     * Rebuild the node's entry from its aggregate and put it back in the tree
+     */
+    private LeaderboardEntry reinsert(Node node) {
+        node.entry = new LeaderboardEntry(node.username, node.percentageSum / node.count, node.count, node.points);
+        node.left = null;
+        node.right = null;
+        node.size = 1;
+        root = insert(root, node);
+        return node.entry;
+    }
+
+    private Node insert(Node tree, Node node) {
+        if (tree == null) {
+            return node;
+        }
+        if (order.compare(node.entry, tree.entry) < 0) {
+            tree.left = insert(tree.left, node);
+            if (tree.left.priority > tree.priority) {
+                tree = rotateRight(tree);
+            }
+        } else {
+            tree.right = insert(tree.right, node);
+            if (tree.right.priority > tree.priority) {
+                tree = rotateLeft(tree);
+            }
+        }
+        update(tree);
+        return tree;
+    }
+
+    private Node remove(Node tree, LeaderboardEntry entry) {
+        if (tree == null) {
+            return null;
+        }
+        int c = order.compare(entry, tree.entry);
+        if (c < 0) {
+            tree.left = remove(tree.left, entry);
+        } else if (c > 0) {
+            tree.right = remove(tree.right, entry);
+        } else {
+            return merge(tree.left, tree.right);
+        }
+        update(tree);
+        return tree;
+    }
+
+    /**
+     * Join two treaps where every entry in a ranks before every entry in b
+     */
+    private Node merge(Node a, Node b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        update(b);
+        return b;
+    }
+
+    private static Node rotateRight(Node tree) {
+        Node left = tree.left;
+        tree.left = left.right;
+        left.right = tree;
+        update(tree);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node tree) {
+        Node right = tree.right;
+        tree.right = right.left;
+        right.left = tree;
+        update(tree);
+        update(right);
+        return right;
+    }
+
+    private static void update(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node {
+        final String username;
+        final int priority;
+        double percentageSum;
+        int count;
+        int points;
+        LeaderboardEntry entry;
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(String username, int priority) {
+            this.username = username;
+            this.priority = priority;
+        }
+    }
+}
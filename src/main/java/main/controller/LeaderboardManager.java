@@ -3,17 +3,35 @@ package main.controller;
 import main.model.QuizResult;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Manager for leaderboard and scoring
  * Follows Single Responsibility Principle
+ *
+ * Thread-safe: results arrive on network threads while the EDT renders. Each
+ * user's results and running totals are an immutable UserResults, replaced
+ * atomically in a ConcurrentHashMap, so concurrent writers only contend when they
+ * hit the same map bin and no result is lost. Every write bumps a version.
+ * Readers get an immutable, ranked Snapshot: the first read after a change sorts
+ * the users' totals into a new one (O(n log n), on the reader's thread) and
+ * publishes it; later reads at the same version reuse it. Readers never take a
+ * lock, so rendering the board never holds up incoming results.
  */
 public class LeaderboardManager {
-    private final Map<String, List<QuizResult>> userResults;
+    private static final Comparator<LeaderboardEntry> ORDER =
+        LeaderboardIndex.BY_AVERAGE_SCORE.thenComparing(LeaderboardEntry::getUsername);
+    
+    private final ConcurrentHashMap<String, UserResults> userResults;
+    private final AtomicLong version;
+    private final AtomicReference<Snapshot> snapshot;
     
     public LeaderboardManager() {
-        this.userResults = new HashMap<>();
+        this.userResults = new ConcurrentHashMap<>();
+        this.version = new AtomicLong();
+        this.snapshot = new AtomicReference<>(new Snapshot(0, Collections.emptyList()));
     }
     
     /**
@@ -22,42 +40,37 @@ public class LeaderboardManager {
      * @param result The quiz result
      */
     public void addResult(String username, QuizResult result) {
-        userResults.computeIfAbsent(username, k -> new ArrayList<>()).add(result);
+        userResults.compute(username, (user, current) ->
+            current == null ? new UserResults(user, result) : current.with(result));
+        version.incrementAndGet();
     }
     
     /**
      * Get all results for a user
      * @param username The username
-     * @return List of quiz results
+     * @return Unmodifiable list of quiz results
      */
     public List<QuizResult> getUserResults(String username) {
-        return userResults.getOrDefault(username, new ArrayList<>());
+        UserResults user = userResults.get(username);
+        return user == null ? Collections.emptyList() : user.results;
     }
     
     /**
      * Get leaderboard sorted by average score
-     * @return List of entries [username, averageScore]
+     * @return Unmodifiable list of entries, best first
      */
     public List<LeaderboardEntry> getLeaderboard() {
-        return userResults.entrySet().stream()
-            .map(entry -> {
-                String username = entry.getKey();
-                List<QuizResult> results = entry.getValue();
-                
-                double avgScore = results.stream()
-                    .mapToDouble(QuizResult::getPercentage)
-                    .average()
-                    .orElse(0.0);
-                
-                int totalQuizzes = results.size();
-                int totalScore = results.stream()
-                    .mapToInt(QuizResult::getEarnedPoints)
-                    .sum();
-                
-                return new LeaderboardEntry(username, avgScore, totalQuizzes, totalScore);
-            })
-            .sorted(Comparator.comparingDouble(LeaderboardEntry::getAverageScore).reversed())
-            .collect(Collectors.toList());
+        return currentSnapshot().ranked;
+    }
+    
+    /**
+     * Get the best entries of the leaderboard
+     * @param count Number of entries
+     * @return Up to count entries, best first
+     */
+    public List<LeaderboardEntry> getTopEntries(int count) {
+        List<LeaderboardEntry> ranked = currentSnapshot().ranked;
+        return ranked.subList(0, Math.max(0, Math.min(count, ranked.size())));
     }
     
     /**
@@ -96,13 +109,8 @@ public class LeaderboardManager {
      * @return Rank (1-based) or -1 if not found
      */
     public int getUserRank(String username) {
-        List<LeaderboardEntry> leaderboard = getLeaderboard();
-        for (int i = 0; i < leaderboard.size(); i++) {
-            if (leaderboard.get(i).getUsername().equals(username)) {
-                return i + 1;
-            }
-        }
-        return -1;
+        Integer rank = currentSnapshot().ranks.get(username);
+        return rank == null ? -1 : rank;
     }
     
     /**
@@ -110,6 +118,78 @@ public class LeaderboardManager {
      */
     public void clearResults() {
         userResults.clear();
+        version.incrementAndGet();
+    }
+    
+    /**
+     * The ranking as of the latest write, rebuilt if a write happened since the last one
+     */
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot.get();
+        long latest = version.get();
+        if (current.version == latest) {
+            return current;
+        }
+        // Totals read here include at least every write counted in latest
+        List<LeaderboardEntry> entries = new ArrayList<>(userResults.size());
+        for (UserResults user : userResults.values()) {
+            entries.add(user.entry);
+        }
+        entries.sort(ORDER);
+        Snapshot built = new Snapshot(latest, entries);
+        // A concurrent reader may have published a newer one meanwhile; keep the newest
+        return snapshot.accumulateAndGet(built, (a, b) -> b.version > a.version ? b : a);
+    }
+    
+    /**
+     * One user's results and totals; replaced, never modified. Successive versions
+     * share the results array: a new result goes into the slot just past the old
+     * version's size (which that version never reads), and the array is copied only
+     * when full, so appending is amortized O(1). Only the latest version is appended
+     * to, inside compute(), so slots are never overwritten.
+     */
+    private static final class UserResults {
+        final QuizResult[] slots;
+        final List<QuizResult> results;
+        final double percentageSum;
+        final LeaderboardEntry entry;
+        
+        UserResults(String username, QuizResult result) {
+            this(username, new QuizResult[] {result}, 1, result.getPercentage(), result.getEarnedPoints());
+        }
+        
+        private UserResults(String username, QuizResult[] slots, int size, double percentageSum, int points) {
+            this.slots = slots;
+            this.results = Collections.unmodifiableList(Arrays.asList(slots).subList(0, size));
+            this.percentageSum = percentageSum;
+            this.entry = new LeaderboardEntry(username, percentageSum / size, size, points);
+        }
+        
+        UserResults with(QuizResult result) {
+            int size = results.size();
+            QuizResult[] next = size < slots.length ? slots : Arrays.copyOf(slots, size * 2);
+            next[size] = result;
+            return new UserResults(entry.getUsername(), next, size + 1,
+                percentageSum + result.getPercentage(), entry.getTotalScore() + result.getEarnedPoints());
+        }
+    }
+    
+    /**
+     * Immutable ranking at a version
+     */
+    private static final class Snapshot {
+        final long version;
+        final List<LeaderboardEntry> ranked;
+        final Map<String, Integer> ranks; // username -> 1-based rank
+        
+        Snapshot(long version, List<LeaderboardEntry> ranked) {
+            this.version = version;
+            this.ranked = Collections.unmodifiableList(ranked);
+            this.ranks = new HashMap<>(ranked.size() * 4 / 3 + 1);
+            for (int i = 0; i < ranked.size(); i++) {
+                this.ranks.put(ranked.get(i).getUsername(), i + 1);
+            }
+        }
     }
     
     /**
@@ -0,0 +1,176 @@
+package main.controller;
+
+import main.controller.LeaderboardManager.LeaderboardEntry;
+import main.model.LeaderboardUpdate;
+import main.model.Message;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Publishes the quiz host's leaderboard to clients as rate-limited, sequenced
+ * LEADERBOARD_UPDATE messages.
+ *
+ * Graded results only mark the student dirty. At most one update goes out every
+ * MIN_INTERVAL_MS; it carries just the students whose score changed since the last
+ * one (user, rank, points), so a burst of answers costs a few small messages
+ * instead of the whole rendered board per answer. Clients re-rank locally. While
+ * the board keeps changing, every SNAPSHOT_INTERVAL_MS the update is a full
+ * snapshot instead, and clients that see a sequence gap ask for one.
+ *
+ * The index is shared with the caller and guarded by synchronizing on it; the
+ * publisher takes its own lock first, so never call it while holding the index.
+ * Updates are numbered and broadcast under sendLock (taken before the publisher's
+ * lock), so the flusher and a host sharing the board can't hand clients updates
+ * out of sequence order, while changed() never waits for a broadcast.
+ */
+public class LeaderboardPublisher {
+    public static final long MIN_INTERVAL_MS = 500;
+    private static final long SNAPSHOT_INTERVAL_MS = 10_000;
+
+    private final LeaderboardIndex index;
+    private final String sender;
+    private final Consumer<Message> broadcaster;
+    private final Set<String> dirty;
+    private final ScheduledExecutorService flusher;
+    private final Object sendLock = new Object(); // held from numbering an update until it is broadcast
+    private long sequence;
+    private boolean flushScheduled;
+    private long lastPublished;
+    private long lastSnapshot;
+
+    /**
+     * @param index Ranking to publish (synchronized on by every user)
+     * @param sender Sender name on the messages
+     * @param broadcaster Sends a message to every client
+     */
+    public LeaderboardPublisher(LeaderboardIndex index, String sender, Consumer<Message> broadcaster) {
+        this.index = index;
+        this.sender = sender;
+        this.broadcaster = broadcaster;
+        this.dirty = new LinkedHashSet<>();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "LeaderboardPublisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * A student's score changed (or they were removed from the index)
+     */
+    public synchronized void changed(String username) {
+        dirty.add(username);
+        if (!flushScheduled) {
+            flushScheduled = true;
+            long delay = Math.max(0, lastPublished + MIN_INTERVAL_MS - System.currentTimeMillis());
+            flusher.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * A snapshot at the current sequence, for a client that asked to resynchronize
+     */
+    public synchronized Message snapshotMessage() {
+        return message(new LeaderboardUpdate(sequence, true, snapshotEntries()));
+    }
+
+    /**
+     * Send everyone a snapshot now (the host shares the board explicitly)
+     */
+    public void publishSnapshot() {
+        synchronized (sendLock) {
+            Message snapshot;
+            synchronized (this) {
+                sequence++;
+                lastSnapshot = System.currentTimeMillis();
+                lastPublished = lastSnapshot;
+                dirty.clear();
+                snapshot = message(new LeaderboardUpdate(sequence, true, snapshotEntries()));
+            }
+            broadcaster.accept(snapshot);
+        }
+    }
+
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    public void shutdown() {
+        flusher.shutdownNow();
+    }
+
+    /**
+     * Publish the students changed since the last update as one delta (or a snapshot when due)
+     */
+    private void flush() {
+        synchronized (sendLock) {
+            Message update = nextUpdate();
+            if (update != null) {
+                // Outside the publisher's lock, so results keep coming in while it goes out
+                broadcaster.accept(update);
+            }
+        }
+    }
+
+    /**
+     * Number the next update and clear the dirty set
+     * @return The update, or null if nothing changed
+     */
+    private Message nextUpdate() {
+        synchronized (this) {
+            flushScheduled = false;
+            if (dirty.isEmpty()) {
+                return null;
+            }
+            long now = System.currentTimeMillis();
+            boolean snapshot = now - lastSnapshot >= SNAPSHOT_INTERVAL_MS;
+            List<LeaderboardUpdate.Entry> entries;
+            if (snapshot) {
+                entries = snapshotEntries();
+                lastSnapshot = now;
+            } else {
+                entries = new ArrayList<>(dirty.size());
+                synchronized (index) {
+                    for (String username : dirty) {
+                        LeaderboardEntry entry = index.get(username);
+                        entries.add(entry == null
+                            ? new LeaderboardUpdate.Entry(username, 0, 0, 0)
+                            : new LeaderboardUpdate.Entry(username, index.rank(username),
+                                entry.getTotalScore(), entry.getAverageScore()));
+                    }
+                }
+            }
+            dirty.clear();
+            sequence++;
+            lastPublished = now;
+            return message(new LeaderboardUpdate(sequence, snapshot, entries));
+        }
+    }
+
+    private List<LeaderboardUpdate.Entry> snapshotEntries() {
+        List<LeaderboardEntry> ranked;
+        synchronized (index) {
+            ranked = index.top(index.size());
+        }
+        List<LeaderboardUpdate.Entry> entries = new ArrayList<>(ranked.size());
+        for (int i = 0; i < ranked.size(); i++) {
+            LeaderboardEntry entry = ranked.get(i);
+            entries.add(new LeaderboardUpdate.Entry(entry.getUsername(), i + 1,
+                entry.getTotalScore(), entry.getAverageScore()));
+        }
+        return entries;
+    }
+
+    private Message message(LeaderboardUpdate update) {
+        Message message = new Message(sender, "all", "", Message.MessageType.LEADERBOARD_UPDATE);
+        message.setLeaderboardUpdate(update);
+        return message;
+    }
+}
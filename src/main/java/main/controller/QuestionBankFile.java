@@ -0,0 +1,377 @@
+package main.controller;
+
+import main.log.Log;
+import main.log.Logger;
+import main.model.QuizQuestion;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Import and export of question banks as CSV, one question per record:
+ *
+ *   question,correct,points,option_a,option_b,...
+ *
+ * where correct is the letter of the right option (A, B, ...) and a question has
+ * MIN_OPTIONS to MAX_OPTIONS options. Fields follow RFC 4180: quoted when they
+ * contain commas, quotes or line breaks, with quotes doubled. A header line
+ * starting with "question" is skipped.
+ *
+ * Imports stream: the reader parses records off the file into batches of
+ * BATCH_RECORDS, the batches are validated on the common pool, and validated
+ * questions are handed to the sink in file order. At most MAX_BATCHES_IN_FLIGHT
+ * batches are parsed ahead of the sink, so a bank of any size is read with a
+ * bounded buffer; only what the sink keeps stays in the heap. Invalid records are
+ * skipped and reported with their line numbers.
+ */
+public final class QuestionBankFile {
+    private static final Logger LOG = Log.get("QUIZ");
+    public static final int MIN_OPTIONS = 2;
+    public static final int MAX_OPTIONS = 10;
+    private static final int MAX_POINTS = 100;
+    private static final int MAX_FIELD_CHARS = 4096; // an unterminated quote fails here, not at the end of the file
+    private static final int BATCH_RECORDS = 256;
+    private static final int MAX_BATCHES_IN_FLIGHT = 2 * ForkJoinPool.getCommonPoolParallelism() + 2;
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private QuestionBankFile() {
+    }
+
+    /**
+     * Read a question bank, handing each valid question to the sink in file order
+     * (on the calling thread)
+     * @throws IOException If the file can't be read or isn't CSV at all
+     */
+    public static ImportResult read(Path file, Consumer<QuizQuestion> sink) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return read(reader, sink);
+        }
+    }
+
+    public static ImportResult read(Reader reader, Consumer<QuizQuestion> sink) throws IOException {
+        long start = System.nanoTime();
+        CsvReader csv = new CsvReader(reader);
+        ImportResult result = new ImportResult();
+        ArrayDeque<CompletableFuture<Batch>> inFlight = new ArrayDeque<>();
+        List<String[]> records = new ArrayList<>(BATCH_RECORDS);
+        int[] lines = new int[BATCH_RECORDS];
+        boolean first = true;
+        String[] record;
+        while ((record = csv.next()) != null) {
+            if (first) {
+                first = false;
+                if (record[0].trim().equalsIgnoreCase("question")) {
+                    continue;
+                }
+            }
+            lines[records.size()] = csv.getRecordLine();
+            records.add(record);
+            if (records.size() == BATCH_RECORDS) {
+                submit(inFlight, records, lines);
+                records = new ArrayList<>(BATCH_RECORDS);
+                lines = new int[BATCH_RECORDS];
+                if (inFlight.size() >= MAX_BATCHES_IN_FLIGHT) {
+                    deliver(inFlight.poll(), sink, result);
+                }
+            }
+        }
+        if (!records.isEmpty()) {
+            submit(inFlight, records, lines);
+        }
+        while (!inFlight.isEmpty()) {
+            deliver(inFlight.poll(), sink, result);
+        }
+        LOG.info("Question bank imported", "questions", result.imported, "rejected", result.rejected,
+            "ms", (System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    /**
+     * Write questions as a question bank
+     */
+    public static void write(Path file, List<QuizQuestion> questions) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            write(writer, questions);
+        }
+    }
+
+    public static void write(Writer writer, List<QuizQuestion> questions) throws IOException {
+        int options = MIN_OPTIONS;
+        for (QuizQuestion question : questions) {
+            options = Math.max(options, question.getOptions().size());
+        }
+        writer.write("question,correct,points");
+        for (int i = 0; i < options; i++) {
+            writer.write(",option_" + (char) ('a' + i));
+        }
+        writer.write("\r\n");
+        for (QuizQuestion question : questions) {
+            writeField(writer, question.getQuestion());
+            writer.write(',');
+            writer.write((char) ('A' + question.getCorrectAnswer()));
+            writer.write(',');
+            writer.write(Integer.toString(question.getPoints()));
+            for (String option : question.getOptions()) {
+                writer.write(',');
+                writeField(writer, option);
+            }
+            writer.write("\r\n");
+        }
+    }
+
+    private static void writeField(Writer writer, String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static void submit(ArrayDeque<CompletableFuture<Batch>> inFlight, List<String[]> records, int[] lines) {
+        inFlight.add(CompletableFuture.supplyAsync(() -> validate(records, lines), ForkJoinPool.commonPool()));
+    }
+
+    private static void deliver(CompletableFuture<Batch> pending, Consumer<QuizQuestion> sink, ImportResult result) {
+        Batch batch = pending.join();
+        for (QuizQuestion question : batch.questions) {
+            sink.accept(question);
+        }
+        result.imported += batch.questions.size();
+        result.rejected += batch.errors.size();
+        for (String error : batch.errors) {
+            if (result.errors.size() < MAX_REPORTED_ERRORS) {
+                result.errors.add(error);
+            }
+        }
+    }
+
+    private static Batch validate(List<String[]> records, int[] lines) {
+        Batch batch = new Batch(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            try {
+                batch.questions.add(parse(records.get(i)));
+            } catch (IllegalArgumentException e) {
+                batch.errors.add("line " + lines[i] + ": " + e.getMessage());
+            }
+        }
+        return batch;
+    }
+
+    private static QuizQuestion parse(String[] record) {
+        if (record.length < 3 + MIN_OPTIONS) {
+            throw new IllegalArgumentException("expected question, correct, points and at least "
+                + MIN_OPTIONS + " options");
+        }
+        String text = record[0].trim();
+        if (text.isEmpty()) {
+            throw new IllegalArgumentException("empty question");
+        }
+        int end = record.length;
+        while (end > 3 && record[end - 1].trim().isEmpty()) {
+            end--; // questions with fewer options than the header leave trailing columns empty
+        }
+        List<String> options = new ArrayList<>(end - 3);
+        for (int i = 3; i < end; i++) {
+            String option = record[i].trim();
+            if (option.isEmpty()) {
+                throw new IllegalArgumentException("option " + (char) ('A' + i - 3) + " is empty");
+            }
+            options.add(option);
+        }
+        if (options.size() < MIN_OPTIONS || options.size() > MAX_OPTIONS) {
+            throw new IllegalArgumentException("a question needs " + MIN_OPTIONS + " to " + MAX_OPTIONS
+                + " options, found " + options.size());
+        }
+        String correct = record[1].trim().toUpperCase();
+        int correctAnswer = correct.length() == 1 ? correct.charAt(0) - 'A' : -1;
+        if (correctAnswer < 0 || correctAnswer >= options.size()) {
+            throw new IllegalArgumentException("correct answer '" + record[1].trim() + "' is not one of A-"
+                + (char) ('A' + options.size() - 1));
+        }
+        int points;
+        try {
+            points = Integer.parseInt(record[2].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("points '" + record[2].trim() + "' is not a number");
+        }
+        if (points < 1 || points > MAX_POINTS) {
+            throw new IllegalArgumentException("points must be 1 to " + MAX_POINTS);
+        }
+        return new QuizQuestion(text, options, correctAnswer, points);
+    }
+
+    /**
+     * What an import loaded and what it skipped
+     */
+    public static final class ImportResult {
+        private int imported;
+        private int rejected;
+        private final List<String> errors = new ArrayList<>();
+
+        public int getImported() {
+            return imported;
+        }
+
+        public int getRejected() {
+            return rejected;
+        }
+
+        /**
+         * The first MAX_REPORTED_ERRORS problems, as "line N: reason"
+         */
+        public List<String> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+    }
+
+    private static final class Batch {
+        final List<QuizQuestion> questions;
+        final List<String> errors = new ArrayList<>(0);
+
+        Batch(int size) {
+            this.questions = new ArrayList<>(size);
+        }
+    }
+
+    /**
+     * RFC 4180 record reader over a character stream
+     */
+    private static final class CsvReader {
+        private final Reader reader;
+        private final StringBuilder field = new StringBuilder();
+        private final List<String> fields = new ArrayList<>();
+        private int line = 1;
+        private int recordLine;
+        private int pushback = -2;
+
+        CsvReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * The next non-blank record, or null at the end of the input
+         */
+        String[] next() throws IOException {
+            while (true) {
+                int c = read();
+                if (c == -1) {
+                    return null;
+                }
+                if (c == '\n' || c == '\r') {
+                    consumeLineBreak(c);
+                    continue;
+                }
+                recordLine = line;
+                pushback = c;
+                return readRecord();
+            }
+        }
+
+        /**
+         * Line number the last record started on
+         */
+        int getRecordLine() {
+            return recordLine;
+        }
+
+        private String[] readRecord() throws IOException {
+            fields.clear();
+            while (true) {
+                field.setLength(0);
+                int c = read();
+                if (c == '"') {
+                    c = readQuoted();
+                } else {
+                    while (c != ',' && c != '\n' && c != '\r' && c != -1) {
+                        append(c);
+                        c = read();
+                    }
+                }
+                fields.add(field.toString());
+                if (c != ',') {
+                    if (c != -1) {
+                        consumeLineBreak(c);
+                    }
+                    return fields.toArray(new String[0]);
+                }
+            }
+        }
+
+        /**
+         * Read a quoted field's content and return the character after its closing quote
+         */
+        private int readQuoted() throws IOException {
+            while (true) {
+                int c = read();
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field starting on line " + recordLine);
+                }
+                if (c == '"') {
+                    c = read();
+                    if (c != '"') {
+                        // Closing quote; anything up to the separator is kept as-is
+                        while (c != ',' && c != '\n' && c != '\r' && c != -1) {
+                            append(c);
+                            c = read();
+                        }
+                        return c;
+                    }
+                } else if (c == '\n' || (c == '\r' && peekNot('\n'))) {
+                    line++;
+                }
+                append(c);
+            }
+        }
+
+        private void consumeLineBreak(int c) throws IOException {
+            if (c == '\r') {
+                int next = read();
+                if (next != '\n' && next != -1) {
+                    pushback = next;
+                }
+            }
+            line++;
+        }
+
+        private boolean peekNot(char expected) throws IOException {
+            int next = read();
+            pushback = next;
+            return next != expected;
+        }
+
+        private void append(int c) throws IOException {
+            if (field.length() >= MAX_FIELD_CHARS) {
+                throw new IOException("Field longer than " + MAX_FIELD_CHARS + " characters on line " + line);
+            }
+            field.append((char) c);
+        }
+
+        private int read() throws IOException {
+            if (pushback != -2) {
+                int c = pushback;
+                pushback = -2;
+                return c;
+            }
+            return reader.read();
+        }
+    }
+}
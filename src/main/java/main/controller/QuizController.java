@@ -84,7 +84,7 @@ public class QuizController {
         connectedPeers.get(0).sendMessage(answerMessage);
         
         chatLogger.accept("[QUIZ] Answer submitted for question " + 
-            (answer.getAnswers().size()));
+            answer.getAnsweredCount());
     }
     
     /**
@@ -0,0 +1,165 @@
+package main.controller;
+
+import main.log.Log;
+import main.log.Logger;
+import main.model.AnswerKey;
+import main.model.Quiz;
+import main.model.QuizAnswer;
+import main.model.QuizResult;
+import main.network.ExecutionMode;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Grades quiz submissions against the active quiz on a pool of worker threads.
+ *
+ * Activating a quiz compiles it once into an AnswerKey (primitive answer and points
+ * arrays) that every worker shares. submit() only queues the answer, so the
+ * message pipeline and the EDT never wait for grading; each result goes to the
+ * engine's listener (leaderboard) and to the submission's own reply callback, on
+ * the worker that graded it. Answers are graded against the quiz that was active
+ * when they were submitted, and only if they name that quiz: an answer to another
+ * (or a made-up) quiz id is refused. Each graded submission is also counted in the quiz's
+ * live QuizStatistics. If the queue fills up (a whole class submitting at
+ * once) the submitting thread grades the answer itself, which slows intake instead
+ * of dropping answers.
+ */
+public class QuizGradingEngine {
+    private static final Logger LOG = Log.get("QUIZ");
+    private static final int QUEUE_CAPACITY = 4096;
+
+    private final ThreadPoolExecutor graders;
+    private final Consumer<QuizResult> onGraded;
+    private final LongAdder graded = new LongAdder();
+    private volatile AnswerKey activeKey;
+    private volatile QuizStatistics statistics;
+
+    /**
+     * @param workers Grading threads
+     * @param onGraded Called with every result, on a grading thread
+     */
+    public QuizGradingEngine(int workers, Consumer<QuizResult> onGraded) {
+        int threads = Math.max(1, workers);
+        AtomicInteger counter = new AtomicInteger();
+        this.graders = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            task -> ExecutionMode.PLATFORM.newThread(task, "QuizGrader-" + counter.incrementAndGet()),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        // Idle graders exit, so a dashboard that never runs a quiz keeps no threads
+        this.graders.allowCoreThreadTimeOut(true);
+        this.onGraded = onGraded;
+    }
+
+    /**
+     * Grade submissions against this quiz from now on
+     */
+    public void activate(Quiz quiz) {
+        statistics = new QuizStatistics(quiz);
+        activeKey = quiz.getAnswerKey();
+        LOG.info("Quiz activated", "quiz", quiz.getQuizId(), "questions", activeKey.getQuestionCount());
+    }
+
+    /**
+     * Stop accepting submissions (answers already queued are still graded)
+     */
+    public void deactivate() {
+        activeKey = null;
+    }
+
+    /**
+     * Stop accepting submissions for this quiz, if it is still the active one
+     * (the server retired it after its deadline)
+     */
+    public void deactivate(String quizId) {
+        AnswerKey key = activeKey;
+        if (key != null && key.getQuizId().equals(quizId)) {
+            activeKey = null;
+            LOG.info("Quiz deactivated", "quiz", quizId);
+        }
+    }
+
+    /**
+     * The key submissions are graded against, or null when no quiz is active
+     */
+    public AnswerKey getActiveKey() {
+        return activeKey;
+    }
+
+    /**
+     * Live answer statistics of the active (or last) quiz, or null before the first quiz
+     */
+    public QuizStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Queue a submission for grading
+     * @param username Who submitted it
+     * @param reply Called with the result after the listener, on the grading thread; may be null
+     * @return false if no quiz is active or the answer is for another quiz
+     */
+    public boolean submit(QuizAnswer answer, String username, Consumer<QuizResult> reply) {
+        AnswerKey key = activeKey;
+        QuizStatistics stats = statistics;
+        if (key == null || !key.getQuizId().equals(answer.getQuizId())) {
+            return false;
+        }
+        long receivedAt = System.currentTimeMillis();
+        graders.execute(() -> {
+            QuizResult result = key.grade(answer, username);
+            if (stats != null && key.getQuizId().equals(stats.getQuizId())) {
+                stats.record(answer, receivedAt);
+            }
+            publish(result, reply);
+        });
+        return true;
+    }
+
+    /**
+     * Grade on the calling thread against the active quiz
+     * @return The result, or null if no quiz is active or the answer is for another quiz
+     */
+    public QuizResult grade(QuizAnswer answer, String username) {
+        AnswerKey key = activeKey;
+        return key == null || !key.getQuizId().equals(answer.getQuizId()) ? null : key.grade(answer, username);
+    }
+
+    private void publish(QuizResult result, Consumer<QuizResult> reply) {
+        graded.increment();
+        try {
+            onGraded.accept(result);
+            if (reply != null) {
+                reply.accept(result);
+            }
+        } catch (RuntimeException e) {
+            LOG.error("Result callback failed", "user", result.getUsername(), "error", e);
+        }
+    }
+
+    /**
+     * Submissions graded so far
+     */
+    public long getGradedCount() {
+        return graded.sum();
+    }
+
+    /**
+     * Submissions waiting for a grader
+     */
+    public int getPendingCount() {
+        return graders.getQueue().size();
+    }
+
+    /**
+     * Stop the graders; queued submissions are dropped
+     */
+    public void shutdown() {
+        activeKey = null;
+        graders.shutdownNow();
+    }
+}
@@ -0,0 +1,592 @@
+package main.controller;
+
+import main.controller.LeaderboardManager.LeaderboardEntry;
+import main.log.Log;
+import main.log.Logger;
+import main.model.QuizResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only on-disk log of quiz results, indexed by quiz and by student, for
+ * history and end-of-term queries that don't need every result in the heap.
+ *
+ * The file is an 8-byte header ("SCQR", version) followed by frames of
+ * [int length][int crc32][payload]. A payload is either a string record, which
+ * gives the next dictionary id to a quiz id or username, or a result record that
+ * refers to those ids: quiz, user, completion time, questions, correct answers,
+ * total and earned points, and a bitmap of the questions answered correctly.
+ * A result takes about 40 bytes on disk, against ~350 for a serialized QuizResult.
+ *
+ * Opening the log scans it once to rebuild the dictionary and the offsets of each
+ * quiz's and each student's records; the results themselves stay on disk. Queries
+ * read records from a read-only mapping of the file, and the term-wide ones
+ * (leaderboard, per-question correctness) scan it in parallel, aggregating by
+ * dictionary id without building QuizResults. A frame torn by a crash fails its
+ * length or CRC check and is cut off when the log is opened again; that scan reads
+ * through the channel rather than a mapping, because the file can't be truncated
+ * (on Windows) while a mapping of it is alive.
+ *
+ * Appends go straight to the file, so they survive the application crashing;
+ * sync() forces them to the disk. Thread-safe. Offsets are ints, so one log holds
+ * up to 2 GB (tens of millions of results); start a new file per term beyond that.
+ */
+public class QuizResultStore implements Closeable {
+    private static final Logger LOG = Log.get("QUIZ");
+    private static final int MAGIC = 0x53435152; // "SCQR"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int FRAME_HEADER = 8; // length, crc32
+    private static final byte STRING_RECORD = 1;
+    private static final byte RESULT_RECORD = 2;
+    private static final int RESULT_FIXED_SIZE = 1 + 4 + 4 + 8 + 2 + 2 + 4 + 4 + 2;
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+    private static final int NOT_GRADED_PER_QUESTION = 0xFFFF; // bitmap length of a result without one
+    private static final byte[] NO_BITMAP = new byte[0];
+    private static final int LOAD_BUFFER_SIZE = 1 << 20; // larger than any frame
+
+    private final FileChannel channel;
+    private final List<String> strings = new ArrayList<>(); // dictionary id -> quiz id or username
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final Map<Integer, OffsetList> byQuiz = new HashMap<>();
+    private final Map<Integer, OffsetList> byUser = new HashMap<>();
+    private final OffsetList results = new OffsetList();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(256);
+    private long length; // end of the last complete frame
+    private MappedByteBuffer view; // read-only mapping of [0, viewLength); absolute reads only
+    private long viewLength;
+    private boolean closed;
+
+    private QuizResultStore(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Open the log at this path, creating it (and its directory) if needed
+     */
+    public static QuizResultStore open(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        QuizResultStore store = new QuizResultStore(channel);
+        try {
+            store.load();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        LOG.info("Results log opened", "path", path, "results", store.results.size, "bytes", store.length);
+        return store;
+    }
+
+    /**
+     * Append a result
+     */
+    public synchronized void append(QuizResult result) throws IOException {
+        ensureOpen();
+        writeBuffer.clear();
+        int dictionarySize = strings.size();
+        try {
+            int quiz = id(result.getQuizId());
+            int user = id(result.getUsername());
+            BitSet correct = result.getCorrectQuestions();
+            byte[] bitmap = correct == null ? NO_BITMAP : correct.toByteArray();
+
+            int frame = beginFrame(RESULT_FIXED_SIZE + bitmap.length);
+            writeBuffer.put(RESULT_RECORD)
+                .putInt(quiz)
+                .putInt(user)
+                .putLong(result.getCompletionTime())
+                .putShort((short) result.getTotalQuestions())
+                .putShort((short) result.getCorrectAnswers())
+                .putInt(result.getTotalPoints())
+                .putInt(result.getEarnedPoints())
+                .putShort((short) (correct == null ? NOT_GRADED_PER_QUESTION : bitmap.length))
+                .put(bitmap);
+            endFrame(frame);
+
+            long resultOffset = length + frame + FRAME_HEADER;
+            if (length + writeBuffer.position() > Integer.MAX_VALUE) {
+                throw new IOException("Results log is full (2 GB)");
+            }
+            writeBuffer.flip();
+            long position = length;
+            while (writeBuffer.hasRemaining()) {
+                position += channel.write(writeBuffer, position);
+            }
+            length = position;
+            results.add((int) resultOffset);
+            byQuiz.computeIfAbsent(quiz, k -> new OffsetList()).add((int) resultOffset);
+            byUser.computeIfAbsent(user, k -> new OffsetList()).add((int) resultOffset);
+        } catch (IOException | RuntimeException e) {
+            // Forget dictionary entries that didn't make it to the file. A partial write
+            // past length is not truncated (the file may be mapped): the next append
+            // overwrites it, and opening the log cuts off whatever is left.
+            while (strings.size() > dictionarySize) {
+                stringIds.remove(strings.remove(strings.size() - 1));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Force appended results to the disk
+     */
+    public synchronized void sync() throws IOException {
+        ensureOpen();
+        channel.force(false);
+    }
+
+    /**
+     * Number of results in the log
+     */
+    public synchronized int getResultCount() {
+        return results.size;
+    }
+
+    /**
+     * Every result a student has, oldest first
+     */
+    public List<QuizResult> getStudentHistory(String username) throws IOException {
+        return read(byUser, username);
+    }
+
+    /**
+     * Every result recorded for a quiz, in the order they were graded
+     */
+    public List<QuizResult> getQuizResults(String quizId) throws IOException {
+        return read(byQuiz, quizId);
+    }
+
+    /**
+     * Share of a quiz's graded submissions that got each question right (0..1),
+     * indexed by question; results without per-question grading are not counted
+     */
+    public double[] getQuestionCorrectRates(String quizId) throws IOException {
+        Scan scan;
+        synchronized (this) {
+            Integer quiz = stringIds.get(quizId);
+            if (quiz == null || !byQuiz.containsKey(quiz)) {
+                return new double[0];
+            }
+            scan = scan(byQuiz.get(quiz));
+        }
+        ByteBuffer view = scan.view;
+        QuestionTally tally = Arrays.stream(scan.offsets, 0, scan.count).parallel()
+            .collect(QuestionTally::new, (t, offset) -> t.add(view, offset), QuestionTally::merge);
+        double[] rates = new double[tally.questions];
+        for (int q = 0; q < rates.length; q++) {
+            rates[q] = tally.graded == 0 ? 0 : tally.correct[q] / (double) tally.graded;
+        }
+        return rates;
+    }
+
+    /**
+     * Leaderboard over every result in the log
+     */
+    public List<LeaderboardEntry> getTermLeaderboard() throws IOException {
+        return getTermLeaderboard(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Leaderboard over the results completed in [from, to) (epoch millis): each
+     * student's average percentage, quiz count and total points, highest average first
+     */
+    public List<LeaderboardEntry> getTermLeaderboard(long from, long to) throws IOException {
+        Scan scan;
+        synchronized (this) {
+            ensureOpen();
+            scan = scan(results);
+        }
+        ByteBuffer view = scan.view;
+        Map<Integer, Totals> totals = Arrays.stream(scan.offsets, 0, scan.count).parallel()
+            .collect(HashMap::new, (map, offset) -> {
+                long completed = view.getLong(offset + 9);
+                if (completed >= from && completed < to) {
+                    map.computeIfAbsent(view.getInt(offset + 5), k -> new Totals()).add(view, offset);
+                }
+            }, (a, b) -> b.forEach((user, t) -> a.merge(user, t, Totals::merge)));
+
+        List<LeaderboardEntry> entries = new ArrayList<>(totals.size());
+        synchronized (this) {
+            for (Map.Entry<Integer, Totals> entry : totals.entrySet()) {
+                Totals t = entry.getValue();
+                entries.add(new LeaderboardEntry(strings.get(entry.getKey()),
+                    t.percentageSum / t.count, t.count, (int) Math.min(Integer.MAX_VALUE, t.points)));
+            }
+        }
+        entries.sort(LeaderboardIndex.BY_AVERAGE_SCORE.thenComparing(LeaderboardEntry::getUsername));
+        return entries;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        view = null;
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private List<QuizResult> read(Map<Integer, OffsetList> index, String key) throws IOException {
+        Scan scan;
+        String[] dictionary;
+        synchronized (this) {
+            Integer id = stringIds.get(key);
+            if (id == null || !index.containsKey(id)) {
+                return Collections.emptyList();
+            }
+            scan = scan(index.get(id));
+            dictionary = strings.toArray(new String[0]);
+        }
+        List<QuizResult> list = new ArrayList<>(scan.count);
+        for (int i = 0; i < scan.count; i++) {
+            list.add(decode(scan.view, scan.offsets[i], dictionary));
+        }
+        return list;
+    }
+
+    /**
+     * The current mapping and a consistent view of an offset list (caller holds the lock)
+     */
+    private Scan scan(OffsetList offsets) throws IOException {
+        ensureOpen();
+        if (viewLength != length) {
+            view = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            viewLength = length;
+        }
+        return new Scan(view, offsets.values, offsets.size);
+    }
+
+    private static QuizResult decode(ByteBuffer view, int offset, String[] dictionary) {
+        int bitmapLength = view.getShort(offset + 29) & 0xFFFF;
+        BitSet correct = null;
+        if (bitmapLength != NOT_GRADED_PER_QUESTION) {
+            byte[] bitmap = new byte[bitmapLength];
+            for (int i = 0; i < bitmapLength; i++) {
+                bitmap[i] = view.get(offset + RESULT_FIXED_SIZE + i);
+            }
+            correct = BitSet.valueOf(bitmap);
+        }
+        return new QuizResult(
+            dictionary[view.getInt(offset + 1)],
+            dictionary[view.getInt(offset + 5)],
+            view.getShort(offset + 17) & 0xFFFF,
+            view.getShort(offset + 19) & 0xFFFF,
+            view.getInt(offset + 21),
+            view.getInt(offset + 25),
+            view.getLong(offset + 9),
+            correct);
+    }
+
+    /**
+     * Dictionary id for a quiz id or username, queuing a string record if it's new (caller holds the lock)
+     */
+    private int id(String value) {
+        String key = value == null ? "" : value;
+        Integer id = stringIds.get(key);
+        if (id != null) {
+            return id;
+        }
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("Name too long for the results log: " + bytes.length + " bytes");
+        }
+        int frame = beginFrame(1 + 2 + bytes.length);
+        writeBuffer.put(STRING_RECORD).putShort((short) bytes.length).put(bytes);
+        endFrame(frame);
+        id = strings.size();
+        strings.add(key);
+        stringIds.put(key, id);
+        return id;
+    }
+
+    private int beginFrame(int payloadSize) {
+        int needed = writeBuffer.position() + FRAME_HEADER + payloadSize;
+        if (needed > writeBuffer.capacity()) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(needed, writeBuffer.capacity() * 2));
+            writeBuffer.flip();
+            grown.put(writeBuffer);
+            writeBuffer = grown;
+        }
+        int start = writeBuffer.position();
+        writeBuffer.position(start + FRAME_HEADER);
+        return start;
+    }
+
+    private void endFrame(int start) {
+        int payloadLength = writeBuffer.position() - start - FRAME_HEADER;
+        crc.reset();
+        crc.update(writeBuffer.array(), start + FRAME_HEADER, payloadLength);
+        writeBuffer.putInt(start, payloadLength);
+        writeBuffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    /**
+     * Rebuild the dictionary and indexes from the file, cutting off a damaged tail
+     */
+    private void load() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, HEADER_SIZE - header.remaining());
+            }
+            length = HEADER_SIZE;
+            return;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Results log larger than 2 GB");
+        }
+        // No mapping until the damaged tail (if any) is truncated; queries map the file later
+        FileWindow file = new FileWindow(channel, size);
+        if (!file.load(0, HEADER_SIZE) || file.buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a quiz results log");
+        }
+        if (file.buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported results log version " + file.buffer.getInt(4));
+        }
+
+        int position = HEADER_SIZE;
+        while (file.load(position, FRAME_HEADER)) {
+            int payloadLength = file.buffer.getInt(file.at(position));
+            int crc32 = file.buffer.getInt(file.at(position) + 4);
+            int payload = position + FRAME_HEADER;
+            if (payloadLength <= 0 || payloadLength > LOAD_BUFFER_SIZE - FRAME_HEADER
+                    || !file.load(payload, payloadLength)
+                    || !checksumMatches(file.buffer, file.at(payload), payloadLength, crc32)
+                    || !index(file.buffer, file.at(payload), payloadLength, payload)) {
+                break;
+            }
+            position = payload + payloadLength;
+        }
+        if (position < size) {
+            LOG.warn("Results log has a damaged tail; truncating", "validBytes", position, "size", size);
+            channel.truncate(position);
+        }
+        length = position;
+    }
+
+    private boolean checksumMatches(ByteBuffer map, int payload, int payloadLength, int expected) {
+        ByteBuffer slice = map.duplicate();
+        slice.limit(payload + payloadLength).position(payload);
+        crc.reset();
+        crc.update(slice);
+        return (int) crc.getValue() == expected;
+    }
+
+    /**
+     * Add one record to the dictionary or the indexes
+     * @param payload Where the record starts in the buffer
+     * @param fileOffset Where it starts in the file
+     * @return false if the record is malformed
+     */
+    private boolean index(ByteBuffer map, int payload, int payloadLength, int fileOffset) {
+        byte kind = map.get(payload);
+        if (kind == STRING_RECORD) {
+            if (payloadLength < 3 || (map.getShort(payload + 1) & 0xFFFF) != payloadLength - 3) {
+                return false;
+            }
+            byte[] bytes = new byte[payloadLength - 3];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = map.get(payload + 3 + i);
+            }
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            stringIds.put(value, strings.size());
+            strings.add(value);
+            return true;
+        }
+        if (kind != RESULT_RECORD || payloadLength < RESULT_FIXED_SIZE) {
+            return false;
+        }
+        int bitmapLength = map.getShort(payload + 29) & 0xFFFF;
+        if (bitmapLength != payloadLength - RESULT_FIXED_SIZE
+                && !(bitmapLength == NOT_GRADED_PER_QUESTION && payloadLength == RESULT_FIXED_SIZE)) {
+            return false;
+        }
+        int quiz = map.getInt(payload + 1);
+        int user = map.getInt(payload + 5);
+        if (quiz < 0 || quiz >= strings.size() || user < 0 || user >= strings.size()) {
+            return false;
+        }
+        results.add(fileOffset);
+        byQuiz.computeIfAbsent(quiz, k -> new OffsetList()).add(fileOffset);
+        byUser.computeIfAbsent(user, k -> new OffsetList()).add(fileOffset);
+        return true;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Results log is closed");
+        }
+    }
+
+    /**
+     * A window of the file read through the channel, for the scan on open
+     */
+    private static final class FileWindow {
+        final FileChannel channel;
+        final long size;
+        final ByteBuffer buffer = ByteBuffer.allocate(LOAD_BUFFER_SIZE);
+        long start; // file offset of buffer position 0
+
+        FileWindow(FileChannel channel, long size) {
+            this.channel = channel;
+            this.size = size;
+            buffer.limit(0);
+        }
+
+        /**
+         * Make [offset, offset + count) of the file available in the buffer
+         * @return false if the file ends before that
+         */
+        boolean load(long offset, int count) throws IOException {
+            if (offset + count > size) {
+                return false;
+            }
+            if (offset >= start && offset + count <= start + buffer.limit()) {
+                return true;
+            }
+            start = offset;
+            buffer.clear();
+            int wanted = (int) Math.min(buffer.capacity(), size - offset);
+            while (buffer.position() < wanted) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            return buffer.limit() >= count;
+        }
+
+        /**
+         * Buffer position of a loaded file offset
+         */
+        int at(long offset) {
+            return (int) (offset - start);
+        }
+    }
+
+    /**
+     * Growable list of record offsets. Entries are only ever appended, so a reader
+     * that captured (values, size) under the lock can scan them without it.
+     */
+    private static final class OffsetList {
+        int[] values = new int[8];
+        int size;
+
+        void add(int offset) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = offset;
+        }
+    }
+
+    private static final class Scan {
+        final ByteBuffer view;
+        final int[] offsets;
+        final int count;
+
+        Scan(ByteBuffer view, int[] offsets, int count) {
+            this.view = view;
+            this.offsets = offsets;
+            this.count = count;
+        }
+    }
+
+    /**
+     * One student's aggregate in a term scan
+     */
+    private static final class Totals {
+        double percentageSum;
+        int count;
+        long points;
+
+        void add(ByteBuffer view, int offset) {
+            int questions = view.getShort(offset + 17) & 0xFFFF;
+            int correct = view.getShort(offset + 19) & 0xFFFF;
+            // Same percentage QuizResult computes
+            percentageSum += questions > 0 ? correct * 100.0 / questions : 0;
+            count++;
+            points += view.getInt(offset + 25);
+        }
+
+        Totals merge(Totals other) {
+            percentageSum += other.percentageSum;
+            count += other.count;
+            points += other.points;
+            return this;
+        }
+    }
+
+    /**
+     * Per-question correct counts in a quiz scan
+     */
+    private static final class QuestionTally {
+        int graded;
+        int questions;
+        int[] correct = new int[0];
+
+        void add(ByteBuffer view, int offset) {
+            int bitmapLength = view.getShort(offset + 29) & 0xFFFF;
+            if (bitmapLength == NOT_GRADED_PER_QUESTION) {
+                return;
+            }
+            int total = view.getShort(offset + 17) & 0xFFFF;
+            graded++;
+            grow(total);
+            for (int i = 0; i < bitmapLength; i++) {
+                int bits = view.get(offset + RESULT_FIXED_SIZE + i) & 0xFF;
+                while (bits != 0) {
+                    int q = i * 8 + Integer.numberOfTrailingZeros(bits);
+                    if (q < questions) {
+                        correct[q]++;
+                    }
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        void merge(QuestionTally other) {
+            graded += other.graded;
+            grow(other.questions);
+            for (int q = 0; q < other.questions; q++) {
+                correct[q] += other.correct[q];
+            }
+        }
+
+        private void grow(int total) {
+            if (total > questions) {
+                questions = total;
+                correct = Arrays.copyOf(correct, total);
+            }
+        }
+    }
+}
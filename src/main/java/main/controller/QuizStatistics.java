@@ -0,0 +1,121 @@
+package main.controller;
+
+import main.metrics.Histogram;
+import main.model.Quiz;
+import main.model.QuizAnswer;
+import main.model.QuizQuestion;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live answer statistics for the running quiz: how often each option of each
+ * question was picked, and how long after the start submissions arrived.
+ *
+ * Every question has an AtomicIntegerArray with one counter per option plus one
+ * for "no answer", and answer times go into a lock-free Histogram, so recording a
+ * submission is a few atomic increments on the grading thread and allocates
+ * nothing. Readers (the host's dashboard, at its own refresh rate) see counts that
+ * may be a submission or two apart between questions, never torn values.
+ */
+public class QuizStatistics {
+    private final String quizId;
+    private final long startTime;
+    private final String[] questionTexts;
+    private final int[] correctOptions;
+    private final AtomicIntegerArray[] optionCounts; // per question: options..., unanswered
+    private final LongAdder submissions = new LongAdder();
+    private final Histogram answerTimes = new Histogram(); // ms from quiz start to arrival
+
+    public QuizStatistics(Quiz quiz) {
+        List<QuizQuestion> questions = quiz.getQuestions();
+        this.quizId = quiz.getQuizId();
+        this.startTime = quiz.getStartTime();
+        this.questionTexts = new String[questions.size()];
+        this.correctOptions = new int[questions.size()];
+        this.optionCounts = new AtomicIntegerArray[questions.size()];
+        for (int q = 0; q < questions.size(); q++) {
+            QuizQuestion question = questions.get(q);
+            questionTexts[q] = question.getQuestion();
+            correctOptions[q] = question.getCorrectAnswer();
+            optionCounts[q] = new AtomicIntegerArray(question.getOptions().size() + 1);
+        }
+    }
+
+    /**
+     * Count a submission's choices
+     * @param receivedAt When the host received it (epoch millis)
+     */
+    public void record(QuizAnswer answer, long receivedAt) {
+        for (int q = 0; q < optionCounts.length; q++) {
+            AtomicIntegerArray counts = optionCounts[q];
+            int unanswered = counts.length() - 1;
+            int choice = answer.getChoice(q);
+            counts.incrementAndGet(choice >= 0 && choice < unanswered ? choice : unanswered);
+        }
+        submissions.increment();
+        answerTimes.record(receivedAt - startTime);
+    }
+
+    public String getQuizId() {
+        return quizId;
+    }
+
+    public long getSubmissionCount() {
+        return submissions.sum();
+    }
+
+    public int getQuestionCount() {
+        return optionCounts.length;
+    }
+
+    /**
+     * How many submissions picked this option (options.size() for "no answer")
+     */
+    public int getOptionCount(int questionIndex, int option) {
+        return optionCounts[questionIndex].get(option);
+    }
+
+    /**
+     * Milliseconds from the quiz start to each submission's arrival
+     */
+    public Histogram getAnswerTimes() {
+        return answerTimes;
+    }
+
+    /**
+     * Get formatted statistics text
+     * @return Per-question option bars and the answer time distribution
+     */
+    public String getFormattedStatistics() {
+        long total = getSubmissionCount();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Submissions: %d\n", total));
+        if (total > 0) {
+            sb.append(String.format("Answer time: median %s, 90%% %s, slowest %s\n",
+                seconds(answerTimes.getPercentile(50)), seconds(answerTimes.getPercentile(90)),
+                seconds(answerTimes.getMax())));
+        }
+
+        for (int q = 0; q < optionCounts.length; q++) {
+            AtomicIntegerArray counts = optionCounts[q];
+            int unanswered = counts.length() - 1;
+            int correct = correctOptions[q] >= 0 && correctOptions[q] < unanswered ? counts.get(correctOptions[q]) : 0;
+            sb.append(String.format("\nQ%d. %s  (%.0f%% correct)\n", q + 1, questionTexts[q],
+                total == 0 ? 0.0 : correct * 100.0 / total));
+            for (int option = 0; option <= unanswered; option++) {
+                int count = counts.get(option);
+                String label = option == unanswered ? "-" : String.valueOf((char) ('A' + option));
+                String marker = option == correctOptions[q] ? "*" : " ";
+                int bar = total == 0 ? 0 : (int) Math.min(20, Math.round(count * 20.0 / total));
+                sb.append(String.format("  %s%s %-20s %d\n", marker, label, "#".repeat(bar), count));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String seconds(long millis) {
+        return String.format("%.1fs", millis / 1000.0);
+    }
+}
@@ -0,0 +1,34 @@
+package main.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A PeerConnection was closed, with what it did while open
+ */
+@Name("studyconnect.ConnectionClosed")
+@Label("Connection Closed")
+@Category({"StudyConnect", "Connections"})
+public final class ConnectionClosedEvent extends jdk.jfr.Event {
+    @Label("Peer")
+    public String peer;
+
+    @Label("Lifetime")
+    @Timespan(Timespan.MILLISECONDS)
+    public long lifetime;
+
+    @Label("Frames Written")
+    public long framesWritten;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytesWritten;
+
+    @Label("Frames Unsent")
+    @Description("Frames still queued when the connection closed; they were dropped")
+    public int framesUnsent;
+}
@@ -0,0 +1,18 @@
+package main.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A PeerConnection finished setting up its socket and streams
+ */
+@Name("studyconnect.ConnectionOpened")
+@Label("Connection Opened")
+@Category({"StudyConnect", "Connections"})
+public final class ConnectionOpenedEvent extends jdk.jfr.Event {
+    @Label("Peer")
+    @Description("Remote IP address")
+    public String peer;
+}
@@ -0,0 +1,27 @@
+package main.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The server storing an uploaded file or serving a download
+ */
+@Name("studyconnect.FileTransfer")
+@Label("File Transfer")
+@Category({"StudyConnect", "Server"})
+public final class FileTransferEvent extends jdk.jfr.Event {
+    @Label("Direction")
+    public String direction;
+
+    @Label("File")
+    public String file;
+
+    @Label("User")
+    public String user;
+
+    @Label("Size")
+    @DataAmount
+    public long size;
+}
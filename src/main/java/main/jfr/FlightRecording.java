@@ -0,0 +1,112 @@
+package main.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import main.log.Log;
+import main.log.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+
+/**
+ * Continuous JFR recording using the bundled studyconnect.jfc profile.
+ *
+ * The profile keeps the StudyConnect events (with thresholds, so only slow sends
+ * and dispatches are kept) plus the JDK's GC, CPU, socket and lock events at low
+ * overhead. The recording is bounded by age and size and written to the
+ * destination when the server stops or the JVM exits, so it can be left on in
+ * class and opened in JDK Mission Control afterwards.
+ *
+ * Enabled from system properties by startFromSystemProperties():
+ *   -Dstudyconnect.jfr=server.jfr              destination file
+ *   -Dstudyconnect.jfr.maxAgeMinutes=120        history kept (default 120)
+ *
+ * The same profile works with a stock JVM flag, after copying it out of the jar:
+ *   -XX:StartFlightRecording:settings=studyconnect.jfc,filename=server.jfr
+ */
+public class FlightRecording {
+    public static final String PROFILE = "/studyconnect.jfc";
+
+    private static final Logger LOG = Log.get("JFR");
+    private static final long MAX_SIZE_BYTES = 256L * 1024 * 1024;
+
+    private final Recording recording;
+    private final Path destination;
+
+    private FlightRecording(Recording recording, Path destination) {
+        this.recording = recording;
+        this.destination = destination;
+    }
+
+    /**
+     * Start a recording if studyconnect.jfr names a destination
+     * @return The recording, or null when the property is not set or JFR is unavailable
+     */
+    public static FlightRecording startFromSystemProperties() {
+        String file = System.getProperty("studyconnect.jfr");
+        if (file == null) {
+            return null;
+        }
+        long maxAgeMinutes = Long.getLong("studyconnect.jfr.maxAgeMinutes", 120);
+        try {
+            FlightRecording flight = start(Paths.get(file), Duration.ofMinutes(maxAgeMinutes));
+            LOG.info("Recording", "file", flight.destination, "maxAgeMinutes", maxAgeMinutes);
+            return flight;
+        } catch (IOException | ParseException | IllegalStateException | SecurityException e) {
+            LOG.error("Could not start flight recording", "error", e.getMessage());
+            return null;
+        }
+    }
+
+    public static FlightRecording start(Path destination, Duration maxAge) throws IOException, ParseException {
+        Recording recording = new Recording(loadProfile());
+        recording.setName("StudyConnect");
+        recording.setToDisk(true);
+        recording.setMaxAge(maxAge);
+        recording.setMaxSize(MAX_SIZE_BYTES);
+        recording.setDestination(destination.toAbsolutePath());
+        recording.setDumpOnExit(true);
+        recording.start();
+        return new FlightRecording(recording, destination.toAbsolutePath());
+    }
+
+    /**
+     * The bundled profile
+     */
+    public static Configuration loadProfile() throws IOException, ParseException {
+        InputStream in = FlightRecording.class.getResourceAsStream(PROFILE);
+        if (in == null) {
+            throw new IOException(PROFILE + " not found on the classpath");
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return Configuration.create(reader);
+        }
+    }
+
+    /**
+     * Write what has been recorded so far without stopping
+     */
+    public void dump(Path file) throws IOException {
+        recording.dump(file);
+    }
+
+    /**
+     * Stop recording and write the destination file
+     */
+    public void stop() {
+        try {
+            recording.stop();
+            LOG.info("Recording written", "file", destination);
+        } catch (IllegalStateException e) {
+            // Already stopped (e.g. by the JVM's exit dump)
+        }
+        recording.close();
+    }
+}
@@ -0,0 +1,23 @@
+package main.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The server handling one message from a client: routing, fan-out queueing and
+ * any work done inline (file storage, presence updates)
+ */
+@Name("studyconnect.MessageDispatch")
+@Label("Message Dispatch")
+@Category({"StudyConnect", "Server"})
+public final class MessageDispatchEvent extends jdk.jfr.Event {
+    @Label("Type")
+    public String type;
+
+    @Label("Sender")
+    public String sender;
+
+    @Label("Room")
+    public String room;
+}
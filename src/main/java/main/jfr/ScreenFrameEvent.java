@@ -0,0 +1,37 @@
+package main.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * One screen-share frame: capture, JPEG encode and UDP send to every viewer
+ */
+@Name("studyconnect.ScreenFrame")
+@Label("Screen Frame")
+@Category({"StudyConnect", "Screen Share"})
+public final class ScreenFrameEvent extends jdk.jfr.Event {
+    @Label("Frame")
+    public int frame;
+
+    @Label("Viewers")
+    public int viewers;
+
+    @Label("Size")
+    @DataAmount
+    public int size;
+
+    @Label("Capture Time")
+    @Timespan(Timespan.MICROSECONDS)
+    public long capture;
+
+    @Label("Encode Time")
+    @Timespan(Timespan.MICROSECONDS)
+    public long encode;
+
+    @Label("Send Time")
+    @Timespan(Timespan.MICROSECONDS)
+    public long send;
+}
@@ -0,0 +1,33 @@
+package main.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * One batch written and flushed by a connection's writer thread. The duration runs
+ * from taking the first frame to the end of the flush, so it includes the (short)
+ * linger spent waiting for more frames and any time blocked on a slow receiver.
+ */
+@Name("studyconnect.SendBatch")
+@Label("Send Batch")
+@Category({"StudyConnect", "Connections"})
+public final class SendBatchEvent extends jdk.jfr.Event {
+    @Label("Peer")
+    public String peer;
+
+    @Label("Frames")
+    public int frames;
+
+    @Label("Bytes")
+    @DataAmount
+    public int bytes;
+
+    @Label("Queue Wait")
+    @Description("Time the first frame of the batch spent in the outbound queue")
+    @Timespan(Timespan.MICROSECONDS)
+    public long queueWait;
+}
@@ -0,0 +1,230 @@
+package main.loadtest;
+
+import main.model.FileTransfer;
+import main.model.Message;
+import main.model.PresenceUpdate;
+import main.network.Client;
+import main.network.MessageHandler;
+import main.network.PeerConnection;
+import main.network.Server;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * End-to-end check of cluster mode on one machine.
+ *
+ * Starts three Server nodes on consecutive ports, connects clients to different
+ * nodes and verifies presence gossip (as sequenced presence deltas), cross-node PEER_TO_PEER routing, room relay
+ * and global broadcasts (each delivered exactly once). Exits non-zero on failure.
+ *
+ * Usage: java -cp ... main.loadtest.ClusterIntegrationCheck [basePort]
+ */
+public class ClusterIntegrationCheck {
+    private static final long WAIT_MS = 10000;
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        int basePort = args.length > 0 ? Integer.parseInt(args[0]) : 9600;
+        List<String> nodeIds = Arrays.asList(
+            "127.0.0.1:" + basePort, "127.0.0.1:" + (basePort + 1), "127.0.0.1:" + (basePort + 2));
+
+        System.setProperty("studyconnect.cluster.secret", "cluster-check");
+        List<Server> nodes = new ArrayList<>();
+        for (int i = 0; i < nodeIds.size(); i++) {
+            Server server = new Server(basePort + i, new Recorder(), "admin");
+            server.enableCluster(nodeIds.get(i), nodeIds);
+            server.start();
+            nodes.add(server);
+        }
+
+        Map<String, Recorder> inbox = new LinkedHashMap<>();
+        Map<String, Client> clients = new LinkedHashMap<>();
+        String[][] placement = {{"alice", "0"}, {"bob", "1"}, {"carol", "2"}, {"dave", "0"}};
+        try {
+            check("all nodes linked", () -> {
+                for (Server node : nodes) {
+                    if (node.getCluster().getLinkedNodes().size() != nodeIds.size() - 1) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+
+            for (String[] p : placement) {
+                Recorder recorder = new Recorder();
+                Client client = new Client("127.0.0.1", basePort + Integer.parseInt(p[1]), recorder, p[0]);
+                client.connect();
+                client.sendMessage(new Message(p[0], "all", p[0] + " has joined", Message.MessageType.USER_JOIN));
+                inbox.put(p[0], recorder);
+                clients.put(p[0], client);
+            }
+
+            check("presence gossiped to remote peer lists", () -> {
+                Set<String> peers = inbox.get("alice").onlineUsers();
+                return peers.containsAll(Arrays.asList("admin", "bob", "carol", "dave"));
+            });
+
+            clients.get("alice").sendMessage(new Message("alice", "carol", "hi carol", Message.MessageType.PEER_TO_PEER));
+            check("P2P routed to recipient on another node",
+                () -> inbox.get("carol").count(Message.MessageType.PEER_TO_PEER, "hi carol") == 1);
+
+            for (String member : Arrays.asList("alice", "bob", "dave")) {
+                clients.get(member).joinRoom("cs101");
+            }
+            Thread.sleep(300);
+            Message roomText = new Message("alice", "all", "room hello", Message.MessageType.TEXT);
+            roomText.setRoom("cs101");
+            clients.get("alice").sendMessage(roomText);
+            check("room broadcast reaches members on every node exactly once", () ->
+                inbox.get("alice").count(Message.MessageType.TEXT, "room hello") == 1
+                    && inbox.get("bob").count(Message.MessageType.TEXT, "room hello") == 1
+                    && inbox.get("dave").count(Message.MessageType.TEXT, "room hello") == 1);
+            check("room broadcast skips non-members",
+                () -> inbox.get("carol").count(Message.MessageType.TEXT, "room hello") == 0);
+
+            clients.get("bob").sendMessage(new Message("bob", "all", "global hello", Message.MessageType.TEXT));
+            check("global broadcast reaches every client exactly once", () -> {
+                for (Recorder recorder : inbox.values()) {
+                    if (recorder.count(Message.MessageType.TEXT, "global hello") != 1) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+
+            clients.get("carol").disconnect();
+            check("leave gossiped to remote peer lists", () -> {
+                Set<String> peers = inbox.get("alice").onlineUsers();
+                return peers.contains("bob") && !peers.contains("carol");
+            });
+            check("presence deltas arrived in sequence", () -> inbox.get("alice").presenceGaps() == 0
+                && inbox.get("bob").presenceGaps() == 0);
+
+            // A client posing as node 1 (same address, no secret) must not take over its link
+            Client mallory = new Client("127.0.0.1", basePort, new Recorder(), "mallory");
+            mallory.connect();
+            clients.put("mallory", mallory);
+            PeerConnection realLink = nodes.get(0).getCluster().getLink(nodeIds.get(1));
+            mallory.sendMessage(new Message(nodeIds.get(1), nodeIds.get(0), "dial", Message.MessageType.NODE_HELLO));
+            check("unauthenticated hello is refused and disconnected", () -> !mallory.isConnected());
+            check("existing link survives a spoofed hello",
+                () -> nodes.get(0).getCluster().getLink(nodeIds.get(1)) == realLink && realLink.isRunning());
+        } finally {
+            for (Client client : clients.values()) {
+                client.disconnect();
+            }
+            for (Server node : nodes) {
+                node.stop();
+            }
+        }
+
+        System.out.println(failures == 0 ? "CLUSTER CHECK PASSED" : "CLUSTER CHECK FAILED (" + failures + ")");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private interface Condition {
+        boolean holds() throws Exception;
+    }
+
+    /**
+     * Poll a condition until it holds or the wait budget runs out
+     */
+    private static void check(String name, Condition condition) throws Exception {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        boolean ok = condition.holds();
+        while (!ok && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            ok = condition.holds();
+        }
+        // Give duplicates a moment to show up before accepting an exactly-once result
+        if (ok) {
+            Thread.sleep(200);
+            ok = condition.holds();
+        }
+        System.out.println((ok ? "[PASS] " : "[FAIL] ") + name);
+        if (!ok) {
+            failures++;
+        }
+    }
+
+    /**
+     * Records every message a client receives
+     */
+    private static class Recorder implements MessageHandler {
+        private final List<Message> received = new CopyOnWriteArrayList<>();
+
+        int count(Message.MessageType type, String content) {
+            int n = 0;
+            for (Message m : received) {
+                if (m.getType() == type && content.equals(m.getContent())) {
+                    n++;
+                }
+            }
+            return n;
+        }
+
+        /**
+         * Replay received presence snapshots and deltas into the current online set
+         */
+        Set<String> onlineUsers() {
+            Set<String> online = new TreeSet<>();
+            for (PresenceUpdate update : presenceUpdates()) {
+                if (update.isSnapshot()) {
+                    online.clear();
+                }
+                for (PresenceUpdate.Entry entry : update.getEntries()) {
+                    if (entry.getChange() == PresenceUpdate.Change.LEFT) {
+                        online.remove(entry.getUsername());
+                    } else {
+                        online.add(entry.getUsername());
+                    }
+                }
+            }
+            return online;
+        }
+
+        /**
+         * Deltas that did not directly follow the previous sequence number
+         */
+        int presenceGaps() {
+            int gaps = 0;
+            long sequence = -1;
+            for (PresenceUpdate update : presenceUpdates()) {
+                if (!update.isSnapshot() && update.getSequence() != sequence + 1) {
+                    gaps++;
+                }
+                sequence = update.getSequence();
+            }
+            return gaps;
+        }
+
+        private List<PresenceUpdate> presenceUpdates() {
+            List<PresenceUpdate> updates = new ArrayList<>();
+            for (Message m : received) {
+                if (m.getPresenceUpdate() != null) {
+                    updates.add(m.getPresenceUpdate());
+                }
+            }
+            return updates;
+        }
+
+        @Override
+        public void onMessageReceived(Message message, PeerConnection connection) {
+            received.add(message);
+        }
+
+        @Override
+        public void onFileReceived(FileTransfer fileTransfer, PeerConnection connection) {
+        }
+
+        @Override
+        public void onServerStatus(String status) {
+        }
+
+        @Override
+        public void onConnectionLost(PeerConnection connection) {
+        }
+    }
+}
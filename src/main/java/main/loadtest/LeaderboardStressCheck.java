@@ -0,0 +1,162 @@
+package main.loadtest;
+
+import main.controller.LeaderboardManager;
+import main.controller.LeaderboardManager.LeaderboardEntry;
+import main.model.QuizResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Multi-threaded stress check of LeaderboardManager.
+ *
+ * Writer threads add results for a shared set of users as fast as they can while
+ * reader threads keep rendering the board, as the EDT would. Every writer adds the
+ * same known sequence, so at the end each user's quiz count, points and result
+ * list must match exactly (no lost updates); meanwhile every board a reader
+ * sees must be sorted and count no more results than were added. Exits non-zero
+ * on failure.
+ *
+ * Usage: java -cp ... main.loadtest.LeaderboardStressCheck [writers] [resultsPerWriter] [users] [readers]
+ */
+public class LeaderboardStressCheck {
+
+    private static int failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        int writers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int perWriter = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int users = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        int readers = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+        LeaderboardManager manager = new LeaderboardManager();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicBoolean readersOk = new AtomicBoolean(true);
+        AtomicLong reads = new AtomicLong();
+
+        List<Thread> writerThreads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            Thread thread = new Thread(() -> {
+                await(start);
+                for (int i = 0; i < perWriter; i++) {
+                    // Points cycle 0..9 so every user's expected total is computable
+                    String username = "user" + (i % users);
+                    manager.addResult(username, new QuizResult("QUIZ_" + i, username, 10, i % 10, 10, i % 10));
+                }
+            }, "Writer-" + w);
+            writerThreads.add(thread);
+        }
+
+        List<Thread> readerThreads = new ArrayList<>();
+        for (int r = 0; r < readers; r++) {
+            Thread thread = new Thread(() -> {
+                await(start);
+                while (writing.get()) {
+                    List<LeaderboardEntry> board = manager.getLeaderboard();
+                    long count = 0;
+                    for (int i = 0; i < board.size(); i++) {
+                        count += board.get(i).getTotalQuizzes();
+                        if (i > 0 && board.get(i - 1).getAverageScore() < board.get(i).getAverageScore()) {
+                            readersOk.set(false);
+                        }
+                    }
+                    if (count > (long) writers * perWriter) {
+                        readersOk.set(false);
+                    }
+                    manager.getFormattedLeaderboard();
+                    reads.incrementAndGet();
+                }
+            }, "Reader-" + r);
+            readerThreads.add(thread);
+        }
+
+        for (Thread thread : readerThreads) {
+            thread.start();
+        }
+        for (Thread thread : writerThreads) {
+            thread.start();
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        for (Thread thread : writerThreads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - began;
+        writing.set(false);
+        for (Thread thread : readerThreads) {
+            thread.join();
+        }
+
+        long total = (long) writers * perWriter;
+        System.out.printf("%d writers x %d results over %d users: %.0f results/s, %d board renders%n",
+            writers, perWriter, users, total * 1e9 / elapsed, reads.get());
+
+        long expectedTotal = 0;
+        boolean usersOk = true;
+        for (int u = 0; u < users; u++) {
+            // Results of user u per writer: indexes i = u, u + users, ... below perWriter
+            int count = perWriter > u ? (perWriter - 1 - u) / users + 1 : 0;
+            int points = 0;
+            for (int i = u; i < perWriter; i += users) {
+                points += i % 10;
+            }
+            String username = "user" + u;
+            LeaderboardEntry entry = entry(manager, username);
+            int expectedCount = count * writers;
+            expectedTotal += expectedCount;
+            if (expectedCount == 0) {
+                usersOk &= entry == null;
+                continue;
+            }
+            usersOk &= entry != null && entry.getTotalQuizzes() == expectedCount
+                && entry.getTotalScore() == points * writers
+                && manager.getUserResults(username).size() == expectedCount;
+        }
+        long counted = 0;
+        for (LeaderboardEntry entry : manager.getLeaderboard()) {
+            counted += entry.getTotalQuizzes();
+        }
+
+        check("every result counted (" + counted + " of " + total + ")", counted == total && expectedTotal == total);
+        check("per-user counts, points and histories exact", usersOk);
+        check("readers saw sorted, consistent boards", readersOk.get());
+        check("ranks match the board", ranksMatch(manager));
+
+        System.out.println(failures == 0 ? "LEADERBOARD CHECK PASSED" : "LEADERBOARD CHECK FAILED (" + failures + ")");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static LeaderboardEntry entry(LeaderboardManager manager, String username) {
+        int rank = manager.getUserRank(username);
+        return rank < 0 ? null : manager.getLeaderboard().get(rank - 1);
+    }
+
+    private static boolean ranksMatch(LeaderboardManager manager) {
+        List<LeaderboardEntry> board = manager.getLeaderboard();
+        for (int i = 0; i < board.size(); i++) {
+            if (manager.getUserRank(board.get(i).getUsername()) != i + 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.println((ok ? "[PASS] " : "[FAIL] ") + name);
+        if (!ok) {
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package main.loadtest;
+
+import main.metrics.Histogram;
+import main.model.FileMetadata;
+import main.model.FileTransfer;
+import main.model.Message;
+import main.model.QuizAnswer;
+import main.network.Client;
+import main.network.MessageHandler;
+import main.network.PeerConnection;
+import main.network.Server;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless load generator and soak test for the classroom server.
+ *
+ * Spawns N simulated students, each a real Client: USER_JOIN, automatic
+ * heartbeats, chat at a configurable rate, a P2P echo to itself as a request/response
+ * probe, QUIZ_ANSWER bursts where the whole class answers within one second, and
+ * periodic file upload + download + delete. Every message carries its send time
+ * (all clients live in this JVM, so System.nanoTime is comparable), and each
+ * receiver records the end-to-end latency per traffic type.
+ *
+ * By default an embedded Server is started on --port; pass --host to target a
+ * server that is already running, and --server-pid to sample its CPU, threads and
+ * RSS from /proc. Exits with status 1 when --max-p99-ms is exceeded, so the run can
+ * gate a build.
+ *
+ * Usage: java -cp ... main.loadtest.LoadGenerator [--clients 200] [--duration 60]
+ *        [--chat-rate 0.2] [--quiz-interval 20] [--file-interval 60] [--file-kb 256]
+ *        [--ramp-ms 5] [--port 9800] [--host 127.0.0.1] [--server-pid 1234]
+ *        [--max-p99-ms 0] [--verbose]
+ */
+public class LoadGenerator {
+    private static final String STAMP = "lg ";
+
+    private enum Op {
+        CHAT, ECHO, QUIZ, UPLOAD, DOWNLOAD
+    }
+
+    // Options
+    private int clientCount = 200;
+    private int durationSec = 60;
+    private double chatRate = 0.2; // messages per second per client
+    private int quizIntervalSec = 20;
+    private int fileIntervalSec = 60;
+    private int fileKb = 256;
+    private int rampMs = 5;
+    private int port = 9800;
+    private String host;
+    private long serverPid;
+    private double maxP99Ms;
+    private boolean verbose;
+
+    private final Map<Op, Histogram> latency = new EnumMap<>(Op.class);
+    private final Map<Op, AtomicLong> sent = new EnumMap<>(Op.class);
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong disconnects = new AtomicLong();
+    private final AtomicLong admissionNotices = new AtomicLong();
+    private final List<SimStudent> students = new CopyOnWriteArrayList<>();
+    private volatile boolean running;
+    private Server embedded;
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator();
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--clients": generator.clientCount = Integer.parseInt(value); i++; break;
+                case "--duration": generator.durationSec = Integer.parseInt(value); i++; break;
+                case "--chat-rate": generator.chatRate = Double.parseDouble(value); i++; break;
+                case "--quiz-interval": generator.quizIntervalSec = Integer.parseInt(value); i++; break;
+                case "--file-interval": generator.fileIntervalSec = Integer.parseInt(value); i++; break;
+                case "--file-kb": generator.fileKb = Integer.parseInt(value); i++; break;
+                case "--ramp-ms": generator.rampMs = Integer.parseInt(value); i++; break;
+                case "--port": generator.port = Integer.parseInt(value); i++; break;
+                case "--host": generator.host = value; i++; break;
+                case "--server-pid": generator.serverPid = Long.parseLong(value); i++; break;
+                case "--max-p99-ms": generator.maxP99Ms = Double.parseDouble(value); i++; break;
+                case "--verbose": generator.verbose = true; break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        System.exit(generator.run() ? 0 : 1);
+    }
+
+    private LoadGenerator() {
+        for (Op op : Op.values()) {
+            latency.put(op, new Histogram());
+            sent.put(op, new AtomicLong());
+        }
+    }
+
+    private boolean run() throws Exception {
+        PrintStream report = System.out;
+        if (!verbose) {
+            // Server and client log a line per forwarded message; keep the report readable
+            System.setOut(new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+            }));
+        }
+
+        String target = host != null ? host : "127.0.0.1";
+        if (host == null) {
+            System.setProperty("studyconnect.maxConnections", String.valueOf(Math.max(clientCount, 50)));
+            System.setProperty("studyconnect.connectBurst", String.valueOf(Math.max(clientCount, 100)));
+            embedded = new Server(port, new SimStudent(null), "admin");
+            embedded.start();
+            Thread.sleep(300);
+        }
+
+        ResourceSampler sampler = new ResourceSampler(serverPid);
+        ScheduledExecutorService driver = Executors.newScheduledThreadPool(4, task -> {
+            Thread thread = new Thread(task, "LoadDriver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Random random = new Random(42);
+        running = true;
+
+        report.println(String.format("Connecting %d clients to %s:%d (%s server)...", clientCount, target, port,
+            host == null ? "embedded" : "external"));
+        long connectStart = System.nanoTime();
+        for (int i = 0; i < clientCount; i++) {
+            SimStudent student = new SimStudent("student" + i);
+            student.client = new Client(target, port, student, student.name);
+            if (!student.client.connect()) {
+                report.println("Client " + i + " failed to connect, stopping ramp-up");
+                break;
+            }
+            student.client.sendMessage(new Message(student.name, "all", student.name + " has joined the chat",
+                Message.MessageType.USER_JOIN));
+            students.add(student);
+            if (rampMs > 0) {
+                Thread.sleep(rampMs);
+            }
+        }
+        long connectMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStart);
+        report.println(String.format("Connected %d clients in %d ms", students.size(), connectMs));
+
+        driver.scheduleAtFixedRate(sampler::sample, 0, 1, TimeUnit.SECONDS);
+        for (SimStudent student : students) {
+            if (chatRate > 0) {
+                long periodMs = (long) (1000 / chatRate);
+                driver.scheduleAtFixedRate(student::chat, random.nextInt((int) periodMs), periodMs,
+                    TimeUnit.MILLISECONDS);
+            }
+            driver.scheduleAtFixedRate(student::echo, random.nextInt(5000), 5000, TimeUnit.MILLISECONDS);
+            if (fileIntervalSec > 0) {
+                driver.scheduleAtFixedRate(student::upload, random.nextInt(fileIntervalSec * 1000),
+                    fileIntervalSec * 1000L, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (quizIntervalSec > 0) {
+            driver.scheduleAtFixedRate(() -> {
+                // Whole class answers within one second, like the end of a timed quiz
+                for (SimStudent student : students) {
+                    driver.schedule(student::answerQuiz, ThreadLocalRandom.current().nextInt(1000),
+                        TimeUnit.MILLISECONDS);
+                }
+            }, quizIntervalSec, quizIntervalSec, TimeUnit.SECONDS);
+        }
+
+        long runStart = System.nanoTime();
+        for (int second = 1; second <= durationSec; second++) {
+            Thread.sleep(1000);
+            if (second % 10 == 0) {
+                Histogram chat = latency.get(Op.CHAT);
+                report.println(String.format("  t=%3ds delivered=%d chat p99=%.1fms clients=%d",
+                    second, delivered.get(), chat.getPercentile(99) / 1000.0, connectedCount()));
+            }
+        }
+        running = false;
+        Thread.sleep(2000); // let in-flight deliveries land
+        double elapsedSec = (System.nanoTime() - runStart) / 1e9;
+        driver.shutdownNow();
+
+        boolean passed = printReport(report, elapsedSec, sampler);
+
+        for (SimStudent student : students) {
+            student.client.disconnect();
+        }
+        if (embedded != null) {
+            embedded.stop();
+        }
+        System.setOut(report);
+        return passed;
+    }
+
+    private int connectedCount() {
+        int n = 0;
+        for (SimStudent student : students) {
+            if (student.client.isConnected()) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private boolean printReport(PrintStream out, double elapsedSec, ResourceSampler sampler) {
+        out.println();
+        out.println(String.format("%-9s %-9s %-10s %-9s %-9s %-9s %-9s %-9s",
+            "Traffic", "Sent", "Received", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)", "mean(ms)"));
+        out.println("─".repeat(80));
+        for (Op op : Op.values()) {
+            Histogram h = latency.get(op);
+            out.println(String.format("%-9s %-9d %-10d %-9.2f %-9.2f %-9.2f %-9.2f %-9.2f", op,
+                sent.get(op).get(), h.getCount(), h.getPercentile(50) / 1000.0, h.getPercentile(99) / 1000.0,
+                h.getPercentile(99.9) / 1000.0, h.getMax() / 1000.0, h.getMean() / 1000.0));
+        }
+        out.println("─".repeat(80));
+        out.println(String.format("Throughput: %.0f deliveries/s over %.1fs (%d total)",
+            delivered.get() / elapsedSec, elapsedSec, delivered.get()));
+        out.println(String.format("Clients: %d connected at end, %d connection losses, %d admission notices",
+            connectedCount(), disconnects.get(), admissionNotices.get()));
+        out.println(sampler.summary());
+        if (embedded != null) {
+            int queued = 0;
+            for (PeerConnection connection : embedded.getConnections()) {
+                queued += connection.getQueuedFrames();
+            }
+            out.println(String.format("Embedded server: %d connections, %d frames still queued",
+                embedded.getConnections().size(), queued));
+        }
+
+        double chatP99Ms = latency.get(Op.CHAT).getPercentile(99) / 1000.0;
+        if (maxP99Ms > 0 && chatP99Ms > maxP99Ms) {
+            out.println(String.format("FAILED: chat p99 %.2fms exceeds %.2fms", chatP99Ms, maxP99Ms));
+            return false;
+        }
+        return true;
+    }
+
+    private static long stamp(String content) {
+        try {
+            return content != null && content.startsWith(STAMP) ? Long.parseLong(content.substring(STAMP.length())) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void recordSince(Op op, long sentNanos) {
+        latency.get(op).record((System.nanoTime() - sentNanos) / 1000);
+        delivered.incrementAndGet();
+    }
+
+    /**
+     * One simulated student; also serves as the (silent) handler of the embedded server
+     */
+    private class SimStudent implements MessageHandler {
+        final String name;
+        Client client;
+        final Map<String, Long> pendingUploads = new ConcurrentHashMap<>(); // fileId -> send time
+        final Map<String, Long> pendingDownloads = new ConcurrentHashMap<>(); // fileName -> send time
+        final Map<String, FileMetadata> uploaded = new ConcurrentHashMap<>(); // fileName -> metadata, deleted once downloaded
+
+        SimStudent(String name) {
+            this.name = name;
+        }
+
+        private boolean active() {
+            return running && client != null && client.isConnected();
+        }
+
+        void chat() {
+            if (active()) {
+                sent.get(Op.CHAT).incrementAndGet();
+                client.sendMessage(new Message(name, "all", STAMP + System.nanoTime(), Message.MessageType.TEXT));
+            }
+        }
+
+        void echo() {
+            if (active()) {
+                sent.get(Op.ECHO).incrementAndGet();
+                client.sendMessage(new Message(name, name, STAMP + System.nanoTime(),
+                    Message.MessageType.PEER_TO_PEER));
+            }
+        }
+
+        void answerQuiz() {
+            if (active()) {
+                QuizAnswer answer = new QuizAnswer("loadtest-quiz", name);
+                for (int q = 0; q < 10; q++) {
+                    answer.addAnswer(q, ThreadLocalRandom.current().nextInt(4));
+                }
+                Message message = new Message(name, "all", STAMP + System.nanoTime(),
+                    Message.MessageType.QUIZ_ANSWER);
+                message.setQuizAnswer(answer);
+                sent.get(Op.QUIZ).incrementAndGet();
+                client.sendMessage(message);
+            }
+        }
+
+        void upload() {
+            if (!active()) {
+                return;
+            }
+            byte[] data = new byte[fileKb * 1024];
+            ThreadLocalRandom.current().nextBytes(data);
+            String fileId = UUID.randomUUID().toString();
+            String fileName = "loadtest-" + fileId + ".bin";
+            FileMetadata metadata = new FileMetadata(fileId, fileName, data.length, name);
+            Message message = new Message(name, "server", fileName, Message.MessageType.FILE_UPLOAD);
+            message.setFileMetadata(metadata);
+            message.setFileTransfer(new FileTransfer(fileName, data.length, data, name, "server"));
+            pendingUploads.put(fileId, System.nanoTime());
+            sent.get(Op.UPLOAD).incrementAndGet();
+            client.sendMessage(message);
+        }
+
+        @Override
+        public void onMessageReceived(Message message, PeerConnection connection) {
+            if (client == null) {
+                return; // embedded server's own handler
+            }
+            switch (message.getType()) {
+                case TEXT:
+                case QUIZ_ANSWER:
+                case PEER_TO_PEER: {
+                    long sentAt = stamp(message.getContent());
+                    if (sentAt > 0) {
+                        Op op = message.getType() == Message.MessageType.TEXT ? Op.CHAT
+                            : message.getType() == Message.MessageType.QUIZ_ANSWER ? Op.QUIZ : Op.ECHO;
+                        recordSince(op, sentAt);
+                    }
+                    break;
+                }
+                case FILE_LIST_RESPONSE:
+                    if (message.getFileList() != null && !pendingUploads.isEmpty()) {
+                        for (FileMetadata file : message.getFileList()) {
+                            Long sentAt = pendingUploads.remove(file.getFileId());
+                            if (sentAt != null) {
+                                recordSince(Op.UPLOAD, sentAt);
+                                requestDownload(file);
+                            }
+                        }
+                    }
+                    break;
+                case FILE: {
+                    Long sentAt = pendingDownloads.remove(message.getContent());
+                    if (sentAt != null) {
+                        recordSince(Op.DOWNLOAD, sentAt);
+                        deleteUpload(message.getContent());
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+
+        private void requestDownload(FileMetadata file) {
+            Message request = new Message(name, "server", file.getFileName(),
+                Message.MessageType.FILE_DOWNLOAD_REQUEST);
+            request.setFileMetadata(file);
+            pendingDownloads.put(file.getFileName(), System.nanoTime());
+            sent.get(Op.DOWNLOAD).incrementAndGet();
+            client.sendMessage(request);
+            uploaded.put(file.getFileName(), file);
+        }
+
+        private void deleteUpload(String fileName) {
+            FileMetadata file = uploaded.remove(fileName);
+            if (file != null) {
+                Message delete = new Message(name, "server", fileName, Message.MessageType.FILE_DELETE_REQUEST);
+                delete.setFileMetadata(file);
+                client.sendMessage(delete);
+            }
+        }
+
+        @Override
+        public void onFileReceived(FileTransfer fileTransfer, PeerConnection connection) {
+        }
+
+        @Override
+        public void onServerStatus(String status) {
+            if (status.startsWith("Server busy") || status.startsWith("Rejected")) {
+                admissionNotices.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onConnectionLost(PeerConnection connection) {
+            if (client != null && running) {
+                disconnects.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Samples CPU, threads and memory once a second: from /proc for an external
+     * server pid, otherwise for this JVM (embedded server plus simulated clients)
+     */
+    private static class ResourceSampler {
+        private static final double CLOCK_TICKS = 100.0; // USER_HZ on Linux
+        private final long pid;
+        private double cpuSum;
+        private double cpuPeak;
+        private int samples;
+        private long peakThreads;
+        private long peakMemoryKb;
+        private long lastCpuTicks = -1;
+        private long lastSampleNanos;
+
+        ResourceSampler(long pid) {
+            this.pid = pid;
+        }
+
+        synchronized void sample() {
+            try {
+                if (pid > 0) {
+                    sampleProc();
+                } else {
+                    sampleJvm();
+                }
+            } catch (Exception e) {
+                // Process gone or /proc unavailable: keep what we have
+            }
+        }
+
+        private void sampleProc() throws Exception {
+            String stat = new String(Files.readAllBytes(Paths.get("/proc/" + pid + "/stat")));
+            // Fields after the parenthesised command name; utime=14, stime=15, threads=20, rss=24
+            String[] f = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            long ticks = Long.parseLong(f[11]) + Long.parseLong(f[12]);
+            peakThreads = Math.max(peakThreads, Long.parseLong(f[17]));
+            peakMemoryKb = Math.max(peakMemoryKb, Long.parseLong(f[21]) * 4);
+            long now = System.nanoTime();
+            if (lastCpuTicks >= 0) {
+                double cpu = (ticks - lastCpuTicks) / CLOCK_TICKS / ((now - lastSampleNanos) / 1e9) * 100;
+                addCpu(cpu);
+            }
+            lastCpuTicks = ticks;
+            lastSampleNanos = now;
+        }
+
+        private void sampleJvm() {
+            java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+            if (os instanceof com.sun.management.OperatingSystemMXBean) {
+                double load = ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuLoad();
+                if (load >= 0) {
+                    addCpu(load * 100 * Runtime.getRuntime().availableProcessors());
+                }
+            }
+            peakThreads = Math.max(peakThreads, ManagementFactory.getThreadMXBean().getThreadCount());
+            Runtime rt = Runtime.getRuntime();
+            peakMemoryKb = Math.max(peakMemoryKb, (rt.totalMemory() - rt.freeMemory()) / 1024);
+        }
+
+        private void addCpu(double cpu) {
+            cpuSum += cpu;
+            cpuPeak = Math.max(cpuPeak, cpu);
+            samples++;
+        }
+
+        synchronized String summary() {
+            return String.format("Resources (%s): CPU avg %.0f%% peak %.0f%%, peak threads %d, peak %s %d MB",
+                pid > 0 ? "server pid " + pid : "this JVM incl. clients", samples == 0 ? 0 : cpuSum / samples,
+                cpuPeak, peakThreads, pid > 0 ? "RSS" : "heap", peakMemoryKb / 1024);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package main.loadtest;
+
+import main.model.FileTransfer;
+import main.model.Message;
+import main.network.Client;
+import main.network.ExecutionMode;
+import main.network.MessageHandler;
+import main.network.PeerConnection;
+import main.network.Server;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares platform-thread and virtual-thread execution modes.
+ *
+ * Starts a local Server, connects N simulated clients (each with its own reader and
+ * heartbeat thread), then fires one request/response round per client and measures
+ * connect time, round-trip wall time, live OS threads and heap.
+ *
+ * Usage: java -cp ... main.loadtest.ThreadModeBenchmark [--clients 1000,10000]
+ *        [--modes platform,virtual] [--port 9900] [--rounds 3]
+ *
+ * The virtual mode needs a JDK 21+ runtime; on older JDKs it reports as platform.
+ * 10k clients opens ~20k sockets, so raise "ulimit -n" accordingly.
+ */
+public class ThreadModeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String clientCounts = "1000,10000";
+        String modes = "platform,virtual";
+        int basePort = 9900;
+        int rounds = 3;
+
+        for (int i = 0; i < args.length - 1; i += 2) {
+            switch (args[i]) {
+                case "--clients": clientCounts = args[i + 1]; break;
+                case "--modes": modes = args[i + 1]; break;
+                case "--port": basePort = Integer.parseInt(args[i + 1]); break;
+                case "--rounds": rounds = Integer.parseInt(args[i + 1]); break;
+                default:
+                    System.err.println("Unknown option: " + args[i]);
+                    return;
+            }
+        }
+
+        System.out.println(String.format("%-9s %-8s %-12s %-12s %-12s %-10s %-10s",
+            "Mode", "Clients", "Connect(ms)", "Round(ms)", "Msgs/sec", "OSThreads", "Heap(MB)"));
+        System.out.println("─".repeat(80));
+
+        int port = basePort;
+        for (String countText : clientCounts.split(",")) {
+            int clients = Integer.parseInt(countText.trim());
+            for (String modeText : modes.split(",")) {
+                ExecutionMode mode = ExecutionMode.valueOf(modeText.trim().toUpperCase()).effective();
+                try {
+                    runScenario(mode, clients, port++, rounds);
+                } catch (Throwable t) {
+                    // Running out of native threads is a legitimate platform-mode outcome at 10k
+                    System.out.println(String.format("%-9s %-8d FAILED: %s", mode, clients, t));
+                }
+                System.gc();
+                Thread.sleep(1000);
+            }
+        }
+    }
+
+    private static void runScenario(ExecutionMode mode, int clientCount, int port, int rounds) throws Exception {
+        // Measure thread cost, not admission control: every client must be served at once
+        System.setProperty("studyconnect.maxConnections", String.valueOf(clientCount));
+        System.setProperty("studyconnect.connectRate", String.valueOf(clientCount));
+        System.setProperty("studyconnect.connectBurst", String.valueOf(clientCount));
+        Server server = new Server(port, new QuietHandler(null), "admin", mode);
+        server.start();
+        Thread.sleep(300);
+
+        List<Client> clients = new ArrayList<>(clientCount);
+        CountDownLatch[] roundLatch = new CountDownLatch[1];
+        long connectStart = System.nanoTime();
+        try {
+            for (int i = 0; i < clientCount; i++) {
+                Client client = new Client("127.0.0.1", port, new QuietHandler(roundLatch), "sim" + i, mode);
+                if (!client.connect()) {
+                    throw new IllegalStateException("client " + i + " failed to connect");
+                }
+                clients.add(client);
+            }
+            long connectMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStart);
+
+            long bestRoundNanos = Long.MAX_VALUE;
+            for (int r = 0; r < rounds; r++) {
+                roundLatch[0] = new CountDownLatch(clientCount);
+                long roundStart = System.nanoTime();
+                for (int i = 0; i < clientCount; i++) {
+                    clients.get(i).sendMessage(new Message("sim" + i, "server", "",
+                        Message.MessageType.FILE_LIST_REQUEST));
+                }
+                if (!roundLatch[0].await(120, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("round timed out, " + roundLatch[0].getCount() + " replies missing");
+                }
+                bestRoundNanos = Math.min(bestRoundNanos, System.nanoTime() - roundStart);
+            }
+
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            Runtime rt = Runtime.getRuntime();
+            long heapMb = (rt.totalMemory() - rt.freeMemory()) / (1024 * 1024);
+            double roundMs = bestRoundNanos / 1_000_000.0;
+            System.out.println(String.format("%-9s %-8d %-12d %-12.1f %-12.0f %-10d %-10d",
+                mode, clientCount, connectMs, roundMs, clientCount / (roundMs / 1000.0),
+                threads.getThreadCount(), heapMb));
+        } finally {
+            for (Client client : clients) {
+                client.disconnect();
+            }
+            server.stop();
+        }
+    }
+
+    /**
+     * Handler that swallows status chatter and counts FILE_LIST_RESPONSE replies
+     */
+    private static class QuietHandler implements MessageHandler {
+        private final CountDownLatch[] latch;
+
+        QuietHandler(CountDownLatch[] latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void onMessageReceived(Message message, PeerConnection connection) {
+            if (latch != null && message.getType() == Message.MessageType.FILE_LIST_RESPONSE && latch[0] != null) {
+                latch[0].countDown();
+            }
+        }
+
+        @Override
+        public void onFileReceived(FileTransfer fileTransfer, PeerConnection connection) {
+        }
+
+        @Override
+        public void onServerStatus(String status) {
+        }
+
+        @Override
+        public void onConnectionLost(PeerConnection connection) {
+        }
+    }
+}
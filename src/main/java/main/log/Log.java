@@ -0,0 +1,89 @@
+package main.log;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Entry point for the asynchronous logger.
+ *
+ * Loggers are per category and share one LogRing, whose writer thread prints
+ * "HH:mm:ss.SSS LEVEL [CATEGORY] event key=value ..." lines; WARN and ERROR go to
+ * stderr, the rest to stdout. Levels come from system properties and can be
+ * changed at runtime:
+ *   -Dstudyconnect.log.level=INFO          default for every category
+ *   -Dstudyconnect.log.server=DEBUG        one category (lower-case tag, no spaces)
+ *   -Dstudyconnect.log.udpbroadcaster=OFF
+ */
+public final class Log {
+    private static final int RING_CAPACITY = 16384;
+    private static final LogLevel DEFAULT_LEVEL = parse(System.getProperty("studyconnect.log.level"), LogLevel.INFO);
+    private static final Map<String, Logger> LOGGERS = new ConcurrentHashMap<>();
+    private static volatile LogRing ring;
+
+    private Log() {
+    }
+
+    /**
+     * The logger for a category, created on first use
+     */
+    public static Logger get(String category) {
+        return LOGGERS.computeIfAbsent(category, name -> {
+            String key = name.toLowerCase(Locale.ROOT).replace(" ", "");
+            LogLevel level = parse(System.getProperty("studyconnect.log." + key), DEFAULT_LEVEL);
+            return new Logger(name, key, level);
+        });
+    }
+
+    public static Collection<Logger> getLoggers() {
+        return LOGGERS.values();
+    }
+
+    /**
+     * Events dropped because the writer could not keep up
+     */
+    public static long getDropped() {
+        return ring == null ? 0 : ring.getDropped();
+    }
+
+    /**
+     * Block until queued events are printed (up to timeoutMs), e.g. before exiting
+     */
+    public static void flush(long timeoutMs) {
+        if (ring != null) {
+            ring.flush(timeoutMs);
+        }
+    }
+
+    /**
+     * The shared ring, started the first time an enabled event is logged
+     */
+    static LogRing ring() {
+        LogRing current = ring;
+        if (current == null) {
+            synchronized (Log.class) {
+                current = ring;
+                if (current == null) {
+                    current = new LogRing(RING_CAPACITY, System.out, System.err);
+                    final LogRing started = current;
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> started.flush(1000), "LogFlush"));
+                    ring = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static LogLevel parse(String value, LogLevel fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return LogLevel.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("[LOG] Unknown log level '" + value + "', using " + fallback);
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package main.log;
+
+/**
+ * Logger thresholds, lowest first. A Logger set to a level passes that level and
+ * everything above it; OFF passes nothing.
+ */
+public enum LogLevel {
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR,
+    OFF
+}
@@ -0,0 +1,207 @@
+package main.log;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed-size ring of preallocated log events drained by a single writer thread.
+ *
+ * Producers claim a sequence number with a CAS on the cursor, fill the slot and
+ * publish it by writing the sequence into the slot. They never wait: when the
+ * writer has fallen a whole ring behind the event is dropped and counted. The
+ * writer formats events in order, batches the lines, and prints them with one
+ * write per stream per batch, so the console lock is taken by one thread only.
+ * When the ring is empty the writer parks until a producer unparks it, so a
+ * process that logs nothing costs no wakeups.
+ */
+final class LogRing {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLEEP_PARK_NANOS = TimeUnit.SECONDS.toNanos(1); // backstop for a missed unpark
+    private static final int MAX_BATCH = 256;
+    private static final DateTimeFormatter TIME =
+        DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private final Event[] slots;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final PrintStream out;
+    private final PrintStream err;
+    private final StringBuilder outBatch = new StringBuilder(8192);
+    private final StringBuilder errBatch = new StringBuilder(1024);
+    private final Thread writer;
+    private volatile boolean sleeping; // writer is parked (or about to) and needs an unpark
+
+    /**
+     * @param capacity Events held before producers start dropping; rounded up to a power of two
+     */
+    LogRing(int capacity, PrintStream out, PrintStream err) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Event[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Event();
+        }
+        this.out = out;
+        this.err = err;
+        this.writer = new Thread(this::drainLoop, "LogWriter");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @return false if the ring was full and the event was dropped
+     */
+    boolean publish(LogLevel level, String category, String event, String k1, Object v1,
+                    String k2, Object v2, String k3, Object v3) {
+        long sequence;
+        do {
+            sequence = cursor.get();
+            if (sequence - consumed.get() >= slots.length) {
+                dropped.increment();
+                return false;
+            }
+        } while (!cursor.compareAndSet(sequence, sequence + 1));
+
+        Event slot = slots[(int) (sequence & mask)];
+        slot.time = System.currentTimeMillis();
+        slot.level = level;
+        slot.category = category;
+        slot.event = event;
+        slot.k1 = k1;
+        slot.v1 = v1;
+        slot.k2 = k2;
+        slot.v2 = v2;
+        slot.k3 = k3;
+        slot.v3 = v3;
+        slot.published = sequence; // volatile write makes the fields above visible to the writer
+        if (sleeping) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    long getWritten() {
+        return consumed.get();
+    }
+
+    /**
+     * Wait (briefly) until everything published so far has been printed
+     */
+    void flush(long timeoutMs) {
+        long target = cursor.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (consumed.get() < target && System.nanoTime() < deadline && writer.isAlive()) {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    private void drainLoop() {
+        while (true) {
+            if (drain() > 0) {
+                continue;
+            }
+            // Announce the park before the last look: a producer either sees the flag or its event is seen here
+            sleeping = true;
+            if (slots[(int) (consumed.get() & mask)].published != consumed.get()) {
+                LockSupport.parkNanos(this, SLEEP_PARK_NANOS);
+            }
+            sleeping = false;
+        }
+    }
+
+    /**
+     * Print every event that is ready, in sequence order
+     * @return Number of events printed
+     */
+    private int drain() {
+        int count = 0;
+        long next = consumed.get();
+        while (true) {
+            Event slot = slots[(int) (next & mask)];
+            if (slot.published != next) {
+                break; // empty, or claimed but not yet filled in
+            }
+            format(slot, slot.level.ordinal() >= LogLevel.WARN.ordinal() ? errBatch : outBatch);
+            slot.clear();
+            consumed.lazySet(++next);
+            if (++count % MAX_BATCH == 0) {
+                print();
+            }
+        }
+        print();
+        return count;
+    }
+
+    private void print() {
+        if (outBatch.length() > 0) {
+            out.print(outBatch);
+            out.flush();
+            outBatch.setLength(0);
+        }
+        if (errBatch.length() > 0) {
+            err.print(errBatch);
+            err.flush();
+            errBatch.setLength(0);
+        }
+    }
+
+    private static void format(Event e, StringBuilder line) {
+        TIME.formatTo(Instant.ofEpochMilli(e.time), line);
+        line.append(' ').append(e.level.name());
+        for (int i = e.level.name().length(); i < 5; i++) {
+            line.append(' ');
+        }
+        line.append(" [").append(e.category).append("] ").append(e.event);
+        field(line, e.k1, e.v1);
+        field(line, e.k2, e.v2);
+        field(line, e.k3, e.v3);
+        line.append(System.lineSeparator());
+    }
+
+    private static void field(StringBuilder line, String key, Object value) {
+        if (key == null) {
+            return;
+        }
+        String text = String.valueOf(value);
+        line.append(' ').append(key).append('=');
+        if (text.isEmpty() || text.indexOf(' ') >= 0 || text.indexOf('"') >= 0) {
+            line.append('"').append(text.replace("\"", "\\\"")).append('"');
+        } else {
+            line.append(text);
+        }
+    }
+
+    private static final class Event {
+        volatile long published = -1;
+        long time;
+        LogLevel level;
+        String category;
+        String event;
+        String k1;
+        Object v1;
+        String k2;
+        Object v2;
+        String k3;
+        Object v3;
+
+        void clear() {
+            // Drop references so a big message object isn't kept alive by the ring
+            event = null;
+            v1 = null;
+            v2 = null;
+            v3 = null;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package main.log;
+
+/**
+ * Logger for one category (the tag printed in brackets, e.g. "SERVER").
+ *
+ * Events are a short fixed text plus up to three key/value fields; the line is only
+ * put together later on the log writer thread. Each level has overloads by field
+ * count instead of varargs, so a call at a disabled level is a single volatile read
+ * and allocates nothing. Field values are turned into text on the writer thread, so
+ * pass values that won't change afterwards (strings, numbers, enums), and on hot
+ * paths pass values already at hand rather than building strings for the event.
+ */
+public final class Logger {
+    private final String category;
+    private final String key;
+    private volatile LogLevel level;
+
+    Logger(String category, String key, LogLevel level) {
+        this.category = category;
+        this.key = key;
+        this.level = level;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * Property suffix for this category: studyconnect.log.&lt;key&gt;
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public LogLevel getLevel() {
+        return level;
+    }
+
+    public void setLevel(LogLevel level) {
+        this.level = level;
+    }
+
+    public boolean isEnabled(LogLevel level) {
+        return level.ordinal() >= this.level.ordinal();
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(LogLevel.DEBUG);
+    }
+
+    // DEBUG
+
+    public void debug(String event) {
+        log(LogLevel.DEBUG, event, null, null, null, null, null, null);
+    }
+
+    public void debug(String event, String k1, Object v1) {
+        log(LogLevel.DEBUG, event, k1, v1, null, null, null, null);
+    }
+
+    public void debug(String event, String k1, Object v1, String k2, Object v2) {
+        log(LogLevel.DEBUG, event, k1, v1, k2, v2, null, null);
+    }
+
+    public void debug(String event, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        log(LogLevel.DEBUG, event, k1, v1, k2, v2, k3, v3);
+    }
+
+    // INFO
+
+    public void info(String event) {
+        log(LogLevel.INFO, event, null, null, null, null, null, null);
+    }
+
+    public void info(String event, String k1, Object v1) {
+        log(LogLevel.INFO, event, k1, v1, null, null, null, null);
+    }
+
+    public void info(String event, String k1, Object v1, String k2, Object v2) {
+        log(LogLevel.INFO, event, k1, v1, k2, v2, null, null);
+    }
+
+    public void info(String event, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        log(LogLevel.INFO, event, k1, v1, k2, v2, k3, v3);
+    }
+
+    // WARN
+
+    public void warn(String event) {
+        log(LogLevel.WARN, event, null, null, null, null, null, null);
+    }
+
+    public void warn(String event, String k1, Object v1) {
+        log(LogLevel.WARN, event, k1, v1, null, null, null, null);
+    }
+
+    public void warn(String event, String k1, Object v1, String k2, Object v2) {
+        log(LogLevel.WARN, event, k1, v1, k2, v2, null, null);
+    }
+
+    public void warn(String event, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        log(LogLevel.WARN, event, k1, v1, k2, v2, k3, v3);
+    }
+
+    // ERROR
+
+    public void error(String event) {
+        log(LogLevel.ERROR, event, null, null, null, null, null, null);
+    }
+
+    public void error(String event, String k1, Object v1) {
+        log(LogLevel.ERROR, event, k1, v1, null, null, null, null);
+    }
+
+    public void error(String event, String k1, Object v1, String k2, Object v2) {
+        log(LogLevel.ERROR, event, k1, v1, k2, v2, null, null);
+    }
+
+    public void error(String event, String k1, Object v1, String k2, Object v2, String k3, Object v3) {
+        log(LogLevel.ERROR, event, k1, v1, k2, v2, k3, v3);
+    }
+
+    private void log(LogLevel level, String event, String k1, Object v1, String k2, Object v2,
+                     String k3, Object v3) {
+        if (level.ordinal() < this.level.ordinal()) {
+            return;
+        }
+        Log.ring().publish(level, category, event, k1, v1, k2, v2, k3, v3);
+    }
+}
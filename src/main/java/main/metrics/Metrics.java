@@ -0,0 +1,222 @@
+package main.metrics;
+
+import main.model.Message;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide metrics registry.
+ *
+ * Counters are striped LongAdders indexed by Message.MessageType ordinal and the
+ * distributions are lock-free Histograms, so the record* methods allocate nothing
+ * and can be called on every message from any thread. Point-in-time values
+ * (active connections, queued frames) are registered as gauges and only read when
+ * the metrics are rendered. render() produces the Prometheus text format, which is
+ * what the admin Metrics tab, the file dump and the HTTP endpoint all show.
+ */
+public final class Metrics {
+    private static final Message.MessageType[] TYPES = Message.MessageType.values();
+    private static final String PREFIX = "studyconnect_";
+    private static final Metrics GLOBAL = new Metrics(); // after TYPES, which the constructor uses
+
+    private final LongAdder[] messagesIn = adders(TYPES.length);
+    private final LongAdder[] bytesIn = adders(TYPES.length);
+    private final LongAdder[] messagesOut = adders(TYPES.length);
+    private final LongAdder[] bytesOut = adders(TYPES.length);
+    private final LongAdder[] handled = adders(TYPES.length);
+    private final LongAdder[] handledNanos = adders(TYPES.length);
+
+    private final Histogram broadcastMicros = new Histogram();
+    private final Histogram outboundQueueDepth = new Histogram();
+    private final Histogram heartbeatRttMicros = new Histogram();
+    private final Histogram fileKbPerSecond = new Histogram();
+    private final LongAdder fileTransfers = new LongAdder();
+    private final LongAdder fileBytes = new LongAdder();
+
+    private final LongAdder screenFramesSent = new LongAdder();
+    private final LongAdder screenPacketsSent = new LongAdder();
+    private final LongAdder screenFramesReceived = new LongAdder();
+    private final LongAdder screenFramesLost = new LongAdder();
+    private final Histogram screenFrameIntervalMicros = new Histogram();
+
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private final long startedAt = System.nanoTime();
+
+    /**
+     * The registry shared by everything in this process
+     */
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * A message (or FileTransfer, counted as FILE) was read off a connection
+     */
+    public void recordIn(Message.MessageType type, int bytes) {
+        messagesIn[type.ordinal()].increment();
+        bytesIn[type.ordinal()].add(bytes);
+    }
+
+    /**
+     * A payload was queued for sending to one or more connections
+     */
+    public void recordOut(Message.MessageType type, int bytes, int copies) {
+        messagesOut[type.ordinal()].add(copies);
+        bytesOut[type.ordinal()].add((long) bytes * copies);
+    }
+
+    /**
+     * Processors (MessageProcessorRegistry) finished handling one message
+     */
+    public void recordHandled(Message.MessageType type, long nanos) {
+        handled[type.ordinal()].increment();
+        handledNanos[type.ordinal()].add(nanos);
+    }
+
+    /**
+     * Time one broadcast spent encoding and queueing to every recipient
+     */
+    public void recordBroadcast(long nanos) {
+        broadcastMicros.record(nanos / 1000);
+    }
+
+    /**
+     * Frames waiting in a connection's outbound queue, sampled at each enqueue
+     */
+    public void recordQueueDepth(int frames) {
+        outboundQueueDepth.record(frames);
+    }
+
+    public void recordHeartbeatRtt(long nanos) {
+        heartbeatRttMicros.record(nanos / 1000);
+    }
+
+    /**
+     * A chunked (bulk) payload finished arriving
+     */
+    public void recordFileTransfer(long bytes, long nanos) {
+        fileTransfers.increment();
+        fileBytes.add(bytes);
+        if (nanos > 0) {
+            fileKbPerSecond.record(bytes * TimeUnit.SECONDS.toNanos(1) / 1024 / nanos);
+        }
+    }
+
+    public void recordScreenFrameSent(int receivers) {
+        screenFramesSent.increment();
+        screenPacketsSent.add(receivers);
+    }
+
+    /**
+     * @param lost Frames skipped since the previous one (by frame number)
+     * @param intervalNanos Time since the previous frame arrived, or 0 for the first
+     */
+    public void recordScreenFrameReceived(int lost, long intervalNanos) {
+        screenFramesReceived.increment();
+        screenFramesLost.add(lost);
+        if (intervalNanos > 0) {
+            screenFrameIntervalMicros.record(intervalNanos / 1000);
+        }
+    }
+
+    /**
+     * Register a value that is read whenever metrics are rendered; replaces any
+     * gauge with the same name
+     */
+    public void registerGauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public void unregisterGauge(String name) {
+        gauges.remove(name);
+    }
+
+    public long getMessagesIn(Message.MessageType type) {
+        return messagesIn[type.ordinal()].sum();
+    }
+
+    public long getMessagesOut(Message.MessageType type) {
+        return messagesOut[type.ordinal()].sum();
+    }
+
+    public Histogram getBroadcastMicros() {
+        return broadcastMicros;
+    }
+
+    public Histogram getHeartbeatRttMicros() {
+        return heartbeatRttMicros;
+    }
+
+    /**
+     * Render every metric in the Prometheus text exposition format
+     */
+    public String render() {
+        StringBuilder out = new StringBuilder(4096);
+        line(out, "uptime_seconds", "", TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startedAt));
+
+        for (Message.MessageType type : TYPES) {
+            int i = type.ordinal();
+            long in = messagesIn[i].sum();
+            long sent = messagesOut[i].sum();
+            long calls = handled[i].sum();
+            if (in == 0 && sent == 0 && calls == 0) {
+                continue; // keep the dump readable: only types that were seen
+            }
+            String label = "{type=\"" + type + "\"}";
+            line(out, "messages_in_total", label, in);
+            line(out, "bytes_in_total", label, bytesIn[i].sum());
+            line(out, "messages_out_total", label, sent);
+            line(out, "bytes_out_total", label, bytesOut[i].sum());
+            if (calls > 0) {
+                line(out, "handler_calls_total", label, calls);
+                line(out, "handler_micros_total", label, handledNanos[i].sum() / 1000);
+            }
+        }
+
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            line(out, gauge.getKey(), "", gauge.getValue().getAsLong());
+        }
+
+        summary(out, "broadcast_fanout_us", broadcastMicros);
+        summary(out, "outbound_queue_depth_frames", outboundQueueDepth);
+        summary(out, "heartbeat_rtt_us", heartbeatRttMicros);
+        line(out, "file_transfers_total", "", fileTransfers.sum());
+        line(out, "file_bytes_total", "", fileBytes.sum());
+        summary(out, "file_throughput_kb_per_second", fileKbPerSecond);
+
+        line(out, "screen_frames_sent_total", "", screenFramesSent.sum());
+        line(out, "screen_packets_sent_total", "", screenPacketsSent.sum());
+        line(out, "screen_frames_received_total", "", screenFramesReceived.sum());
+        line(out, "screen_frames_lost_total", "", screenFramesLost.sum());
+        long medianInterval = screenFrameIntervalMicros.getPercentile(50);
+        line(out, "screen_fps", "", medianInterval > 0 ? 1_000_000 / medianInterval : 0);
+        return out.toString();
+    }
+
+    private static void line(StringBuilder out, String name, String labels, long value) {
+        out.append(PREFIX).append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, Histogram histogram) {
+        if (histogram.getCount() == 0) {
+            return;
+        }
+        line(out, name, "{quantile=\"0.5\"}", histogram.getPercentile(50));
+        line(out, name, "{quantile=\"0.99\"}", histogram.getPercentile(99));
+        line(out, name, "{quantile=\"0.999\"}", histogram.getPercentile(99.9));
+        line(out, name + "_max", "", histogram.getMax());
+        line(out, name + "_count", "", histogram.getCount());
+    }
+}
@@ -0,0 +1,116 @@
+package main.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import main.log.Log;
+import main.log.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes a Metrics registry outside the process: periodically to a local file
+ * and/or over HTTP at /metrics. The HTTP endpoint binds to the loopback address
+ * only, so it is reachable from the server machine (or an SSH tunnel) and not
+ * from the classroom network.
+ *
+ * Enabled from system properties by startFromSystemProperties():
+ *   -Dstudyconnect.metrics.port=9404            HTTP endpoint
+ *   -Dstudyconnect.metrics.file=metrics.prom    file dump every 10s
+ */
+public class MetricsExporter {
+    private static final Logger LOG = Log.get("METRICS");
+    private static final long DUMP_INTERVAL_MS = 10000;
+
+    private final Metrics metrics;
+    private HttpServer http;
+    private ScheduledExecutorService dumper;
+
+    public MetricsExporter(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Start whatever the studyconnect.metrics.* properties ask for
+     * @return The exporter, or null when no property is set
+     */
+    public static MetricsExporter startFromSystemProperties(Metrics metrics) {
+        Integer port = Integer.getInteger("studyconnect.metrics.port");
+        String file = System.getProperty("studyconnect.metrics.file");
+        if (port == null && file == null) {
+            return null;
+        }
+        MetricsExporter exporter = new MetricsExporter(metrics);
+        try {
+            if (port != null) {
+                exporter.startHttp(port);
+                LOG.info("Serving", "url", "http://127.0.0.1:" + port + "/metrics");
+            }
+        } catch (IOException e) {
+            LOG.error("Could not start HTTP endpoint", "port", port, "error", e.getMessage());
+        }
+        if (file != null) {
+            exporter.startFileDump(Paths.get(file), DUMP_INTERVAL_MS);
+            LOG.info("Writing dumps", "file", file, "everyMs", DUMP_INTERVAL_MS);
+        }
+        return exporter;
+    }
+
+    public void startHttp(int port) throws IOException {
+        http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        http.createContext("/metrics", exchange -> {
+            byte[] body = metrics.render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        http.setExecutor(null); // the server's own dispatcher thread is plenty for a scrape
+        http.start();
+    }
+
+    public void startFileDump(Path file, long intervalMs) {
+        dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "MetricsDump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleWithFixedDelay(() -> {
+            try {
+                dumpTo(file);
+            } catch (IOException e) {
+                LOG.error("Failed to write dump", "file", file, "error", e.getMessage());
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write the current metrics to a file, replacing it atomically so readers never
+     * see a half-written dump
+     */
+    public void dumpTo(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        Files.write(temp, metrics.render().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public void stop() {
+        if (http != null) {
+            http.stop(0);
+        }
+        if (dumper != null) {
+            dumper.shutdownNow();
+        }
+    }
+}
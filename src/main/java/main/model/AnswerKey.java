@@ -0,0 +1,74 @@
+package main.model;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A quiz's answers compiled for grading: the correct option and the points of
+ * each question in primitive arrays, plus the total. Immutable, so one key can
+ * grade submissions on any number of threads.
+ */
+public final class AnswerKey {
+    private final String quizId;
+    private final int[] correct;
+    private final int[] points;
+    private final int totalPoints;
+
+    private AnswerKey(String quizId, int[] correct, int[] points, int totalPoints) {
+        this.quizId = quizId;
+        this.correct = correct;
+        this.points = points;
+        this.totalPoints = totalPoints;
+    }
+
+    /**
+     * Compile the quiz's current questions
+     */
+    public static AnswerKey of(Quiz quiz) {
+        List<QuizQuestion> questions = quiz.getQuestions();
+        int[] correct = new int[questions.size()];
+        int[] points = new int[questions.size()];
+        int totalPoints = 0;
+        for (int i = 0; i < correct.length; i++) {
+            QuizQuestion question = questions.get(i);
+            correct[i] = question.getCorrectAnswer();
+            points[i] = question.getPoints();
+            totalPoints += points[i];
+        }
+        return new AnswerKey(quiz.getQuizId(), correct, points, totalPoints);
+    }
+
+    /**
+     * Grade a submission; answers to questions the quiz doesn't have are ignored
+     * @param username Who the result is for
+     */
+    public QuizResult grade(QuizAnswer answer, String username) {
+        int correctAnswers = 0;
+        int earnedPoints = 0;
+        BitSet correctQuestions = new BitSet(correct.length);
+        byte[] choices = answer.choices();
+        int questions = Math.min(answer.getQuestionCount(), correct.length);
+        for (int q = 0; q < questions; q++) {
+            // UNANSWERED never matches: correct options are >= 0
+            if (choices[q] == correct[q]) {
+                correctAnswers++;
+                earnedPoints += points[q];
+                correctQuestions.set(q);
+            }
+        }
+        return new QuizResult(quizId, username, correct.length, correctAnswers, totalPoints, earnedPoints,
+            System.currentTimeMillis(), correctQuestions);
+    }
+
+    public String getQuizId() {
+        return quizId;
+    }
+
+    public int getQuestionCount() {
+        return correct.length;
+    }
+
+    public int getTotalPoints() {
+        return totalPoints;
+    }
+}
@@ -0,0 +1,79 @@
+package main.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Leaderboard information sent by the quiz host: either a full snapshot of every
+ * ranked student, or a delta with only the students whose score changed since the
+ * previous sequence number. Entries carry absolute values, so applying one twice
+ * is harmless; clients keep their own ranking, apply deltas in order and ask for a
+ * new snapshot (a LEADERBOARD_UPDATE without an update) when they detect a gap.
+ */
+public class LeaderboardUpdate implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long sequence;
+    private final boolean snapshot;
+    private final List<Entry> entries;
+
+    public LeaderboardUpdate(long sequence, boolean snapshot, List<Entry> entries) {
+        this.sequence = sequence;
+        this.snapshot = snapshot;
+        this.entries = new ArrayList<>(entries);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * One student's standing: rank when published, points and percentage. A rank
+     * of 0 means the student was removed from the board.
+     */
+    public static class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String username;
+        private final int rank;
+        private final int points;
+        private final double percentage;
+
+        public Entry(String username, int rank, int points, double percentage) {
+            this.username = username;
+            this.rank = rank;
+            this.points = points;
+            this.percentage = percentage;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public int getRank() {
+            return rank;
+        }
+
+        public int getPoints() {
+            return points;
+        }
+
+        public double getPercentage() {
+            return percentage;
+        }
+
+        public boolean isRemoved() {
+            return rank <= 0;
+        }
+    }
+}
@@ -30,7 +30,17 @@ public class Message implements Serializable {
         FILE_LIST_RESPONSE,  // Server sends list of shared files
         FILE_UPLOAD,  // Client uploads file to server
         FILE_DOWNLOAD_REQUEST,  // Client requests to download a file
-        FILE_DELETE_REQUEST  // Client/Admin requests to delete a file
+        FILE_DELETE_REQUEST,  // Client/Admin requests to delete a file
+        ROOM_JOIN,  // Client joins a room (course section); room name in the room field
+        ROOM_LEAVE,  // Client leaves a room
+        NODE_HELLO,  // Cluster handshake between two server nodes
+        NODE_PRESENCE,  // Cluster gossip: users joined/left on a node
+        PRESENCE_SNAPSHOT,  // Full online list (server -> client), or a snapshot request (client -> server)
+        PRESENCE_DELTA,  // Sequenced presence changes since the previous delta
+        ADMISSION_STATUS,  // Server tells a waiting/rejected client its admission state ("queued, position N")
+        LEADERBOARD_UPDATE,  // Quiz leaderboard snapshot or delta (host -> clients); without an update, a snapshot request
+        QUIZ_TIME_SYNC,  // Server clock and deadline of a running quiz; with content, a late answer was rejected
+        QUIZ_PAGE  // A page of quiz questions (server -> client); without questions, a page request
     }
     
     private String sender;
@@ -39,6 +49,24 @@ public class Message implements Serializable {
     private MessageType type;
     private LocalDateTime timestamp;
     
+    // Room (course section) this message is scoped to; null means the whole server
+    private String room;
+    
+    // Cluster node that first relayed this message; null for locally originated messages
+    private String originNode;
+    
+    // Presence snapshot or delta (PRESENCE_SNAPSHOT / PRESENCE_DELTA)
+    private PresenceUpdate presenceUpdate;
+    
+    // Leaderboard snapshot or delta (LEADERBOARD_UPDATE)
+    private LeaderboardUpdate leaderboardUpdate;
+    
+    // Server time and deadline of a quiz (QUIZ_TIME_SYNC)
+    private QuizTimeSync quizTimeSync;
+    
+    // Quiz questions or a request for them (QUIZ_PAGE)
+    private QuizPage quizPage;
+    
     // Screen sharing fields
     private int udpPort;  // UDP port for screen sharing
     private String clientIP;  // Client's actual IP address for UDP
@@ -113,6 +141,54 @@ public class Message implements Serializable {
         this.timestamp = timestamp;
     }
     
+    public String getRoom() {
+        return room;
+    }
+    
+    public void setRoom(String room) {
+        this.room = room;
+    }
+    
+    public String getOriginNode() {
+        return originNode;
+    }
+    
+    public void setOriginNode(String originNode) {
+        this.originNode = originNode;
+    }
+    
+    public PresenceUpdate getPresenceUpdate() {
+        return presenceUpdate;
+    }
+    
+    public void setPresenceUpdate(PresenceUpdate presenceUpdate) {
+        this.presenceUpdate = presenceUpdate;
+    }
+    
+    public LeaderboardUpdate getLeaderboardUpdate() {
+        return leaderboardUpdate;
+    }
+    
+    public void setLeaderboardUpdate(LeaderboardUpdate leaderboardUpdate) {
+        this.leaderboardUpdate = leaderboardUpdate;
+    }
+    
+    public QuizTimeSync getQuizTimeSync() {
+        return quizTimeSync;
+    }
+    
+    public void setQuizTimeSync(QuizTimeSync quizTimeSync) {
+        this.quizTimeSync = quizTimeSync;
+    }
+    
+    public QuizPage getQuizPage() {
+        return quizPage;
+    }
+    
+    public void setQuizPage(QuizPage quizPage) {
+        this.quizPage = quizPage;
+    }
+    
     public String getFormattedTimestamp() {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss");
         return timestamp.format(formatter);
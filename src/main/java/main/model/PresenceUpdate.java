@@ -0,0 +1,73 @@
+package main.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Presence information sent by the server: either a full snapshot of who is
+ * online, or a delta with the users that joined, left or changed status since the
+ * previous sequence number. Clients apply deltas in order and ask for a new
+ * snapshot when they detect a gap.
+ */
+public class PresenceUpdate implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Change {
+        JOINED,
+        LEFT,
+        STATUS
+    }
+
+    private final long sequence;
+    private final boolean snapshot;
+    private final List<Entry> entries;
+
+    public PresenceUpdate(long sequence, boolean snapshot, List<Entry> entries) {
+        this.sequence = sequence;
+        this.snapshot = snapshot;
+        this.entries = new ArrayList<>(entries);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * One user's presence change (for snapshots, every entry is JOINED)
+     */
+    public static class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String username;
+        private final Change change;
+        private final String status;
+
+        public Entry(String username, Change change, String status) {
+            this.username = username;
+            this.change = change;
+            this.status = status;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public Change getChange() {
+            return change;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+    }
+}
@@ -6,6 +6,9 @@ import java.util.List;
 
 /**
  * Quiz model for real-time quiz functionality
+ *
+ * A manifest (see manifest()) is the quiz without its questions: what QUIZ_START
+ * carries to students, who then fetch the questions in QuizPages.
  */
 public class Quiz implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -16,17 +19,43 @@ public class Quiz implements Serializable {
     private long startTime;
     private int duration; // in seconds
     private boolean active;
+    private transient volatile AnswerKey answerKey; // compiled on first grade, reset when questions change
+    private boolean manifest; // questions are not included, they come in pages
+    private int questionCount; // manifest only
+    private int pageSize; // manifest only
     
     public Quiz(String title, int duration) {
-        this.quizId = "QUIZ_" + System.currentTimeMillis();
+        // Random suffix: quizzes started in the same millisecond (other rooms, other hosts) need distinct ids
+        this.quizId = String.format("QUIZ_%d_%08x", System.currentTimeMillis(),
+            java.util.concurrent.ThreadLocalRandom.current().nextInt());
         this.title = title;
         this.questions = new ArrayList<>();
         this.duration = duration;
         this.active = false;
     }
     
+    private Quiz(Quiz quiz, int pageSize) {
+        this.quizId = quiz.quizId;
+        this.title = quiz.title;
+        this.questions = new ArrayList<>();
+        this.startTime = quiz.startTime;
+        this.duration = quiz.duration;
+        this.active = quiz.active;
+        this.manifest = true;
+        this.questionCount = quiz.getQuestionCount();
+        this.pageSize = pageSize;
+    }
+    
+    /**
+     * The quiz without its questions, which are served in pages of pageSize
+     */
+    public Quiz manifest(int pageSize) {
+        return new Quiz(this, pageSize);
+    }
+    
     public void addQuestion(QuizQuestion question) {
         questions.add(question);
+        answerKey = null;
     }
     
     public void start() {
@@ -61,6 +90,28 @@ public class Quiz implements Serializable {
         return questions;
     }
     
+    /**
+     * Whether this is a manifest, whose questions have to be fetched in pages
+     */
+    public boolean isManifest() {
+        return manifest;
+    }
+    
+    public int getQuestionCount() {
+        return manifest ? questionCount : questions.size();
+    }
+    
+    /**
+     * Questions per page (manifest only)
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+    
+    public int getPageCount() {
+        return pageSize <= 0 ? 1 : (getQuestionCount() + pageSize - 1) / pageSize;
+    }
+    
     public long getStartTime() {
         return startTime;
     }
@@ -80,28 +131,22 @@ public class Quiz implements Serializable {
     }
     
     public int getTotalPoints() {
-        int total = 0;
-        for (QuizQuestion q : questions) {
-            total += q.getPoints();
+        return getAnswerKey().getTotalPoints();
+    }
+    
+    /**
+     * The compiled answer key for the current questions
+     */
+    public AnswerKey getAnswerKey() {
+        AnswerKey key = answerKey;
+        if (key == null) {
+            key = AnswerKey.of(this);
+            answerKey = key;
         }
-        return total;
+        return key;
     }
     
     public QuizResult gradeQuiz(QuizAnswer answer) {
-        int correctAnswers = 0;
-        int earnedPoints = 0;
-        
-        for (int i = 0; i < questions.size(); i++) {
-            QuizQuestion question = questions.get(i);
-            Integer userAnswer = answer.getAnswers().get(i);
-            
-            if (userAnswer != null && question.isCorrect(userAnswer)) {
-                correctAnswers++;
-                earnedPoints += question.getPoints();
-            }
-        }
-        
-        return new QuizResult(quizId, answer.getUsername(), 
-            questions.size(), correctAnswers, getTotalPoints(), earnedPoints);
+        return getAnswerKey().grade(answer, answer.getUsername());
     }
 }
@@ -1,45 +1,206 @@
 package main.model;
 
-import java.io.Serializable;
-import java.util.HashMap;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * Quiz answer submission from client
+ *
+ * Choices are kept in a byte array indexed by question number, with UNANSWERED
+ * for skipped questions, so grading reads them without boxing. On the wire the
+ * answer writes its own compact form instead of default serialization: a header
+ * and one nibble per question when every choice fits (the usual case), otherwise
+ * one byte per question.
  */
-public class QuizAnswer implements Serializable {
-    private static final long serialVersionUID = 1L;
-    
+public class QuizAnswer implements Externalizable {
+    private static final long serialVersionUID = 2L;
+
+    public static final int UNANSWERED = -1;
+    public static final int MAX_QUESTIONS = 4096;
+
+    private static final byte[] NO_CHOICES = new byte[0];
+    private static final int FORMAT_NIBBLES = 1; // choice + 1 per nibble, 0 = unanswered
+    private static final int FORMAT_BYTES = 2; // one signed byte per question
+    private static final int MAX_NIBBLE_CHOICE = 14;
+
     private String quizId;
     private String username;
-    private Map<Integer, Integer> answers; // questionIndex -> answerIndex
+    private byte[] choices; // questionIndex -> answerIndex, UNANSWERED if skipped
+    private int questionCount; // highest answered question + 1
     private long submissionTime;
-    
+
+    /**
+     * For deserialization only
+     */
+    public QuizAnswer() {
+        this.choices = NO_CHOICES;
+    }
+
     public QuizAnswer(String quizId, String username) {
+        this(quizId, username, 0);
+    }
+
+    /**
+     * @param questions Number of questions in the quiz, to size the answer up front
+     */
+    public QuizAnswer(String quizId, String username, int questions) {
         this.quizId = quizId;
         this.username = username;
-        this.answers = new HashMap<>();
+        this.choices = questions > 0 ? unanswered(Math.min(questions, MAX_QUESTIONS)) : NO_CHOICES;
         this.submissionTime = System.currentTimeMillis();
     }
-    
+
     public void addAnswer(int questionIndex, int answerIndex) {
-        answers.put(questionIndex, answerIndex);
+        if (questionIndex < 0 || questionIndex >= MAX_QUESTIONS) {
+            throw new IllegalArgumentException("Question index out of range: " + questionIndex);
+        }
+        if (answerIndex < 0 || answerIndex > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Answer index out of range: " + answerIndex);
+        }
+        if (questionIndex >= choices.length) {
+            int capacity = Math.min(MAX_QUESTIONS, Math.max(questionIndex + 1, choices.length * 2));
+            byte[] grown = unanswered(capacity);
+            System.arraycopy(choices, 0, grown, 0, choices.length);
+            choices = grown;
+        }
+        choices[questionIndex] = (byte) answerIndex;
+        questionCount = Math.max(questionCount, questionIndex + 1);
     }
-    
+
     // Getters
     public String getQuizId() {
         return quizId;
     }
-    
+
     public String getUsername() {
         return username;
     }
-    
+
+    /**
+     * The chosen option for a question, or UNANSWERED
+     */
+    public int getChoice(int questionIndex) {
+        return questionIndex >= 0 && questionIndex < questionCount ? choices[questionIndex] : UNANSWERED;
+    }
+
+    /**
+     * Highest answered question + 1
+     */
+    public int getQuestionCount() {
+        return questionCount;
+    }
+
+    public int getAnsweredCount() {
+        int answered = 0;
+        for (int i = 0; i < questionCount; i++) {
+            if (choices[i] != UNANSWERED) {
+                answered++;
+            }
+        }
+        return answered;
+    }
+
+    /**
+     * Answers as questionIndex -> answerIndex (a read-only copy; prefer getChoice)
+     */
     public Map<Integer, Integer> getAnswers() {
-        return answers;
+        Map<Integer, Integer> answers = new LinkedHashMap<>();
+        for (int i = 0; i < questionCount; i++) {
+            if (choices[i] != UNANSWERED) {
+                answers.put(i, (int) choices[i]);
+            }
+        }
+        return Collections.unmodifiableMap(answers);
     }
-    
+
     public long getSubmissionTime() {
         return submissionTime;
     }
+
+    /**
+     * The choice array itself (valid up to getQuestionCount()), for grading without a copy
+     */
+    byte[] choices() {
+        return choices;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        boolean nibbles = true;
+        for (int i = 0; i < questionCount && nibbles; i++) {
+            nibbles = choices[i] <= MAX_NIBBLE_CHOICE;
+        }
+        out.writeByte(nibbles ? FORMAT_NIBBLES : FORMAT_BYTES);
+        writeNullable(out, quizId);
+        writeNullable(out, username);
+        out.writeLong(submissionTime);
+        out.writeShort(questionCount);
+        if (nibbles) {
+            for (int i = 0; i < questionCount; i += 2) {
+                int high = choices[i] + 1;
+                int low = i + 1 < questionCount ? choices[i + 1] + 1 : 0;
+                out.writeByte(high << 4 | low);
+            }
+        } else {
+            out.write(choices, 0, questionCount);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        int format = in.readUnsignedByte();
+        if (format != FORMAT_NIBBLES && format != FORMAT_BYTES) {
+            throw new InvalidObjectException("Unknown quiz answer format " + format);
+        }
+        quizId = readNullable(in);
+        username = readNullable(in);
+        submissionTime = in.readLong();
+        int count = in.readUnsignedShort();
+        if (count > MAX_QUESTIONS) {
+            throw new InvalidObjectException("Too many answers: " + count);
+        }
+        byte[] read = count == 0 ? NO_CHOICES : new byte[count];
+        if (format == FORMAT_NIBBLES) {
+            for (int i = 0; i < count; i += 2) {
+                int packed = in.readUnsignedByte();
+                read[i] = (byte) ((packed >>> 4) - 1);
+                if (i + 1 < count) {
+                    read[i + 1] = (byte) ((packed & 0x0F) - 1);
+                }
+            }
+        } else {
+            in.readFully(read);
+            for (byte choice : read) {
+                if (choice < UNANSWERED) {
+                    throw new InvalidObjectException("Invalid answer index " + choice);
+                }
+            }
+        }
+        choices = read;
+        questionCount = count;
+    }
+
+    private static byte[] unanswered(int length) {
+        byte[] array = new byte[length];
+        Arrays.fill(array, (byte) UNANSWERED);
+        return array;
+    }
+
+    private static void writeNullable(ObjectOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(ObjectInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
 }
@@ -0,0 +1,56 @@
+package main.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a quiz's questions (QUIZ_PAGE). Without questions it is a
+ * client's request for that page.
+ */
+public class QuizPage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String quizId;
+    private final int pageIndex;
+    private final int firstQuestion;
+    private final List<QuizQuestion> questions; // null for a request
+
+    public QuizPage(String quizId, int pageIndex, int firstQuestion, List<QuizQuestion> questions) {
+        this.quizId = quizId;
+        this.pageIndex = pageIndex;
+        this.firstQuestion = firstQuestion;
+        this.questions = questions == null ? null : new ArrayList<>(questions);
+    }
+
+    /**
+     * A request for one page of a quiz
+     */
+    public static QuizPage request(String quizId, int pageIndex) {
+        return new QuizPage(quizId, pageIndex, 0, null);
+    }
+
+    public boolean isRequest() {
+        return questions == null;
+    }
+
+    public String getQuizId() {
+        return quizId;
+    }
+
+    public int getPageIndex() {
+        return pageIndex;
+    }
+
+    /**
+     * Index of the page's first question in the quiz
+     */
+    public int getFirstQuestion() {
+        return firstQuestion;
+    }
+
+    public List<QuizQuestion> getQuestions() {
+        return questions == null ? Collections.<QuizQuestion>emptyList() : Collections.unmodifiableList(questions);
+    }
+}
@@ -1,6 +1,7 @@
 package main.model;
 
 import java.io.Serializable;
+import java.util.BitSet;
 
 /**
  * Quiz result/score for a participant
@@ -16,9 +17,20 @@ public class QuizResult implements Serializable {
     private int earnedPoints;
     private double percentage;
     private long completionTime;
+    private BitSet correctQuestions; // null if not graded question by question
     
     public QuizResult(String quizId, String username, int totalQuestions, 
                       int correctAnswers, int totalPoints, int earnedPoints) {
+        this(quizId, username, totalQuestions, correctAnswers, totalPoints, earnedPoints,
+            System.currentTimeMillis(), null);
+    }
+    
+    /**
+     * @param completionTime When the quiz was completed (e.g. as recorded in the results log)
+     * @param correctQuestions Indexes of the questions answered correctly, or null if unknown
+     */
+    public QuizResult(String quizId, String username, int totalQuestions, int correctAnswers,
+                      int totalPoints, int earnedPoints, long completionTime, BitSet correctQuestions) {
         this.quizId = quizId;
         this.username = username;
         this.totalQuestions = totalQuestions;
@@ -27,7 +39,8 @@ public class QuizResult implements Serializable {
         this.earnedPoints = earnedPoints;
         this.percentage = (totalQuestions > 0) ? 
             (correctAnswers * 100.0 / totalQuestions) : 0;
-        this.completionTime = System.currentTimeMillis();
+        this.completionTime = completionTime;
+        this.correctQuestions = correctQuestions;
     }
     
     // Getters
@@ -63,7 +76,29 @@ public class QuizResult implements Serializable {
         return completionTime;
     }
     
+    /**
+     * Whether a question was answered correctly; false when unknown
+     */
+    public boolean isCorrect(int questionIndex) {
+        return correctQuestions != null && questionIndex >= 0 && correctQuestions.get(questionIndex);
+    }
+    
+    /**
+     * Indexes of the questions answered correctly (a copy), or null if the result
+     * was not graded question by question
+     */
+    public BitSet getCorrectQuestions() {
+        return correctQuestions == null ? null : (BitSet) correctQuestions.clone();
+    }
+    
     public String getGrade() {
+        return gradeFor(percentage);
+    }
+    
+    /**
+     * Letter grade for a percentage
+     */
+    public static String gradeFor(double percentage) {
         if (percentage >= 90) return "A+";
         if (percentage >= 80) return "A";
         if (percentage >= 70) return "B";
@@ -0,0 +1,57 @@
+package main.model;
+
+import java.io.Serializable;
+
+/**
+ * The server's clock for one quiz: its current time, the answer deadline and
+ * whether the quiz has closed. Clients take the difference between serverTime and
+ * their own clock as their skew and count down to the deadline on the server's
+ * time, instead of comparing the host's start time with their local clock.
+ */
+public class QuizTimeSync implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String quizId;
+    private final long serverTime;
+    private final long deadline;
+    private final boolean closed;
+
+    public QuizTimeSync(String quizId, long serverTime, long deadline, boolean closed) {
+        this.quizId = quizId;
+        this.serverTime = serverTime;
+        this.deadline = deadline;
+        this.closed = closed;
+    }
+
+    public String getQuizId() {
+        return quizId;
+    }
+
+    /**
+     * Server clock when the message was sent (epoch millis)
+     */
+    public long getServerTime() {
+        return serverTime;
+    }
+
+    /**
+     * Answers arriving after this (server clock, epoch millis) are rejected
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * The quiz no longer accepts answers
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Milliseconds left, measured on the server's clock
+     */
+    public long getRemainingMillis() {
+        return Math.max(0, deadline - serverTime);
+    }
+}
@@ -0,0 +1,270 @@
+package main.network;
+
+import main.model.Message;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Decides which accepted sockets become active connections.
+ *
+ * At most maxActive connections are served at once. Further connections wait in a
+ * FIFO queue (bounded by maxQueued) and are admitted in arrival order as slots free
+ * up; their readers are not started until then, so a lecture hall connecting at
+ * once costs the server a queue entry per student instead of a busy handler. Queued
+ * clients receive ADMISSION_STATUS messages with their position, repeated often
+ * enough to keep the client's heartbeat timeout from firing. Each remote IP also has
+ * a token bucket so a single misbehaving host cannot flood the accept loop.
+ */
+public class AdmissionController {
+    public enum Decision {
+        ADMITTED,
+        QUEUED,
+        RATE_LIMITED,
+        REJECTED
+    }
+
+    private static final long STATUS_INTERVAL_MS = 2000;
+    private static final long STATUS_KEEPALIVE_MS = 20000; // below the client's 60s heartbeat timeout
+    private static final long IDLE_BUCKET_MS = 60000;
+
+    private final int maxActive;
+    private final int maxQueued;
+    private final double connectsPerSecond;
+    private final int connectBurst;
+    private final Consumer<PeerConnection> admitter;
+    private final Set<PeerConnection> active;
+    private final ArrayDeque<Waiting> queue;
+    private final Map<String, TokenBucket> buckets;
+    private ScheduledExecutorService notifier;
+    private long admittedTotal;
+    private long queuedTotal;
+    private long rejectedTotal;
+
+    /**
+     * @param maxActive Connections served at once
+     * @param maxQueued Connections allowed to wait for a slot
+     * @param connectsPerSecond Sustained new connections per remote IP
+     * @param connectBurst Connections a single IP may open back to back
+     * @param admitter Starts serving a connection (called outside the controller's lock)
+     */
+    public AdmissionController(int maxActive, int maxQueued, double connectsPerSecond, int connectBurst,
+                               Consumer<PeerConnection> admitter) {
+        this.maxActive = maxActive;
+        this.maxQueued = maxQueued;
+        this.connectsPerSecond = connectsPerSecond;
+        this.connectBurst = connectBurst;
+        this.admitter = admitter;
+        this.active = new HashSet<>();
+        this.queue = new ArrayDeque<>();
+        this.buckets = new HashMap<>();
+    }
+
+    public void start() {
+        notifier = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "AdmissionNotifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+        notifier.scheduleWithFixedDelay(this::notifyQueued, STATUS_INTERVAL_MS, STATUS_INTERVAL_MS,
+            TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (notifier != null) {
+            notifier.shutdownNow();
+        }
+        List<Waiting> waiting;
+        synchronized (this) {
+            waiting = new ArrayList<>(queue);
+            queue.clear();
+            active.clear();
+            buckets.clear();
+        }
+        for (Waiting w : waiting) {
+            w.connection.close();
+        }
+    }
+
+    /**
+     * Decide what to do with a freshly accepted connection. ADMITTED connections have
+     * already been handed to the admitter; RATE_LIMITED and REJECTED ones have been
+     * sent a status message and should be closed by the caller.
+     */
+    public Decision offer(PeerConnection connection, String remoteIp) {
+        Decision decision;
+        int position = 0;
+        synchronized (this) {
+            if (!bucketFor(remoteIp).tryAcquire()) {
+                rejectedTotal++;
+                decision = Decision.RATE_LIMITED;
+            } else if (active.size() < maxActive && queue.isEmpty()) {
+                active.add(connection);
+                admittedTotal++;
+                decision = Decision.ADMITTED;
+            } else if (queue.size() < maxQueued) {
+                position = queue.size() + 1;
+                queue.add(new Waiting(connection, position));
+                queuedTotal++;
+                decision = Decision.QUEUED;
+            } else {
+                rejectedTotal++;
+                decision = Decision.REJECTED;
+            }
+        }
+
+        switch (decision) {
+            case ADMITTED:
+                admitter.accept(connection);
+                break;
+            case QUEUED:
+                sendStatus(connection, "Server busy - queued, position " + position);
+                break;
+            case RATE_LIMITED:
+                sendStatus(connection, "Rejected: too many connection attempts from " + remoteIp +
+                    ", retry in a few seconds");
+                break;
+            default:
+                sendStatus(connection, "Rejected: server full (" + maxActive + " connected, " +
+                    maxQueued + " waiting), try again later");
+                break;
+        }
+        return decision;
+    }
+
+    /**
+     * Free the slot held by a connection and admit waiting ones. Safe to call more
+     * than once per connection and for connections that never held a slot.
+     */
+    public void release(PeerConnection connection) {
+        List<PeerConnection> admitted = new ArrayList<>();
+        synchronized (this) {
+            if (!active.remove(connection)) {
+                // Not active: drop it from the queue if it was still waiting
+                queue.removeIf(w -> w.connection == connection);
+                return;
+            }
+            while (active.size() < maxActive && !queue.isEmpty()) {
+                PeerConnection next = queue.poll().connection;
+                if (next.isRunning()) {
+                    active.add(next);
+                    admittedTotal++;
+                    admitted.add(next);
+                }
+            }
+        }
+        for (PeerConnection next : admitted) {
+            sendStatus(next, "Admitted");
+            admitter.accept(next);
+        }
+    }
+
+    /**
+     * Periodic pass: tell queued clients their new position, keep idle ones alive,
+     * drop ones that went away and forget idle per-IP buckets
+     */
+    private void notifyQueued() {
+        List<PeerConnection> targets = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            int position = 0;
+            Iterator<Waiting> it = queue.iterator();
+            while (it.hasNext()) {
+                Waiting w = it.next();
+                if (!w.connection.isRunning()) {
+                    it.remove();
+                    continue;
+                }
+                position++;
+                if (position != w.lastPosition || now - w.lastNotified >= STATUS_KEEPALIVE_MS) {
+                    w.lastPosition = position;
+                    w.lastNotified = now;
+                    targets.add(w.connection);
+                    positions.add(position);
+                }
+            }
+            buckets.values().removeIf(bucket -> bucket.isIdle(now));
+        }
+        for (int i = 0; i < targets.size(); i++) {
+            sendStatus(targets.get(i), "Server busy - queued, position " + positions.get(i));
+        }
+    }
+
+    private TokenBucket bucketFor(String remoteIp) {
+        TokenBucket bucket = buckets.get(remoteIp);
+        if (bucket == null) {
+            bucket = new TokenBucket();
+            buckets.put(remoteIp, bucket);
+        }
+        return bucket;
+    }
+
+    private static void sendStatus(PeerConnection connection, String status) {
+        connection.sendMessage(new Message("Server", "client", status, Message.MessageType.ADMISSION_STATUS));
+    }
+
+    public synchronized int getActiveCount() {
+        return active.size();
+    }
+
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    public synchronized long getAdmittedTotal() {
+        return admittedTotal;
+    }
+
+    public synchronized long getQueuedTotal() {
+        return queuedTotal;
+    }
+
+    public synchronized long getRejectedTotal() {
+        return rejectedTotal;
+    }
+
+    public int getMaxActive() {
+        return maxActive;
+    }
+
+    private static final class Waiting {
+        final PeerConnection connection;
+        int lastPosition;
+        long lastNotified;
+
+        Waiting(PeerConnection connection, int position) {
+            this.connection = connection;
+            this.lastPosition = position;
+            this.lastNotified = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Classic token bucket; guarded by the controller's lock
+     */
+    private final class TokenBucket {
+        private double tokens = connectBurst;
+        private long lastRefill = System.nanoTime();
+        private long lastUsed = System.currentTimeMillis();
+
+        boolean tryAcquire() {
+            long now = System.nanoTime();
+            tokens = Math.min(connectBurst, tokens + (now - lastRefill) / 1e9 * connectsPerSecond);
+            lastRefill = now;
+            lastUsed = System.currentTimeMillis();
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+
+        boolean isIdle(long nowMillis) {
+            return nowMillis - lastUsed > IDLE_BUCKET_MS;
+        }
+    }
+}
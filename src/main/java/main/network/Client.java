@@ -2,6 +2,7 @@ package main.network;
 
 import main.model.Message;
 import main.model.FileTransfer;
+import main.metrics.Metrics;
 
 import java.io.*;
 import java.net.*;
@@ -18,11 +19,22 @@ public class Client {
     private String currentUsername;
     private boolean connected;
     private Thread heartbeatThread;
+    private final ExecutionMode executionMode;
     private volatile long lastHeartbeatTime;
+    private volatile long pingSentNanos; // send time of the outstanding ping, 0 when none
     private static final long HEARTBEAT_INTERVAL = 30000; // 30 seconds
     private static final long HEARTBEAT_TIMEOUT = 60000; // 60 seconds
     
     public Client(String host, int port, MessageHandler messageHandler, String currentUsername) {
+        this(host, port, messageHandler, currentUsername, ExecutionMode.current());
+    }
+
+    /**
+     * Create a client whose reader and heartbeat threads run in the given mode
+     */
+    public Client(String host, int port, MessageHandler messageHandler, String currentUsername,
+                  ExecutionMode executionMode) {
+        this.executionMode = executionMode.effective();
         this.host = host;
         this.port = port;
         this.messageHandler = messageHandler;
@@ -55,9 +67,20 @@ public class Client {
                     // Update heartbeat time on any message received
                     if (message.getType() == Message.MessageType.HEARTBEAT) {
                         lastHeartbeatTime = System.currentTimeMillis();
+                        long sentAt = pingSentNanos;
+                        if (sentAt != 0) {
+                            pingSentNanos = 0;
+                            Metrics.global().recordHeartbeatRtt(System.nanoTime() - sentAt);
+                        }
                         // Don't forward heartbeat to main handler
                         return;
                     }
+                    if (message.getType() == Message.MessageType.ADMISSION_STATUS) {
+                        // Waiting for a slot on a busy server: show it as status, it also proves the link is alive
+                        lastHeartbeatTime = System.currentTimeMillis();
+                        messageHandler.onServerStatus(message.getContent());
+                        return;
+                    }
                     lastHeartbeatTime = System.currentTimeMillis();
                     messageHandler.onMessageReceived(message, conn);
                 }
@@ -82,11 +105,11 @@ public class Client {
                 }
             };
             
-            connection = new PeerConnection(socket, wrappedHandler, currentUsername);
+            connection = new PeerConnection(socket, wrappedHandler, currentUsername, executionMode);
             connected = true;
             
             // Start listening for messages
-            new Thread(connection).start();
+            executionMode.start(connection, "PeerReader-" + host + ":" + port);
             
             // Start heartbeat sender
             startHeartbeat();
@@ -152,6 +175,26 @@ public class Client {
         }
     }
     
+    /**
+     * Join a room so room-scoped chat and quizzes reach this client
+     */
+    public void joinRoom(String room) {
+        Message join = new Message(currentUsername, "server", currentUsername + " joined " + room,
+            Message.MessageType.ROOM_JOIN);
+        join.setRoom(room);
+        sendMessage(join);
+    }
+    
+    /**
+     * Leave a previously joined room
+     */
+    public void leaveRoom(String room) {
+        Message leave = new Message(currentUsername, "server", currentUsername + " left " + room,
+            Message.MessageType.ROOM_LEAVE);
+        leave.setRoom(room);
+        sendMessage(leave);
+    }
+    
     public boolean isConnected() {
         return connected && socket != null && !socket.isClosed() && connection != null && connection.isRunning();
     }
@@ -169,7 +212,7 @@ public class Client {
      */
     private void startHeartbeat() {
         lastHeartbeatTime = System.currentTimeMillis();
-        heartbeatThread = new Thread(() -> {
+        heartbeatThread = executionMode.newThread(() -> {
             while (connected && !Thread.currentThread().isInterrupted()) {
                 try {
                     Thread.sleep(HEARTBEAT_INTERVAL);
@@ -194,6 +237,7 @@ public class Client {
                     // Send heartbeat
                     if (connection != null && connection.isRunning()) {
                         Message heartbeat = new Message(currentUsername, "server", "ping", Message.MessageType.HEARTBEAT);
+                        pingSentNanos = System.nanoTime();
                         connection.sendMessage(heartbeat);
                     }
                     
@@ -202,9 +246,7 @@ public class Client {
                     break;
                 }
             }
-        });
-        heartbeatThread.setDaemon(true);
-        heartbeatThread.setName("Heartbeat-" + host + ":" + port);
+        }, "Heartbeat-" + host + ":" + port);
         heartbeatThread.start();
     }
     
@@ -0,0 +1,415 @@
+package main.network;
+
+import main.log.Log;
+import main.log.Logger;
+import main.model.FileTransfer;
+import main.model.Message;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Links several Server processes into one cluster.
+ *
+ * Every node is identified by the host:port it accepts clients on. Nodes dial the
+ * peers they are configured with and exchange NODE_HELLO; when two nodes dial each
+ * other at once, the link dialed by the lower node id wins on both sides. Over each
+ * link nodes gossip which users they host (NODE_PRESENCE), forward PEER_TO_PEER and
+ * FILE messages to the node holding the recipient, and relay room/global broadcasts
+ * once per node. Relayed messages carry their origin node and are never re-relayed.
+ *
+ * A hello is only accepted from a configured peer, arriving from an address that
+ * peer's host resolves to, and carrying an HMAC-SHA256 proof under the shared
+ * cluster secret. The proof covers both node ids, a nonce and a timestamp; hellos
+ * older than HELLO_MAX_AGE_MS or with a nonce already seen are refused, so a
+ * captured hello can't be replayed. Anything else closes the connection, so a
+ * client can never turn its connection into a link.
+ */
+public class ClusterManager {
+    private static final Logger LOG = Log.get("CLUSTER");
+    private static final long RECONNECT_INTERVAL_MS = 3000;
+    private static final String PRESENCE_JOIN = "JOIN:";
+    private static final String PRESENCE_LEAVE = "LEAVE:";
+    private static final String PRESENCE_SNAPSHOT = "SNAPSHOT:";
+    private static final String HELLO_DIAL = "dial";
+    private static final String HELLO_ACK = "ack";
+    private static final long HELLO_MAX_AGE_MS = 60_000;
+    private static final String HMAC = "HmacSHA256";
+
+    private final Server server;
+    private final String nodeId;
+    private final List<String> peerNodes;
+    private final Map<String, PeerConnection> links; // nodeId -> link
+    private final Map<PeerConnection, String> linkNodes; // link -> nodeId
+    private final Map<PeerConnection, String> dialedLinks; // links this node opened -> peer dialed
+    private final Map<String, Long> seenNonces; // nonce -> hello timestamp, kept for HELLO_MAX_AGE_MS
+    private final SecretKeySpec secret;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, String> remoteUsers; // username -> nodeId hosting it
+    private ScheduledExecutorService dialer;
+    private volatile boolean running;
+
+    /**
+     * @param server The local server
+     * @param nodeId This node's advertised host:port
+     * @param peerNodes host:port of the other nodes
+     * @param secret Cluster secret shared by all nodes
+     */
+    public ClusterManager(Server server, String nodeId, List<String> peerNodes, String secret) {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("A cluster needs a shared secret");
+        }
+        this.server = server;
+        this.nodeId = nodeId;
+        this.peerNodes = new ArrayList<>(peerNodes);
+        this.peerNodes.remove(nodeId);
+        this.links = new ConcurrentHashMap<>();
+        this.linkNodes = new ConcurrentHashMap<>();
+        this.dialedLinks = new ConcurrentHashMap<>();
+        this.remoteUsers = new ConcurrentHashMap<>();
+        this.seenNonces = new ConcurrentHashMap<>();
+        this.secret = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC);
+    }
+
+    /**
+     * Start dialing peers; unreachable peers are retried periodically
+     */
+    public void start() {
+        running = true;
+        dialer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "ClusterDialer-" + nodeId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        dialer.scheduleWithFixedDelay(this::dialMissingPeers, 0, RECONNECT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        running = false;
+        if (dialer != null) {
+            dialer.shutdownNow();
+        }
+        for (PeerConnection link : new ArrayList<>(linkNodes.keySet())) {
+            link.close();
+        }
+        links.clear();
+        linkNodes.clear();
+        dialedLinks.clear();
+        remoteUsers.clear();
+        seenNonces.clear();
+    }
+
+    private void dialMissingPeers() {
+        for (String peer : peerNodes) {
+            if (!running || links.containsKey(peer)) {
+                continue;
+            }
+            try {
+                dial(peer);
+            } catch (IOException e) {
+                // Peer not up yet, retry on the next tick
+            }
+        }
+    }
+
+    private void dial(String peer) throws IOException {
+        int colon = peer.lastIndexOf(':');
+        String host = peer.substring(0, colon);
+        int port = Integer.parseInt(peer.substring(colon + 1));
+
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress(host, port), 2000);
+
+        PeerConnection link = new PeerConnection(socket, new LinkHandler(), nodeId, server.getExecutionMode());
+        dialedLinks.put(link, peer);
+        server.getExecutionMode().start(link, "ClusterLink-" + peer);
+
+        link.sendMessage(hello(HELLO_DIAL, peer));
+    }
+
+    /**
+     * Handle NODE_HELLO on either side of a link. A hello that fails authentication
+     * closes the connection.
+     * @return true if the connection is now a cluster link
+     */
+    boolean onHello(Message message, PeerConnection connection) {
+        String remoteNode = message.getSender();
+        String dialedPeer = dialedLinks.get(connection);
+        boolean dialedByUs = dialedPeer != null;
+
+        String rejection = checkHello(message, connection, dialedPeer);
+        if (rejection != null) {
+            LOG.warn("Refused hello", "node", nodeId, "from", connection.getPeerAddress(), "reason", rejection);
+            dialedLinks.remove(connection);
+            connection.close();
+            return false;
+        }
+
+        PeerConnection existing = links.get(remoteNode);
+        if (existing != null && existing != connection) {
+            // Both sides dialed: keep the link opened by the lower node id
+            boolean keepNew = dialedByUs == (nodeId.compareTo(remoteNode) < 0);
+            PeerConnection loser = keepNew ? existing : connection;
+            linkNodes.remove(loser);
+            dialedLinks.remove(loser);
+            loser.close();
+            if (!keepNew) {
+                return true;
+            }
+        }
+
+        links.put(remoteNode, connection);
+        linkNodes.put(connection, remoteNode);
+        LOG.info("Linked", "node", nodeId, "remote", remoteNode);
+
+        if (!dialedByUs) {
+            connection.sendMessage(hello(HELLO_ACK, remoteNode));
+        }
+        sendSnapshot(connection);
+        return true;
+    }
+
+    /**
+     * @return Why the hello must be refused, or null if it is authentic
+     */
+    private String checkHello(Message message, PeerConnection connection, String dialedPeer) {
+        String remoteNode = message.getSender();
+        if (!running) {
+            return "node stopped";
+        }
+        if (remoteNode == null || !peerNodes.contains(remoteNode)) {
+            return "not a configured peer";
+        }
+        if (!nodeId.equals(message.getReceiver())) {
+            return "addressed to another node";
+        }
+        String[] parts = message.getContent() == null ? new String[0] : message.getContent().split(":");
+        String expectedKind = dialedPeer != null ? HELLO_ACK : HELLO_DIAL;
+        if (parts.length != 4 || !parts[0].equals(expectedKind)) {
+            return "malformed hello";
+        }
+        if (dialedPeer != null && !dialedPeer.equals(remoteNode)) {
+            return "answered by another node";
+        }
+        if (dialedPeer == null && !isPeerAddress(remoteNode, connection.getPeerAddress())) {
+            return "unexpected address";
+        }
+        long timestamp;
+        try {
+            timestamp = Long.parseLong(parts[2]);
+        } catch (NumberFormatException e) {
+            return "malformed hello";
+        }
+        long now = System.currentTimeMillis();
+        if (Math.abs(now - timestamp) > HELLO_MAX_AGE_MS) {
+            return "stale hello";
+        }
+        byte[] expected = proof(parts[0], remoteNode, nodeId, parts[1], timestamp);
+        byte[] actual;
+        try {
+            actual = Base64.getDecoder().decode(parts[3]);
+        } catch (IllegalArgumentException e) {
+            return "malformed hello";
+        }
+        if (!MessageDigest.isEqual(expected, actual)) {
+            return "bad proof";
+        }
+        seenNonces.values().removeIf(seen -> Math.abs(now - seen) > HELLO_MAX_AGE_MS);
+        if (seenNonces.putIfAbsent(parts[1], timestamp) != null) {
+            return "replayed hello";
+        }
+        return null;
+    }
+
+    private boolean isPeerAddress(String peer, String address) {
+        String host = peer.substring(0, peer.lastIndexOf(':'));
+        try {
+            for (InetAddress candidate : InetAddress.getAllByName(host)) {
+                if (candidate.getHostAddress().equals(address)) {
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Can't resolve peer", "peer", peer, "error", e.getMessage());
+        }
+        return false;
+    }
+
+    private Message hello(String kind, String peer) {
+        byte[] nonceBytes = new byte[16];
+        random.nextBytes(nonceBytes);
+        String nonce = Base64.getEncoder().encodeToString(nonceBytes);
+        long timestamp = System.currentTimeMillis();
+        String proof = Base64.getEncoder().encodeToString(proof(kind, nodeId, peer, nonce, timestamp));
+        String content = kind + ":" + nonce + ":" + timestamp + ":" + proof;
+        return new Message(nodeId, peer, content, Message.MessageType.NODE_HELLO);
+    }
+
+    private byte[] proof(String kind, String from, String to, String nonce, long timestamp) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(secret);
+            String signed = kind + "|" + from + "|" + to + "|" + nonce + "|" + timestamp;
+            return mac.doFinal(signed.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    /**
+     * Handle NODE_PRESENCE gossip from another node
+     */
+    void onPresence(Message message, PeerConnection connection) {
+        String remoteNode = linkNodes.get(connection);
+        if (remoteNode == null) {
+            return;
+        }
+        String content = message.getContent();
+        if (content.startsWith(PRESENCE_SNAPSHOT)) {
+            remoteUsers.values().removeIf(remoteNode::equals);
+            for (String user : content.substring(PRESENCE_SNAPSHOT.length()).split(",")) {
+                if (!user.isEmpty()) {
+                    remoteUsers.put(user, remoteNode);
+                }
+            }
+        } else if (content.startsWith(PRESENCE_JOIN)) {
+            remoteUsers.put(content.substring(PRESENCE_JOIN.length()), remoteNode);
+        } else if (content.startsWith(PRESENCE_LEAVE)) {
+            remoteUsers.remove(content.substring(PRESENCE_LEAVE.length()), remoteNode);
+        }
+        server.onClusterPresenceChanged();
+    }
+
+    /**
+     * Tell the other nodes a local user joined
+     */
+    public void publishJoin(String username) {
+        sendToAllLinks(new Message(nodeId, "cluster", PRESENCE_JOIN + username, Message.MessageType.NODE_PRESENCE));
+    }
+
+    /**
+     * Tell the other nodes a local user left
+     */
+    public void publishLeave(String username) {
+        sendToAllLinks(new Message(nodeId, "cluster", PRESENCE_LEAVE + username, Message.MessageType.NODE_PRESENCE));
+    }
+
+    private void sendSnapshot(PeerConnection link) {
+        StringBuilder users = new StringBuilder(PRESENCE_SNAPSHOT);
+        for (String user : server.getLocalUsernames()) {
+            users.append(user).append(',');
+        }
+        link.sendMessage(new Message(nodeId, "cluster", users.toString(), Message.MessageType.NODE_PRESENCE));
+    }
+
+    /**
+     * Forward a directed message to the node that hosts its recipient
+     * @return true if a remote node took it
+     */
+    public boolean route(Message message) {
+        String owner = remoteUsers.get(message.getReceiver());
+        PeerConnection link = owner != null ? links.get(owner) : null;
+        if (link == null || !link.isRunning()) {
+            return false;
+        }
+        if (message.getOriginNode() == null) {
+            message.setOriginNode(nodeId);
+        }
+        link.sendMessage(message);
+        return true;
+    }
+
+    /**
+     * Relay a locally originated broadcast once to every other node
+     */
+    public void relay(Message message) {
+        if (message.getOriginNode() != null || links.isEmpty()) {
+            return;
+        }
+        message.setOriginNode(nodeId);
+        sendToAllLinks(message);
+    }
+
+    private void sendToAllLinks(Message message) {
+        for (PeerConnection link : links.values()) {
+            if (link.isRunning()) {
+                link.sendMessage(message);
+            }
+        }
+    }
+
+    /**
+     * Clean up after a link closes
+     * @return true if the connection was a cluster link
+     */
+    boolean onConnectionClosed(PeerConnection connection) {
+        dialedLinks.remove(connection);
+        String remoteNode = linkNodes.remove(connection);
+        if (remoteNode == null) {
+            return false;
+        }
+        links.remove(remoteNode, connection);
+        if (!links.containsKey(remoteNode)) {
+            remoteUsers.values().removeIf(remoteNode::equals);
+            LOG.warn("Lost link", "node", nodeId, "remote", remoteNode);
+            server.onClusterPresenceChanged();
+        }
+        return true;
+    }
+
+    public boolean isLink(PeerConnection connection) {
+        return linkNodes.containsKey(connection);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return The current link to a node, or null if it isn't linked
+     */
+    public PeerConnection getLink(String node) {
+        return links.get(node);
+    }
+
+    public Set<String> getLinkedNodes() {
+        return new TreeSet<>(links.keySet());
+    }
+
+    public Set<String> getRemoteUsers() {
+        return new TreeSet<>(remoteUsers.keySet());
+    }
+
+    /**
+     * Messages arriving on links we dialed enter the server exactly like accepted ones
+     */
+    private class LinkHandler implements MessageHandler {
+        @Override
+        public void onMessageReceived(Message message, PeerConnection connection) {
+            server.dispatch(message, connection);
+        }
+
+        @Override
+        public void onFileReceived(FileTransfer fileTransfer, PeerConnection connection) {
+        }
+
+        @Override
+        public void onServerStatus(String status) {
+        }
+
+        @Override
+        public void onConnectionLost(PeerConnection connection) {
+            onConnectionClosed(connection);
+        }
+    }
+}
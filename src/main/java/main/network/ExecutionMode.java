@@ -0,0 +1,125 @@
+package main.network;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Selects how blocking per-connection work (readers, writers, heartbeats) is scheduled.
+ *
+ * PLATFORM keeps the classic one-OS-thread-per-task model. VIRTUAL runs the same
+ * blocking code on JDK 21+ virtual threads so thousands of idle sockets cost almost
+ * nothing. The virtual-thread API is looked up reflectively, so the code base still
+ * compiles for Java 8; on older runtimes VIRTUAL quietly falls back to PLATFORM.
+ *
+ * Choose the mode with -Dstudyconnect.threads=virtual (default: platform).
+ */
+public enum ExecutionMode {
+    PLATFORM,
+    VIRTUAL;
+
+    public static final String PROPERTY = "studyconnect.threads";
+
+    private static final Method OF_VIRTUAL = lookup(Thread.class, "ofVirtual");
+    private static final Method BUILDER_NAME = lookup(classForName("java.lang.Thread$Builder"), "name", String.class);
+    private static final Method BUILDER_UNSTARTED = lookup(classForName("java.lang.Thread$Builder"), "unstarted", Runnable.class);
+
+    /**
+     * Get the mode configured through the studyconnect.threads system property
+     */
+    public static ExecutionMode current() {
+        String value = System.getProperty(PROPERTY, "platform");
+        return "virtual".equalsIgnoreCase(value.trim()) ? VIRTUAL : PLATFORM;
+    }
+
+    /**
+     * Check if virtual threads are available on this runtime
+     */
+    public static boolean isVirtualThreadSupported() {
+        return OF_VIRTUAL != null && BUILDER_NAME != null && BUILDER_UNSTARTED != null;
+    }
+
+    /**
+     * The mode that will actually be used (VIRTUAL degrades to PLATFORM on old JDKs)
+     */
+    public ExecutionMode effective() {
+        return this == VIRTUAL && !isVirtualThreadSupported() ? PLATFORM : this;
+    }
+
+    /**
+     * Create an unstarted thread for a blocking task
+     * @param task The task to run
+     * @param name Thread name (used in thread dumps)
+     * @return The unstarted thread
+     */
+    public Thread newThread(Runnable task, String name) {
+        if (effective() == VIRTUAL) {
+            try {
+                Object builder = OF_VIRTUAL.invoke(null);
+                builder = BUILDER_NAME.invoke(builder, name);
+                return (Thread) BUILDER_UNSTARTED.invoke(builder, task);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("[ExecutionMode] Virtual thread creation failed, using platform thread: " + e.getMessage());
+            }
+        }
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Create and start a thread for a blocking task
+     */
+    public Thread start(Runnable task, String name) {
+        Thread thread = newThread(task, name);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Create an executor that runs every submitted task on its own thread of this mode.
+     * PLATFORM returns a cached pool (the historical server behaviour); VIRTUAL returns
+     * an unbounded thread-per-task executor backed by virtual threads.
+     * @param namePrefix Prefix for worker thread names
+     */
+    public ExecutorService newTaskExecutor(String namePrefix) {
+        ThreadFactory factory = new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task) {
+                return ExecutionMode.this.newThread(task, namePrefix + "-" + counter.incrementAndGet());
+            }
+        };
+        if (effective() == VIRTUAL) {
+            // Zero keep-alive: virtual threads are never pooled, each task gets a fresh one
+            return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0L, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<Runnable>(), factory);
+        }
+        return Executors.newCachedThreadPool(factory);
+    }
+
+    private static Class<?> classForName(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Method lookup(Class<?> owner, String name, Class<?>... parameterTypes) {
+        if (owner == null) {
+            return null;
+        }
+        try {
+            return owner.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
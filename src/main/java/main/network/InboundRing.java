@@ -0,0 +1,212 @@
+package main.network;
+
+import main.model.Message;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pipeline shard backed by a fixed ring of preallocated, reusable slots
+ * (Disruptor-style) instead of a BlockingQueue.
+ *
+ * Readers claim a sequence with a CAS on the cursor, fill the slot in place and
+ * publish it by writing the sequence into the slot, so a handoff allocates nothing
+ * and takes no lock. The single worker handles every published slot it finds in
+ * one batch and frees the whole batch with one write of the consumed sequence.
+ * When idle it spins briefly (multi-core hosts only), then parks until a reader
+ * wakes it. When the ring is full readers block until the worker frees a batch,
+ * which keeps the pipeline's backpressure.
+ */
+final class InboundRing implements MessagePipeline.Shard {
+    // Spinning only pays when the reader runs on another core; on one CPU it steals the reader's time
+    private static final boolean MULTI_CORE = Runtime.getRuntime().availableProcessors() > 1;
+    private static final int SPIN_TRIES = MULTI_CORE ? 200 : 0;
+    private static final int YIELD_TRIES = MULTI_CORE ? 50 : 0;
+    private static final int FULL_YIELD_TRIES = MULTI_CORE ? 20 : 0;
+    private static final long FULL_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final MessagePipeline pipeline;
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final ReentrantLock fullLock = new ReentrantLock();
+    private final Condition notFull = fullLock.newCondition();
+    private volatile int fullWaiters;
+    private volatile Thread worker;
+    private volatile boolean waiting;
+
+    /**
+     * @param capacity Slots in the ring; rounded up to a power of two
+     */
+    InboundRing(MessagePipeline pipeline, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.pipeline = pipeline;
+        this.slots = new Slot[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    @Override
+    public void put(Message message, PeerConnection connection, Runnable task) {
+        long sequence;
+        int fullTries = 0;
+        while (true) {
+            sequence = cursor.get();
+            if (sequence - consumed.get() >= slots.length) {
+                if (fullTries == 0) {
+                    pipeline.queueFull();
+                } else if (!pipeline.isRunning()) {
+                    return;
+                }
+                if (fullTries++ < FULL_YIELD_TRIES) {
+                    Thread.yield();
+                } else {
+                    awaitSpace();
+                }
+            } else if (cursor.compareAndSet(sequence, sequence + 1)) {
+                break;
+            }
+        }
+
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.message = message;
+        slot.connection = connection;
+        slot.task = task;
+        slot.published = sequence; // volatile write makes the fields above visible to the worker
+        if (waiting) {
+            waiting = false; // one wake-up is enough until the worker has run
+            LockSupport.unpark(worker);
+        }
+    }
+
+    @Override
+    public void run() {
+        worker = Thread.currentThread();
+        int idle = 0;
+        while (pipeline.isRunning()) {
+            if (drain() > 0) {
+                idle = 0;
+            } else if (idle < SPIN_TRIES) {
+                idle++;
+            } else if (idle < SPIN_TRIES + YIELD_TRIES) {
+                idle++;
+                Thread.yield();
+            } else {
+                waiting = true;
+                // Re-check after announcing, so a reader that published just before sees the flag or we see its slot
+                if (!ready()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                waiting = false;
+            }
+        }
+        discard();
+    }
+
+    /**
+     * Handle every slot published so far, then free them all at once
+     * @return Number of slots handled
+     */
+    private int drain() {
+        long first = consumed.get();
+        long next = first;
+        while (true) {
+            Slot slot = slots[(int) (next & mask)];
+            if (slot.published != next) {
+                break; // empty, or claimed but not yet filled in
+            }
+            Message message = slot.message;
+            PeerConnection connection = slot.connection;
+            Runnable task = slot.task;
+            // Drop references before handling so the ring never keeps a message alive
+            slot.message = null;
+            slot.connection = null;
+            slot.task = null;
+            pipeline.handle(message, connection, task);
+            next++;
+            if (next - first == slots.length) {
+                break;
+            }
+        }
+        if (next != first) {
+            consumed.set(next);
+            if (fullWaiters > 0) {
+                signalSpace();
+            }
+        }
+        return (int) (next - first);
+    }
+
+    /**
+     * Block a reader until the worker frees slots (the slow path, only when full)
+     */
+    private void awaitSpace() {
+        fullLock.lock();
+        try {
+            fullWaiters++;
+            // Re-check after announcing, so a batch freed just before is not missed
+            if (cursor.get() - consumed.get() >= slots.length && pipeline.isRunning()) {
+                notFull.awaitNanos(FULL_WAIT_NANOS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            fullWaiters--;
+            fullLock.unlock();
+        }
+    }
+
+    private void signalSpace() {
+        fullLock.lock();
+        try {
+            notFull.signalAll();
+        } finally {
+            fullLock.unlock();
+        }
+    }
+
+    private boolean ready() {
+        long next = consumed.get();
+        return slots[(int) (next & mask)].published == next;
+    }
+
+    /**
+     * Drop whatever is still queued; runs on the worker as it exits
+     */
+    private void discard() {
+        for (Slot slot : slots) {
+            slot.message = null;
+            slot.connection = null;
+            slot.task = null;
+        }
+        consumed.set(cursor.get());
+    }
+
+    @Override
+    public void stop() {
+        Thread current = worker;
+        if (current != null) {
+            LockSupport.unpark(current);
+        }
+        signalSpace();
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(0, cursor.get() - consumed.get());
+    }
+
+    private static final class Slot {
+        volatile long published = -1;
+        Message message;
+        PeerConnection connection;
+        Runnable task;
+    }
+}
@@ -0,0 +1,344 @@
+package main.network;
+
+import main.log.Log;
+import main.log.Logger;
+import main.model.Message;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Hands decoded messages from connection readers to worker stages, so a slow
+ * handler (disk writes, big fan-out, grading) no longer stalls socket reads.
+ *
+ * Each stage has a fixed number of single-threaded shards with a bounded queue.
+ * A message goes to the shard picked by the identity of the connection it came
+ * in on, so messages from one connection are handled in order (and before that
+ * connection's cleanup) while different connections run in parallel. The sender
+ * field is supplied by the client and is not used. Message types are routed to
+ * stages (or handled inline on the reader thread); ordering is per connection
+ * within a stage, not across stages. When a shard's queue is full the
+ * reader blocks, which pushes back on that client's TCP stream instead of
+ * buffering without limit.
+ *
+ * Shards hand off through an ArrayBlockingQueue by default, or through a
+ * preallocated ring (InboundRing) that allocates and locks nothing per message and
+ * lets workers take bursts in batches:
+ *   -Dstudyconnect.pipeline.ingress=ring
+ */
+public class MessagePipeline {
+    private static final Logger LOG = Log.get("SERVER");
+    private static final long FULL_RETRY_MS = 500;
+
+    /**
+     * How readers hand messages to a shard's worker
+     */
+    public enum Ingress {
+        QUEUE,
+        RING;
+
+        public static final String PROPERTY = "studyconnect.pipeline.ingress";
+
+        /**
+         * The ingress configured through studyconnect.pipeline.ingress (default: queue)
+         */
+        public static Ingress current() {
+            String value = System.getProperty(PROPERTY, "queue");
+            return "ring".equalsIgnoreCase(value.trim()) ? RING : QUEUE;
+        }
+    }
+
+    /**
+     * One worker's inbox
+     */
+    interface Shard {
+        /**
+         * Queue a message (or a task, with message and connection null); waits while full
+         */
+        void put(Message message, PeerConnection connection, Runnable task);
+
+        /**
+         * Worker loop; returns once the pipeline stops
+         */
+        void run();
+
+        void stop();
+
+        int size();
+    }
+
+    private final String name;
+    private final ExecutionMode executionMode;
+    private final Ingress ingress;
+    private final BiConsumer<Message, PeerConnection> handler;
+    private final List<Stage> stages = new ArrayList<>();
+    private final EnumMap<Message.MessageType, Stage> routes = new EnumMap<>(Message.MessageType.class);
+    private final EnumSet<Message.MessageType> inlineTypes = EnumSet.noneOf(Message.MessageType.class);
+    private final LongAdder queueFull = new LongAdder();
+    private Stage defaultStage;
+    private volatile boolean running;
+
+    /**
+     * @param name Prefix for worker thread names
+     * @param handler Handles one message; called on a stage worker (or the reader for inline types)
+     */
+    public MessagePipeline(String name, ExecutionMode executionMode, BiConsumer<Message, PeerConnection> handler) {
+        this(name, executionMode, Ingress.QUEUE, handler);
+    }
+
+    public MessagePipeline(String name, ExecutionMode executionMode, Ingress ingress,
+                           BiConsumer<Message, PeerConnection> handler) {
+        this.name = name;
+        this.executionMode = executionMode.effective();
+        this.ingress = ingress;
+        this.handler = handler;
+    }
+
+    public Ingress getIngress() {
+        return ingress;
+    }
+
+    /**
+     * Add a stage. The first stage added without types is the default for every
+     * type not routed elsewhere. Configure before start().
+     * @param types Message types handled by this stage
+     */
+    public synchronized MessagePipeline stage(String stageName, int workers, int queueCapacity,
+                                              Message.MessageType... types) {
+        Stage stage = new Stage(stageName, Math.max(1, workers), Math.max(1, queueCapacity));
+        stages.add(stage);
+        if (types.length == 0 && defaultStage == null) {
+            defaultStage = stage;
+        }
+        for (Message.MessageType type : types) {
+            inlineTypes.remove(type);
+            routes.put(type, stage);
+        }
+        return this;
+    }
+
+    /**
+     * Handle these types directly on the reader thread (cheap, latency-sensitive
+     * control messages). Configure before start().
+     */
+    public synchronized MessagePipeline inline(Message.MessageType... types) {
+        for (Message.MessageType type : types) {
+            routes.remove(type);
+            inlineTypes.add(type);
+        }
+        return this;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (Stage stage : stages) {
+            stage.start();
+        }
+    }
+
+    /**
+     * Stop the workers; messages still queued are dropped
+     */
+    public synchronized void stop() {
+        running = false;
+        for (Stage stage : stages) {
+            stage.stop();
+        }
+    }
+
+    /**
+     * Queue a message on its stage, or handle it right away if its type is inline
+     * or the pipeline is not running. Blocks while the target shard is full.
+     */
+    public void submit(Message message, PeerConnection connection) {
+        Stage stage = routes.get(message.getType());
+        if (stage == null) {
+            stage = defaultStage;
+        }
+        if (stage == null || !running || inlineTypes.contains(message.getType())) {
+            handler.accept(message, connection);
+            return;
+        }
+        stage.shard(shardKey(message, connection)).put(message, connection, null);
+    }
+
+    /**
+     * Run a task on the default stage, in order with the messages already read from
+     * the connection (e.g. its cleanup after its last messages)
+     */
+    public void execute(PeerConnection connection, Runnable task) {
+        if (defaultStage == null || !running) {
+            task.run();
+            return;
+        }
+        defaultStage.shard(System.identityHashCode(connection)).put(null, null, task);
+    }
+
+    /**
+     * The connection's identity; messages injected without one (the host's own,
+     * benchmarks) spread by sender
+     */
+    private static int shardKey(Message message, PeerConnection connection) {
+        if (connection == null && message.getSender() != null) {
+            return message.getSender().hashCode();
+        }
+        return System.identityHashCode(connection);
+    }
+
+    /**
+     * Messages waiting in every stage
+     */
+    public int getQueuedCount() {
+        int queued = 0;
+        for (Stage stage : stages) {
+            queued += stage.size();
+        }
+        return queued;
+    }
+
+    /**
+     * Times a reader found its shard full and had to wait
+     */
+    public long getQueueFullCount() {
+        return queueFull.sum();
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    void queueFull() {
+        queueFull.increment();
+    }
+
+    /**
+     * Run one queued message or task on a worker
+     */
+    void handle(Message message, PeerConnection connection, Runnable task) {
+        try {
+            if (task != null) {
+                task.run();
+            } else {
+                handler.accept(message, connection);
+            }
+        } catch (RuntimeException e) {
+            // One bad message must not take the shard (and every sender on it) down
+            LOG.error("Handler failed", "thread", Thread.currentThread().getName(),
+                "type", message != null ? message.getType() : "task", "error", e);
+        }
+    }
+
+    private final class Stage {
+        final String stageName;
+        final Shard[] shards;
+        final Thread[] workers;
+
+        Stage(String stageName, int shardCount, int queueCapacity) {
+            this.stageName = stageName;
+            this.shards = new Shard[shardCount];
+            this.workers = new Thread[shardCount];
+            for (int i = 0; i < shardCount; i++) {
+                shards[i] = ingress == Ingress.RING
+                    ? new InboundRing(MessagePipeline.this, queueCapacity)
+                    : new QueueShard(queueCapacity);
+            }
+        }
+
+        Shard shard(int key) {
+            return shards[Math.floorMod(key, shards.length)];
+        }
+
+        void start() {
+            for (int i = 0; i < shards.length; i++) {
+                workers[i] = executionMode.start(shards[i]::run, name + "-" + stageName + "-" + i);
+            }
+        }
+
+        void stop() {
+            for (int i = 0; i < shards.length; i++) {
+                if (workers[i] != null) {
+                    workers[i].interrupt();
+                    workers[i] = null;
+                }
+                shards[i].stop();
+            }
+        }
+
+        int size() {
+            int size = 0;
+            for (Shard shard : shards) {
+                size += shard.size();
+            }
+            return size;
+        }
+    }
+
+    private static final class Job {
+        final Message message;
+        final PeerConnection connection;
+        final Runnable task;
+
+        Job(Message message, PeerConnection connection, Runnable task) {
+            this.message = message;
+            this.connection = connection;
+            this.task = task;
+        }
+    }
+
+    private final class QueueShard implements Shard {
+        final BlockingQueue<Job> queue;
+
+        QueueShard(int queueCapacity) {
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        @Override
+        public void put(Message message, PeerConnection connection, Runnable task) {
+            Job job = new Job(message, connection, task);
+            if (queue.offer(job)) {
+                return;
+            }
+            queueFull.increment();
+            try {
+                while (running && !queue.offer(job, FULL_RETRY_MS, TimeUnit.MILLISECONDS)) {
+                    // keep waiting; the reader stops reading this socket meanwhile
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                Job job;
+                try {
+                    job = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                handle(job.message, job.connection, job.task);
+            }
+        }
+
+        @Override
+        public void stop() {
+            queue.clear();
+        }
+
+        @Override
+        public int size() {
+            return queue.size();
+        }
+    }
+}
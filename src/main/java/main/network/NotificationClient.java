@@ -29,7 +29,7 @@ public class NotificationClient {
             socket = new DatagramSocket(NOTIFICATION_PORT);
             running = true;
             
-            listenerThread = new Thread(() -> {
+            listenerThread = ExecutionMode.current().newThread(() -> {
                 byte[] buffer = new byte[1024];
                 
                 while (running) {
@@ -48,9 +48,7 @@ public class NotificationClient {
                         }
                     }
                 }
-            });
-            
-            listenerThread.setDaemon(true);
+            }, "NotificationListener-" + NOTIFICATION_PORT);
             listenerThread.start();
             
             System.out.println("[NotificationClient] Started on port " + NOTIFICATION_PORT);
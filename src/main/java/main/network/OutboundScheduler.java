@@ -0,0 +1,205 @@
+package main.network;
+
+import main.metrics.Metrics;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-connection outbound queue with one lane per TrafficClass.
+ *
+ * Bulk payloads are cut into BULK_CHUNK_SIZE frames at enqueue time. The writer
+ * takes frames with weighted round-robin: each round a lane may send up to its
+ * weight in frames, lanes are visited CONTROL first, and credits refill once every
+ * non-empty lane has spent them. A heartbeat queued behind a 50 MB upload therefore
+ * waits for at most one bulk chunk, not for the whole file.
+ */
+class OutboundScheduler {
+    static final int BULK_CHUNK_SIZE = 32 * 1024;
+
+    private static final TrafficClass[] LANES = TrafficClass.values();
+
+    private final ArrayDeque<Frame>[] queues;
+    private final int[] credits;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition idle = lock.newCondition();
+    private int nextMessageId;
+    private int size;
+    private boolean writing;
+    private boolean closed;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    OutboundScheduler() {
+        queues = new ArrayDeque[LANES.length];
+        credits = new int[LANES.length];
+        for (TrafficClass lane : LANES) {
+            queues[lane.ordinal()] = new ArrayDeque<>();
+            credits[lane.ordinal()] = lane.getWeight();
+        }
+    }
+
+    /**
+     * Queue an encoded payload; bulk payloads are split into chunks
+     * @return false if the scheduler was closed
+     */
+    boolean enqueue(TrafficClass lane, byte[] payload) {
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            int id = nextMessageId++;
+            long now = System.nanoTime();
+            ArrayDeque<Frame> queue = queues[lane.ordinal()];
+            if (lane == TrafficClass.BULK && payload.length > BULK_CHUNK_SIZE) {
+                for (int offset = 0; offset < payload.length; offset += BULK_CHUNK_SIZE) {
+                    int length = Math.min(BULK_CHUNK_SIZE, payload.length - offset);
+                    boolean last = offset + length == payload.length;
+                    queue.add(new Frame(id, lane, last, payload, offset, length, now));
+                    size++;
+                }
+            } else {
+                queue.add(new Frame(id, lane, true, payload, 0, payload.length, now));
+                size++;
+            }
+            Metrics.global().recordQueueDepth(size);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take the next frame to write, blocking while all lanes are empty
+     * @return The frame, or null once closed
+     */
+    Frame take() throws InterruptedException {
+        lock.lock();
+        try {
+            writing = false;
+            idle.signalAll();
+            while (size == 0 && !closed) {
+                notEmpty.await();
+            }
+            if (closed) {
+                return null;
+            }
+            writing = true;
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take another frame for the batch being written, waiting at most the given time.
+     * Unlike take(), the writer stays busy (not idle) while it gathers a batch.
+     * @param timeoutNanos Maximum wait; zero or less only takes what is already queued
+     * @return The frame, or null if none arrived in time or closed
+     */
+    Frame poll(long timeoutNanos) throws InterruptedException {
+        lock.lock();
+        try {
+            long nanos = timeoutNanos;
+            while (size == 0 && !closed) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return closed ? null : next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until every queued frame has been handed to the socket
+     * @param timeoutMillis Maximum time to wait
+     */
+    void awaitIdle(long timeoutMillis) throws InterruptedException {
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while ((size > 0 || writing) && !closed && nanos > 0) {
+                nanos = idle.awaitNanos(nanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Weighted round-robin pick; caller holds the lock and size > 0
+     */
+    private Frame next() {
+        while (true) {
+            for (TrafficClass lane : LANES) {
+                int i = lane.ordinal();
+                if (credits[i] > 0 && !queues[i].isEmpty()) {
+                    credits[i]--;
+                    size--;
+                    return queues[i].poll();
+                }
+            }
+            // Every non-empty lane spent its credits: start a new round
+            for (TrafficClass lane : LANES) {
+                credits[lane.ordinal()] = lane.getWeight();
+            }
+        }
+    }
+
+    /**
+     * Number of frames waiting to be written
+     */
+    int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (ArrayDeque<Frame> queue : queues) {
+                queue.clear();
+            }
+            size = 0;
+            notEmpty.signalAll();
+            idle.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * One wire frame: a whole message or one chunk of a bulk message
+     */
+    static final class Frame {
+        final int messageId;
+        final TrafficClass lane;
+        final boolean last;
+        final byte[] data;
+        final int offset;
+        final int length;
+        final long enqueuedAt; // System.nanoTime() when queued
+
+        Frame(int messageId, TrafficClass lane, boolean last, byte[] data, int offset, int length, long enqueuedAt) {
+            this.messageId = messageId;
+            this.lane = lane;
+            this.last = last;
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
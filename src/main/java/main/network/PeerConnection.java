@@ -2,26 +2,73 @@ package main.network;
 
 import main.model.Message;
 import main.model.FileTransfer;
+import main.jfr.ConnectionClosedEvent;
+import main.jfr.ConnectionOpenedEvent;
+import main.jfr.SendBatchEvent;
+import main.log.Log;
+import main.log.Logger;
+import main.metrics.Metrics;
+import main.util.NetworkConstants;
 
 import java.io.*;
 import java.net.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * PeerConnection handles communication with a single peer
+ * PeerConnection handles communication with a single peer.
+ *
+ * Each Message or FileTransfer is serialized on its own and sent as one or more
+ * frames: [int messageId][byte flags][int length][payload]. Outgoing frames go
+ * through an OutboundScheduler with CONTROL / INTERACTIVE / BULK lanes and are
+ * written by a dedicated writer thread, so heartbeats and chat keep flowing while
+ * a large file is being sent. The writer coalesces whatever is queued (plus what
+ * arrives within a short, per-lane linger window) into one buffered write and a
+ * single flush. The reader (run) stays a simple blocking loop that reassembles
+ * chunked payloads. Since any client can connect, reassembly is bounded: a
+ * non-final frame may be no bigger than the sender's chunk size, at most
+ * MAX_PARTIAL_MESSAGES payloads may be in flight, and their buffers grow with what
+ * has arrived, up to MAX_PAYLOAD_SIZE in total. A peer breaking these limits is
+ * disconnected.
  */
 public class PeerConnection implements Runnable {
+    private static final Logger LOG = Log.get("PeerConnection");
+    private static final int FLAG_LAST = 0x80;
+    private static final int FRAME_HEADER_SIZE = 9;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    // Largest payload accepted from a peer: a max-size file plus serialization overhead
+    private static final int MAX_PAYLOAD_SIZE = NetworkConstants.MAX_FILE_SIZE + 1024 * 1024;
+    // The writer sends one bulk payload at a time; a few in flight leaves room for other senders' framing
+    private static final int MAX_PARTIAL_MESSAGES = 4;
+    private static final long CLOSE_DRAIN_TIMEOUT_MS = 1000;
+
     private Socket socket;
-    private ObjectOutputStream out;
-    private ObjectInputStream in;
+    private DataOutputStream out;
+    private DataInputStream in;
     private MessageHandler messageHandler;
-    private boolean running;
+    private volatile boolean running;
     private String peerAddress;
     private String currentUsername;
+    private final ExecutionMode executionMode;
+    private final OutboundScheduler outbound = new OutboundScheduler();
+    private final AtomicBoolean writerStarted = new AtomicBoolean();
+    private volatile Thread writerThread;
+    private volatile long framesWritten;
+    private volatile long bytesWritten;
+    private volatile long flushes;
+    private long openedAt;
 
     public PeerConnection(Socket socket, MessageHandler messageHandler, String currentUsername) {
+        this(socket, messageHandler, currentUsername, ExecutionMode.current());
+    }
+
+    public PeerConnection(Socket socket, MessageHandler messageHandler, String currentUsername,
+                          ExecutionMode executionMode) {
         this.socket = socket;
         this.messageHandler = messageHandler;
         this.currentUsername = currentUsername;
+        this.executionMode = executionMode.effective();
         this.peerAddress = socket.getInetAddress().getHostAddress();
 
         try {
@@ -31,12 +78,17 @@ public class PeerConnection implements Runnable {
             socket.setSoTimeout(0);
             // Enable TCP_NODELAY for better responsiveness
             socket.setTcpNoDelay(true);
-            
-            // Create output stream first
-            this.out = new ObjectOutputStream(socket.getOutputStream());
-            this.out.flush();
-            this.in = new ObjectInputStream(socket.getInputStream());
+
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), STREAM_BUFFER_SIZE));
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), STREAM_BUFFER_SIZE));
             this.running = true;
+            this.openedAt = System.currentTimeMillis();
+
+            ConnectionOpenedEvent opened = new ConnectionOpenedEvent();
+            if (opened.shouldCommit()) {
+                opened.peer = peerAddress;
+                opened.commit();
+            }
         } catch (IOException e) {
             messageHandler.onServerStatus("Error initializing peer connection: " + e.getMessage());
             close();
@@ -45,35 +97,64 @@ public class PeerConnection implements Runnable {
 
     @Override
     public void run() {
+        startWriter();
+        // Partially received bulk payloads, keyed by message id, and when their first chunk arrived
+        Map<Integer, ByteArrayOutputStream> partial = new HashMap<>();
+        Map<Integer, Long> partialStart = new HashMap<>();
+        long partialBytes = 0;
+
         while (running && !socket.isClosed()) {
             try {
-                Object obj = in.readObject();
-
-                if (obj instanceof Message) {
-                    Message message = (Message) obj;
-                    messageHandler.onMessageReceived(message, this);
-                    // Popup notifications removed
-
-                } else if (obj instanceof FileTransfer) {
-                    FileTransfer fileTransfer = (FileTransfer) obj;
-
-                    // Check if this is an incoming file (not our own)
-                    boolean isIncomingFile = !fileTransfer.getSender().equals(currentUsername);
-                    boolean isForCurrentUser = fileTransfer.getRecipient().equals(currentUsername);
-
-                    if (isIncomingFile && isForCurrentUser) {
-                        messageHandler.onFileReceived(fileTransfer, this);
-                        // Popup notification removed
-                    } else {
-                        // This is our own file transfer echo, just log it
-                        System.out.println("[DEBUG] Ignoring file transfer: " + fileTransfer.getFileName() +
-                                " | Sender: " + fileTransfer.getSender() +
-                                " | Recipient: " + fileTransfer.getRecipient());
+                int messageId = in.readInt();
+                int flags = in.readUnsignedByte();
+                int length = in.readInt();
+                boolean last = (flags & FLAG_LAST) != 0;
+                ByteArrayOutputStream pending = partial.get(messageId);
+                // Check the header before allocating anything for the frame
+                if (length < 0 || length > MAX_PAYLOAD_SIZE) {
+                    throw new StreamCorruptedException("Invalid frame length " + length);
+                }
+                if ((!last || pending != null) && length > OutboundScheduler.BULK_CHUNK_SIZE) {
+                    throw new StreamCorruptedException("Chunk of " + length + " bytes exceeds "
+                        + OutboundScheduler.BULK_CHUNK_SIZE);
+                }
+                if (pending != null || !last) {
+                    if (pending == null && partial.size() >= MAX_PARTIAL_MESSAGES) {
+                        throw new StreamCorruptedException("More than " + MAX_PARTIAL_MESSAGES
+                            + " chunked payloads in flight");
+                    }
+                    partialBytes += length;
+                    if (partialBytes > MAX_PAYLOAD_SIZE) {
+                        throw new StreamCorruptedException("Chunked payloads exceed " + MAX_PAYLOAD_SIZE + " bytes");
+                    }
+                }
+                byte[] chunk = new byte[length];
+                in.readFully(chunk);
+
+                byte[] payload;
+                if (!last) {
+                    if (pending == null) {
+                        pending = new ByteArrayOutputStream(length);
+                        partial.put(messageId, pending);
+                        partialStart.put(messageId, System.nanoTime());
                     }
+                    pending.write(chunk);
+                    continue;
+                } else if (pending != null) {
+                    partial.remove(messageId);
+                    pending.write(chunk);
+                    partialBytes -= pending.size();
+                    payload = pending.toByteArray();
+                    Metrics.global().recordFileTransfer(payload.length,
+                        System.nanoTime() - partialStart.remove(messageId));
+                } else {
+                    payload = chunk;
                 }
+
+                dispatch(decode(payload), payload.length);
             } catch (EOFException | SocketException e) {
                 // Connection closed by peer or network error
-                System.out.println("[PeerConnection] Connection lost to " + peerAddress);
+                LOG.info("Connection lost", "peer", peerAddress);
                 break;
             } catch (IOException | ClassNotFoundException e) {
                 if (running) {
@@ -89,64 +170,227 @@ public class PeerConnection implements Runnable {
         // Popup notification removed
     }
 
+    private void dispatch(Object obj, int size) {
+        if (obj instanceof Message) {
+            Message message = (Message) obj;
+            Metrics.global().recordIn(message.getType(), size);
+            messageHandler.onMessageReceived(message, this);
+            // Popup notifications removed
+
+        } else if (obj instanceof FileTransfer) {
+            FileTransfer fileTransfer = (FileTransfer) obj;
+            Metrics.global().recordIn(Message.MessageType.FILE, size);
+
+            // Check if this is an incoming file (not our own)
+            boolean isIncomingFile = !fileTransfer.getSender().equals(currentUsername);
+            boolean isForCurrentUser = fileTransfer.getRecipient().equals(currentUsername);
+
+            if (isIncomingFile && isForCurrentUser) {
+                messageHandler.onFileReceived(fileTransfer, this);
+                // Popup notification removed
+            } else {
+                // This is our own file transfer echo
+                LOG.debug("Ignoring file transfer", "file", fileTransfer.getFileName(),
+                    "from", fileTransfer.getSender(), "to", fileTransfer.getRecipient());
+            }
+        }
+    }
+
+    /**
+     * Serialize a Message or FileTransfer into a standalone payload.
+     * The result can be shared by several connections (see Server.broadcast).
+     */
+    public static byte[] encode(Serializable payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        oos.writeObject(payload);
+        oos.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserialize a payload produced by encode
+     */
+    public static Object decode(byte[] payload) throws IOException, ClassNotFoundException {
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(payload));
+        return ois.readObject();
+    }
+
     /**
      * Send a message to the peer
      */
-    public synchronized void sendMessage(Message message) {
+    public void sendMessage(Message message) {
         try {
-            if (out != null && running && !socket.isClosed()) {
-                out.writeObject(message);
-                out.flush();
-                out.reset();
-            }
-        } catch (SocketException e) {
-            // Connection is broken, close it
-            running = false;
-            close();
-            System.err.println("[PeerConnection] Connection broken to " + peerAddress + ", closing...");
+            byte[] payload = encode(message);
+            Metrics.global().recordOut(message.getType(), payload.length, 1);
+            sendEncoded(TrafficClass.of(message), payload);
         } catch (IOException e) {
             messageHandler.onServerStatus("Error sending message: " + e.getMessage());
         }
     }
 
+    /**
+     * Queue an already encoded payload on the given lane
+     */
+    public void sendEncoded(TrafficClass lane, byte[] payload) {
+        if (running && !socket.isClosed()) {
+            startWriter();
+            outbound.enqueue(lane, payload);
+        }
+    }
+
     /**
      * Send a file to the peer
      */
-    public synchronized void sendFile(FileTransfer fileTransfer) {
+    public void sendFile(FileTransfer fileTransfer) {
         try {
-            if (out != null && running && !socket.isClosed()) {
-                out.writeObject(fileTransfer);
+            byte[] payload = encode(fileTransfer);
+            Metrics.global().recordOut(Message.MessageType.FILE, payload.length, 1);
+            sendEncoded(TrafficClass.BULK, payload);
+            messageHandler.onServerStatus("File sent: " + fileTransfer.getFileName());
+            // Popup notification removed
+        } catch (IOException e) {
+            messageHandler.onServerStatus("Error sending file: " + e.getMessage());
+        }
+    }
+
+    private void startWriter() {
+        if (writerStarted.compareAndSet(false, true)) {
+            writerThread = executionMode.start(this::writeLoop, "PeerWriter-" + peerAddress);
+        }
+    }
+
+    /**
+     * Writer thread: drain the scheduler onto the socket in batches.
+     * A batch ends when it reaches WRITE_BATCH_BYTES or when the oldest frame's
+     * linger budget (zero for CONTROL) runs out with nothing more queued.
+     */
+    private void writeLoop() {
+        try {
+            OutboundScheduler.Frame frame;
+            while ((frame = outbound.take()) != null) {
+                SendBatchEvent event = new SendBatchEvent();
+                event.begin();
+                long queueWait = System.nanoTime() - frame.enqueuedAt;
+                long deadline = frame.enqueuedAt + lingerNanos(frame.lane);
+                int batchBytes = writeFrame(frame);
+                int batchFrames = 1;
+
+                while (batchBytes < NetworkConstants.WRITE_BATCH_BYTES) {
+                    OutboundScheduler.Frame next = outbound.poll(deadline - System.nanoTime());
+                    if (next == null) {
+                        break;
+                    }
+                    deadline = Math.min(deadline, next.enqueuedAt + lingerNanos(next.lane));
+                    batchBytes += writeFrame(next);
+                    batchFrames++;
+                }
+
                 out.flush();
-                out.reset();
-                messageHandler.onServerStatus("File sent: " + fileTransfer.getFileName());
-                // Popup notification removed
+                framesWritten += batchFrames;
+                bytesWritten += batchBytes;
+                flushes++;
+
+                if (event.shouldCommit()) {
+                    event.peer = peerAddress;
+                    event.frames = batchFrames;
+                    event.bytes = batchBytes;
+                    event.queueWait = queueWait / 1000;
+                    event.commit();
+                }
             }
         } catch (SocketException e) {
             // Connection is broken, close it
-            running = false;
+            if (running) {
+                LOG.warn("Connection broken, closing", "peer", peerAddress);
+            }
             close();
-            System.err.println("[PeerConnection] Connection broken to " + peerAddress + ", closing...");
         } catch (IOException e) {
-            messageHandler.onServerStatus("Error sending file: " + e.getMessage());
+            if (running) {
+                messageHandler.onServerStatus("Error sending message: " + e.getMessage());
+            }
+            close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int writeFrame(OutboundScheduler.Frame frame) throws IOException {
+        out.writeInt(frame.messageId);
+        out.writeByte((frame.last ? FLAG_LAST : 0) | frame.lane.ordinal());
+        out.writeInt(frame.length);
+        out.write(frame.data, frame.offset, frame.length);
+        return FRAME_HEADER_SIZE + frame.length;
+    }
+
+    private static long lingerNanos(TrafficClass lane) {
+        switch (lane) {
+            case CONTROL:
+                return 0;
+            case INTERACTIVE:
+                return NetworkConstants.INTERACTIVE_LINGER_MICROS * 1000;
+            default:
+                return NetworkConstants.BULK_LINGER_MICROS * 1000;
         }
     }
 
     /**
-     * Close the connection
+     * Frames written to the socket so far
+     */
+    public long getFramesWritten() {
+        return framesWritten;
+    }
+
+    /**
+     * Socket flushes so far; framesWritten / flushes is the average batch size
+     */
+    public long getFlushCount() {
+        return flushes;
+    }
+
+    /**
+     * Number of frames queued but not yet written
+     */
+    public int getQueuedFrames() {
+        return outbound.size();
+    }
+
+    /**
+     * Close the connection. Frames already queued (e.g. a USER_LEAVE sent just
+     * before disconnecting) get a short grace period to reach the socket.
      */
     public void close() {
+        if (running && writerThread != null && Thread.currentThread() != writerThread) {
+            try {
+                outbound.awaitIdle(CLOSE_DRAIN_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         running = false;
+        int unsent = outbound.size(); // dropped by close() below
+        outbound.close();
 
+        boolean wasOpen = socket != null && !socket.isClosed();
         try {
-            if (in != null)
-                in.close();
-            if (out != null)
-                out.close();
-            if (socket != null && !socket.isClosed())
+            // Closing the socket also closes both streams and unblocks reader and writer
+            if (wasOpen)
                 socket.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
+
+        if (wasOpen && openedAt != 0) {
+            ConnectionClosedEvent closed = new ConnectionClosedEvent();
+            if (closed.shouldCommit()) {
+                closed.peer = peerAddress;
+                closed.lifetime = System.currentTimeMillis() - openedAt;
+                closed.framesWritten = framesWritten;
+                closed.bytesWritten = bytesWritten;
+                closed.framesUnsent = unsent;
+                closed.commit();
+            }
+        }
     }
 
     public String getPeerAddress() {
@@ -156,4 +400,4 @@ public class PeerConnection implements Runnable {
     public boolean isRunning() {
         return running && !socket.isClosed();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,149 @@
+package main.network;
+
+import main.model.Message;
+import main.model.PresenceUpdate;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Server-side presence state with debounced, sequenced deltas.
+ *
+ * Joins, leaves and status changes only mark a user dirty. A single flush runs
+ * DEBOUNCE_MS after the first change of a burst and publishes one PRESENCE_DELTA
+ * holding the difference between what clients were last told and the current
+ * state, so 200 logins in a few seconds cost a handful of small broadcasts instead
+ * of 200 full peer lists. A user who joins and leaves inside one window produces
+ * no traffic at all. New clients get a PRESENCE_SNAPSHOT matching the last
+ * published sequence, so the next delta applies cleanly on top of it.
+ */
+public class PresenceTracker {
+    private static final long DEBOUNCE_MS = 250;
+    private static final String ONLINE = "online";
+
+    private final Consumer<Message> broadcaster;
+    private final Map<String, String> current; // username -> status, live state
+    private final Map<String, String> published; // what clients have been told
+    private final Set<String> dirty;
+    private final Set<String> remoteUsers; // users hosted by other cluster nodes
+    private final ScheduledExecutorService flusher;
+    private long sequence;
+    private boolean flushScheduled;
+
+    /**
+     * @param broadcaster Sends a presence message to every client
+     */
+    public PresenceTracker(Consumer<Message> broadcaster) {
+        this.broadcaster = broadcaster;
+        this.current = new LinkedHashMap<>();
+        this.published = new LinkedHashMap<>();
+        this.dirty = new LinkedHashSet<>();
+        this.remoteUsers = new HashSet<>();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "PresenceFlusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public synchronized void joined(String username) {
+        current.put(username, ONLINE);
+        markDirty(username);
+    }
+
+    public synchronized void left(String username) {
+        if (current.remove(username) != null) {
+            markDirty(username);
+        }
+    }
+
+    public synchronized void statusChanged(String username, String status) {
+        if (current.containsKey(username) && !status.equals(current.get(username))) {
+            current.put(username, status);
+            markDirty(username);
+        }
+    }
+
+    /**
+     * Reconcile the users hosted by other cluster nodes
+     */
+    public synchronized void syncRemoteUsers(Set<String> users) {
+        for (String user : new ArrayList<>(remoteUsers)) {
+            if (!users.contains(user)) {
+                remoteUsers.remove(user);
+                left(user);
+            }
+        }
+        for (String user : users) {
+            if (remoteUsers.add(user)) {
+                joined(user);
+            }
+        }
+    }
+
+    /**
+     * Build a snapshot consistent with the last published sequence
+     */
+    public synchronized Message snapshotMessage() {
+        List<PresenceUpdate.Entry> entries = new ArrayList<>(published.size());
+        for (Map.Entry<String, String> e : published.entrySet()) {
+            entries.add(new PresenceUpdate.Entry(e.getKey(), PresenceUpdate.Change.JOINED, e.getValue()));
+        }
+        Message message = new Message("Server", "all", "", Message.MessageType.PRESENCE_SNAPSHOT);
+        message.setPresenceUpdate(new PresenceUpdate(sequence, true, entries));
+        return message;
+    }
+
+    public synchronized List<String> getOnlineUsers() {
+        return new ArrayList<>(current.keySet());
+    }
+
+    public void shutdown() {
+        flusher.shutdownNow();
+    }
+
+    private void markDirty(String username) {
+        dirty.add(username);
+        if (!flushScheduled) {
+            flushScheduled = true;
+            flusher.schedule(this::flush, DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Publish the accumulated difference as one delta
+     */
+    private void flush() {
+        Message delta;
+        synchronized (this) {
+            flushScheduled = false;
+            List<PresenceUpdate.Entry> entries = new ArrayList<>();
+            for (String user : dirty) {
+                String now = current.get(user);
+                String before = published.get(user);
+                if (now != null && before == null) {
+                    entries.add(new PresenceUpdate.Entry(user, PresenceUpdate.Change.JOINED, now));
+                    published.put(user, now);
+                } else if (now == null && before != null) {
+                    entries.add(new PresenceUpdate.Entry(user, PresenceUpdate.Change.LEFT, null));
+                    published.remove(user);
+                } else if (now != null && !now.equals(before)) {
+                    entries.add(new PresenceUpdate.Entry(user, PresenceUpdate.Change.STATUS, now));
+                    published.put(user, now);
+                }
+            }
+            dirty.clear();
+            if (entries.isEmpty()) {
+                return;
+            }
+            sequence++;
+            delta = new Message("Server", "all", "", Message.MessageType.PRESENCE_DELTA);
+            delta.setPresenceUpdate(new PresenceUpdate(sequence, false, entries));
+        }
+        // Broadcast outside the lock; the per-connection queues keep deltas in sequence order
+        broadcaster.accept(delta);
+    }
+}
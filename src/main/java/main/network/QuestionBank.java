@@ -0,0 +1,84 @@
+package main.network;
+
+import main.log.Log;
+import main.log.Logger;
+import main.model.Message;
+import main.model.Quiz;
+import main.model.QuizPage;
+import main.model.QuizQuestion;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Server-side cache of running quizzes' questions, split into pages.
+ *
+ * QUIZ_START goes out as a manifest (the quiz without its questions) and students
+ * fetch the questions a page at a time, so a long exam costs every client a
+ * small message at the start instead of the whole question set at once. Each
+ * page is encoded into its QUIZ_PAGE frame once, when the quiz is registered;
+ * the encoded pages are immutable and shared, so serving a request is a lookup
+ * and an enqueue of the same bytes for every student. The most recent
+ * MAX_QUIZZES quizzes are kept.
+ */
+public class QuestionBank {
+    private static final Logger LOG = Log.get("QUIZ");
+    public static final int DEFAULT_PAGE_SIZE = 10;
+    private static final int MAX_QUIZZES = 64;
+
+    private final int pageSize;
+    private final Map<String, byte[][]> pages; // quizId -> encoded QUIZ_PAGE frames
+
+    public QuestionBank(int pageSize) {
+        this.pageSize = Math.max(1, pageSize);
+        this.pages = new LinkedHashMap<String, byte[][]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[][]> eldest) {
+                return size() > MAX_QUIZZES;
+            }
+        };
+    }
+
+    /**
+     * Encode a quiz's pages (once per quiz id)
+     * @return The manifest to send in its place
+     */
+    public Quiz register(Quiz quiz) throws IOException {
+        Quiz manifest = quiz.manifest(pageSize);
+        synchronized (this) {
+            if (pages.containsKey(quiz.getQuizId())) {
+                return manifest;
+            }
+        }
+        List<QuizQuestion> questions = quiz.getQuestions();
+        byte[][] encoded = new byte[manifest.getPageCount()][];
+        long bytes = 0;
+        for (int page = 0; page < encoded.length; page++) {
+            int first = page * pageSize;
+            List<QuizQuestion> slice = questions.subList(first, Math.min(questions.size(), first + pageSize));
+            Message message = new Message("Server", "all", "", Message.MessageType.QUIZ_PAGE);
+            message.setQuizPage(new QuizPage(quiz.getQuizId(), page, first, slice));
+            encoded[page] = PeerConnection.encode(message);
+            bytes += encoded[page].length;
+        }
+        synchronized (this) {
+            pages.putIfAbsent(quiz.getQuizId(), encoded);
+        }
+        LOG.info("Question bank loaded", "quiz", quiz.getQuizId(), "pages", encoded.length, "bytes", bytes);
+        return manifest;
+    }
+
+    /**
+     * The encoded QUIZ_PAGE frame, or null if the quiz or page is unknown
+     */
+    public synchronized byte[] page(String quizId, int pageIndex) {
+        byte[][] quizPages = pages.get(quizId);
+        return quizPages == null || pageIndex < 0 || pageIndex >= quizPages.length ? null : quizPages[pageIndex];
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+}
@@ -0,0 +1,216 @@
+package main.network;
+
+import main.log.Log;
+import main.log.Logger;
+import main.model.Message;
+import main.model.Quiz;
+import main.model.QuizTimeSync;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Server-authoritative clock for running quizzes.
+ *
+ * When a quiz starts the server fixes its deadline on its own clock (start +
+ * duration). Answers are checked against that deadline when the reader receives
+ * them, so neither the client's clock nor time spent queued on the quiz stage
+ * decides whether an answer is late; answers past the deadline plus GRACE_MS are
+ * rejected. While a quiz runs, every SYNC_INTERVAL_MS its room gets a
+ * QUIZ_TIME_SYNC with the server time and the deadline, and a final one marks it
+ * closed, so clients count down on the server's time. While any quiz is open,
+ * answers to a quiz id the server did not start are rejected too, so a made-up
+ * id cannot slip past the deadline. Admission is final: every answer admitted is
+ * counted until the server has handed it to grading (answerHandled), and the quiz
+ * is only handed to the retire callback (the host stops grading it) once that
+ * count is back to zero, RETIRE_DELAY_MS after the deadline at the earliest. If
+ * admitted answers are somehow never handled the quiz is retired anyway after
+ * MAX_DRAIN_MS more, with a warning.
+ *
+ * All quizzes share one scheduler thread: a periodic tick sends the syncs of every
+ * open quiz and forgets quizzes that closed more than RETENTION_MS ago, and each
+ * quiz only adds a one-shot close task, so many concurrent quizzes across rooms
+ * cost no extra threads.
+ */
+public class QuizSessionScheduler {
+    private static final Logger LOG = Log.get("QUIZ");
+    static final long SYNC_INTERVAL_MS = 5_000;
+    static final long GRACE_MS = 2_000; // network and reader slack past the deadline
+    static final long RETIRE_DELAY_MS = GRACE_MS + 2_000;
+    static final long DRAIN_CHECK_MS = 250; // retire re-checks for admitted answers still queued
+    static final long MAX_DRAIN_MS = 60_000;
+    private static final long RETENTION_MS = 10 * 60_000; // late answers are still recognized as late
+
+    private final BiConsumer<String, Message> publisher;
+    private final Consumer<String> onRetired;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicBoolean ticking = new AtomicBoolean();
+
+    /**
+     * @param publisher Sends a message to a room, or to every client when the room is null
+     * @param onRetired Called with the quiz id once no more answers to it can be admitted
+     */
+    public QuizSessionScheduler(BiConsumer<String, Message> publisher, Consumer<String> onRetired) {
+        this.publisher = publisher;
+        this.onRetired = onRetired;
+        this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "QuizScheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start a quiz's clock now; a quiz that is already running keeps its deadline
+     * @param room Room the quiz runs in, or null for the whole server
+     */
+    public void start(Quiz quiz, String room) {
+        long now = System.currentTimeMillis();
+        Session session = new Session(quiz.getQuizId(), room, now + quiz.getDuration() * 1000L);
+        if (sessions.putIfAbsent(session.quizId, session) != null) {
+            return;
+        }
+        open.incrementAndGet();
+        if (ticking.compareAndSet(false, true)) {
+            // No scheduler thread until the first quiz
+            timer.scheduleAtFixedRate(this::tick, SYNC_INTERVAL_MS, SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+        timer.schedule(() -> close(session), session.deadline - now, TimeUnit.MILLISECONDS);
+        timer.schedule(() -> retire(session), session.deadline + RETIRE_DELAY_MS - now, TimeUnit.MILLISECONDS);
+        LOG.info("Quiz clock started", "quiz", session.quizId, "room", room, "seconds", quiz.getDuration());
+        publisher.accept(room, syncMessage(session, now));
+    }
+
+    /**
+     * Whether an answer received at this time (server clock) is in time. An answer
+     * to a quiz this server never saw start (or no quiz id at all) is rejected while
+     * any quiz is open, and let through otherwise. An admitted answer to a known quiz
+     * holds off its retirement until answerHandled is called for it.
+     */
+    public boolean admit(String quizId, long receivedAt) {
+        Session session = quizId == null ? null : sessions.get(quizId);
+        if (session == null) {
+            if (open.get() == 0) {
+                return true;
+            }
+        } else {
+            // Count before checking the clock: retire either sees this answer or it is already too late
+            session.inFlight.incrementAndGet();
+            if (receivedAt <= session.deadline + GRACE_MS) {
+                return true;
+            }
+            session.inFlight.decrementAndGet();
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * An admitted answer has been handed to grading (or dropped with a reply)
+     */
+    public void answerHandled(String quizId) {
+        Session session = quizId == null ? null : sessions.get(quizId);
+        if (session != null) {
+            session.inFlight.updateAndGet(n -> n > 0 ? n - 1 : 0);
+        }
+    }
+
+    /**
+     * The quiz's current clock, or null if it is unknown (e.g. for a client that just joined)
+     */
+    public Message syncMessage(String quizId) {
+        Session session = sessions.get(quizId);
+        return session == null ? null : syncMessage(session, System.currentTimeMillis());
+    }
+
+    /**
+     * Quizzes still accepting answers
+     */
+    public int getOpenCount() {
+        return open.get();
+    }
+
+    /**
+     * Late answers rejected so far
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public void shutdown() {
+        timer.shutdownNow();
+        sessions.clear();
+        open.set(0);
+    }
+
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            for (Session session : sessions.values()) {
+                if (!session.closed) {
+                    publisher.accept(session.room, syncMessage(session, now));
+                } else if (now - session.deadline > RETENTION_MS) {
+                    sessions.remove(session.quizId);
+                }
+            }
+        } catch (RuntimeException e) {
+            // A failing tick must not cancel the schedule
+            LOG.error("Quiz clock tick failed", "error", e);
+        }
+    }
+
+    private void close(Session session) {
+        session.closed = true;
+        open.decrementAndGet();
+        LOG.info("Quiz closed", "quiz", session.quizId, "room", session.room);
+        publisher.accept(session.room, syncMessage(session, System.currentTimeMillis()));
+    }
+
+    private void retire(Session session) {
+        int inFlight = session.inFlight.get();
+        if (inFlight > 0) {
+            if (System.currentTimeMillis() < session.deadline + RETIRE_DELAY_MS + MAX_DRAIN_MS) {
+                timer.schedule(() -> retire(session), DRAIN_CHECK_MS, TimeUnit.MILLISECONDS);
+                return;
+            }
+            LOG.warn("Retiring quiz with answers still queued", "quiz", session.quizId, "answers", inFlight);
+        }
+        try {
+            onRetired.accept(session.quizId);
+        } catch (RuntimeException e) {
+            LOG.error("Quiz retire callback failed", "quiz", session.quizId, "error", e);
+        }
+    }
+
+    private static Message syncMessage(Session session, long now) {
+        Message message = new Message("Server", "all", "", Message.MessageType.QUIZ_TIME_SYNC);
+        message.setRoom(session.room);
+        message.setQuizTimeSync(new QuizTimeSync(session.quizId, now, session.deadline, session.closed));
+        return message;
+    }
+
+    private static final class Session {
+        final String quizId;
+        final String room;
+        final long deadline;
+        final AtomicInteger inFlight = new AtomicInteger(); // admitted answers not yet handed to grading
+        volatile boolean closed;
+
+        Session(String quizId, String room, long deadline) {
+            this.quizId = quizId;
+            this.room = room;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package main.network;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of chat rooms (course sections) hosted by one server.
+ *
+ * Room names hash onto a fixed set of lock stripes, so joins and leaves in
+ * different rooms rarely contend. Each room publishes an immutable member array
+ * on every change; fan-out reads that array without taking any lock, so a
+ * broadcast costs O(room size) instead of O(all clients).
+ */
+public class RoomRegistry {
+    private static final int STRIPES = 32;
+    private static final PeerConnection[] NO_MEMBERS = new PeerConnection[0];
+
+    private final Object[] locks;
+    private final Map<String, Room> rooms;
+    private final Map<PeerConnection, Set<String>> roomsByConnection;
+
+    public RoomRegistry() {
+        this.locks = new Object[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        this.rooms = new ConcurrentHashMap<>();
+        this.roomsByConnection = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Add a connection to a room, creating the room on first join
+     * @return true if the connection was not already a member
+     */
+    public boolean join(String room, PeerConnection connection) {
+        boolean added;
+        synchronized (lockFor(room)) {
+            Room r = rooms.get(room);
+            if (r == null) {
+                r = new Room();
+                rooms.put(room, r);
+            }
+            added = r.members.add(connection);
+            if (added) {
+                r.publish();
+            }
+        }
+        if (added) {
+            roomsByConnection.computeIfAbsent(connection, k -> ConcurrentHashMap.newKeySet()).add(room);
+        }
+        return added;
+    }
+
+    /**
+     * Remove a connection from a room; empty rooms are dropped
+     * @return true if the connection was a member
+     */
+    public boolean leave(String room, PeerConnection connection) {
+        boolean removed;
+        synchronized (lockFor(room)) {
+            Room r = rooms.get(room);
+            removed = r != null && r.members.remove(connection);
+            if (removed) {
+                if (r.members.isEmpty()) {
+                    rooms.remove(room);
+                } else {
+                    r.publish();
+                }
+            }
+        }
+        Set<String> joined = roomsByConnection.get(connection);
+        if (joined != null) {
+            joined.remove(room);
+        }
+        return removed;
+    }
+
+    /**
+     * Remove a connection from every room it joined (used on disconnect)
+     * @return Names of the rooms it was removed from
+     */
+    public Set<String> leaveAll(PeerConnection connection) {
+        Set<String> joined = roomsByConnection.remove(connection);
+        if (joined == null) {
+            return Collections.emptySet();
+        }
+        Set<String> left = new HashSet<>(joined);
+        for (String room : left) {
+            leave(room, connection);
+        }
+        return left;
+    }
+
+    /**
+     * Get the current members of a room; the array must not be modified
+     */
+    public PeerConnection[] members(String room) {
+        Room r = rooms.get(room);
+        return r != null ? r.snapshot : NO_MEMBERS;
+    }
+
+    /**
+     * Get the rooms a connection belongs to
+     */
+    public Set<String> roomsOf(PeerConnection connection) {
+        Set<String> joined = roomsByConnection.get(connection);
+        return joined != null ? Collections.unmodifiableSet(joined) : Collections.<String>emptySet();
+    }
+
+    public boolean isMember(String room, PeerConnection connection) {
+        return roomsOf(connection).contains(room);
+    }
+
+    public Set<String> getRoomNames() {
+        return new TreeSet<>(rooms.keySet());
+    }
+
+    public void clear() {
+        rooms.clear();
+        roomsByConnection.clear();
+    }
+
+    private Object lockFor(String room) {
+        return locks[(room.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    /**
+     * Membership of one room; guarded by the room's stripe lock
+     */
+    private static class Room {
+        private final Set<PeerConnection> members = new LinkedHashSet<>();
+        private volatile PeerConnection[] snapshot = NO_MEMBERS;
+
+        private void publish() {
+            snapshot = members.toArray(new PeerConnection[0]);
+        }
+    }
+}
@@ -2,11 +2,23 @@ package main.network;
 
 import main.model.Message;
 import main.model.FileTransfer;
+import main.model.Quiz;
+import main.model.QuizAnswer;
+import main.model.QuizPage;
+import main.metrics.Metrics;
+import main.metrics.MetricsExporter;
+import main.jfr.FileTransferEvent;
+import main.jfr.FlightRecording;
+import main.jfr.MessageDispatchEvent;
+import main.log.Log;
+import main.log.Logger;
+import main.util.NetworkConstants;
 
 import java.io.*;
 import java.net.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 /**
  * Server class to handle incoming peer connections
@@ -17,11 +29,23 @@ public class Server {
     private boolean running;
     private List<PeerConnection> connections;
     private ExecutorService threadPool;
+    private final ExecutionMode executionMode;
     private MessageHandler messageHandler;
     private String currentUsername;
     private Map<PeerConnection, String> connectionUsernames; // Maps connections to usernames
     private Map<PeerConnection, Long> lastHeartbeatTime; // Track last heartbeat from each client
+    private final RoomRegistry rooms; // Room (course section) memberships for scoped fan-out
+    private ClusterManager cluster; // Set when this server runs as one node of a cluster
+    private final PresenceTracker presence; // Online users, published to clients as sequenced deltas
+    private final QuizSessionScheduler quizSessions; // Deadlines and clock syncs of running quizzes
+    private volatile Consumer<String> quizRetiredListener; // The host stops grading a quiz
+    private final QuestionBank questionBank; // Encoded question pages of running quizzes
+    private final AdmissionController admission; // Caps active clients, queues the rest
+    private final MessagePipeline pipeline; // Runs handleClientMessage off the reader threads
     private Thread connectionMonitor;
+    private MetricsExporter metricsExporter; // Optional file / HTTP export of Metrics.global()
+    private FlightRecording flightRecording; // Optional continuous JFR recording
+    private static final Logger LOG = Log.get("SERVER");
     private static final long CLIENT_TIMEOUT = 90000; // 90 seconds - longer than client heartbeat timeout
     
     // File sharing
@@ -30,13 +54,59 @@ public class Server {
     private static final String UPLOAD_DIR = "shared_files/";
 
     public Server(int port, MessageHandler messageHandler, String currentUsername) {
+        this(port, messageHandler, currentUsername, ExecutionMode.current());
+    }
+
+    /**
+     * Create a server whose accept loop and per-connection readers run in the given mode
+     */
+    public Server(int port, MessageHandler messageHandler, String currentUsername, ExecutionMode executionMode) {
         this.port = port;
+        this.executionMode = executionMode.effective();
         this.messageHandler = messageHandler;
         this.currentUsername = currentUsername;
         this.connections = new CopyOnWriteArrayList<>();
         this.connectionUsernames = new ConcurrentHashMap<>();
         this.lastHeartbeatTime = new ConcurrentHashMap<>();
-        this.threadPool = Executors.newCachedThreadPool();
+        this.rooms = new RoomRegistry();
+        this.presence = new PresenceTracker(this::broadcast);
+        // Admin is listed first so clients can message the admin
+        this.presence.joined("admin");
+        this.questionBank = new QuestionBank(
+            Integer.getInteger("studyconnect.quiz.pageSize", QuestionBank.DEFAULT_PAGE_SIZE));
+        this.quizSessions = new QuizSessionScheduler(
+            (room, message) -> {
+                if (room == null) {
+                    broadcast(message);
+                } else {
+                    broadcastToRoom(room, message);
+                }
+            },
+            quizId -> {
+                Consumer<String> listener = quizRetiredListener;
+                if (listener != null) {
+                    listener.accept(quizId);
+                }
+            });
+        this.admission = new AdmissionController(
+            Integer.getInteger("studyconnect.maxConnections", NetworkConstants.MAX_CONNECTIONS),
+            Integer.getInteger("studyconnect.maxQueued", NetworkConstants.MAX_ADMISSION_QUEUE),
+            Integer.getInteger("studyconnect.connectRate", NetworkConstants.CONNECTS_PER_IP_PER_SECOND),
+            Integer.getInteger("studyconnect.connectBurst", NetworkConstants.CONNECT_BURST_PER_IP),
+            this::activate);
+        this.threadPool = this.executionMode.newTaskExecutor("Server-" + port);
+        int queueCapacity = Integer.getInteger("studyconnect.pipeline.queue", NetworkConstants.PIPELINE_QUEUE_CAPACITY);
+        this.pipeline = new MessagePipeline("Pipeline-" + port, this.executionMode,
+                MessagePipeline.Ingress.current(), this::handleClientMessage)
+            .stage("messages", Integer.getInteger("studyconnect.pipeline.workers",
+                Math.max(2, Runtime.getRuntime().availableProcessors())), queueCapacity)
+            .stage("files", Integer.getInteger("studyconnect.pipeline.fileWorkers", NetworkConstants.PIPELINE_FILE_WORKERS),
+                queueCapacity, Message.MessageType.FILE, Message.MessageType.FILE_UPLOAD,
+                Message.MessageType.FILE_DOWNLOAD_REQUEST, Message.MessageType.FILE_DELETE_REQUEST)
+            .stage("quiz", Integer.getInteger("studyconnect.pipeline.quizWorkers", NetworkConstants.PIPELINE_QUIZ_WORKERS),
+                queueCapacity, Message.MessageType.QUIZ_ANSWER)
+            // Cheap control traffic stays on the reader: heartbeats must not queue behind chat
+            .inline(Message.MessageType.HEARTBEAT, Message.MessageType.NODE_HELLO, Message.MessageType.NODE_PRESENCE);
         this.sharedFiles = new CopyOnWriteArrayList<>();
         this.fileStorage = new ConcurrentHashMap<>();
         
@@ -44,6 +114,34 @@ public class Server {
         new java.io.File(UPLOAD_DIR).mkdirs();
     }
 
+    /**
+     * Start serving an admitted connection
+     */
+    private void activate(PeerConnection connection) {
+        connections.add(connection);
+        lastHeartbeatTime.put(connection, System.currentTimeMillis());
+        threadPool.execute(connection);
+    }
+
+    /**
+     * Register a connection whose reader is driven by the caller (in-process embedding
+     * and benchmarks); it takes part in fan-out and routing like an accepted client
+     */
+    void attach(PeerConnection connection, String username) {
+        connections.add(connection);
+        connectionUsernames.put(connection, username);
+    }
+
+    /**
+     * Run this server as a cluster node. Must be called before start().
+     * @param nodeId This node's advertised host:port (how the other nodes reach it)
+     * @param peerNodes host:port of the other nodes
+     * @throws IllegalArgumentException If studyconnect.cluster.secret isn't set
+     */
+    public void enableCluster(String nodeId, List<String> peerNodes) {
+        this.cluster = new ClusterManager(this, nodeId, peerNodes, System.getProperty("studyconnect.cluster.secret"));
+    }
+
     /**
      * Start the server
      */
@@ -57,10 +155,20 @@ public class Server {
         // Start connection monitor thread
         startConnectionMonitor();
 
+        if (cluster != null) {
+            cluster.start();
+        }
+        admission.start();
+        pipeline.start();
+        registerGauges();
+        metricsExporter = MetricsExporter.startFromSystemProperties(Metrics.global());
+        flightRecording = FlightRecording.startFromSystemProperties();
+
         threadPool.execute(() -> {
             try {
-                serverSocket = new ServerSocket(port);
-                messageHandler.onServerStatus("Server started on port " + port);
+                serverSocket = new ServerSocket(port, NetworkConstants.ACCEPT_BACKLOG);
+                messageHandler.onServerStatus("Server started on port " + port +
+                    " (" + executionMode.name().toLowerCase() + " threads)");
 
                 while (running) {
                     try {
@@ -69,7 +177,7 @@ public class Server {
                         MessageHandler serverMessageHandler = new MessageHandler() {
                             @Override
                             public void onMessageReceived(Message message, PeerConnection conn) {
-                                Server.this.handleClientMessage(message, conn);
+                                dispatch(message, conn);
                             }
                             
                             @Override
@@ -84,19 +192,30 @@ public class Server {
                             
                             @Override
                             public void onConnectionLost(PeerConnection conn) {
-                                // Remove the connection and notify clients
-                                Server.this.removePeerConnection(conn);
-                                messageHandler.onConnectionLost(conn);
+                                // Remove the connection and notify clients, after its queued messages (a pending USER_JOIN included)
+                                pipeline.execute(conn, () -> {
+                                    Server.this.removePeerConnection(conn);
+                                    messageHandler.onConnectionLost(conn);
+                                });
                             }
                         };
                         
-                        PeerConnection connection = new PeerConnection(clientSocket, serverMessageHandler, currentUsername);
-                        connections.add(connection);
-                        lastHeartbeatTime.put(connection, System.currentTimeMillis());
-                        threadPool.execute(connection);
-
-                        messageHandler.onServerStatus("New peer connected: " +
-                                clientSocket.getInetAddress().getHostAddress());
+                        PeerConnection connection = new PeerConnection(clientSocket, serverMessageHandler,
+                            currentUsername, executionMode);
+                        String remoteIp = clientSocket.getInetAddress().getHostAddress();
+                        switch (admission.offer(connection, remoteIp)) {
+                            case ADMITTED:
+                                messageHandler.onServerStatus("New peer connected: " + remoteIp);
+                                break;
+                            case QUEUED:
+                                LOG.info("Queued connection", "from", remoteIp, "waiting", admission.getQueuedCount());
+                                break;
+                            default:
+                                // Status already queued; close off the accept thread so the drain doesn't stall it
+                                LOG.warn("Refused connection", "from", remoteIp);
+                                threadPool.execute(connection::close);
+                                break;
+                        }
                     } catch (SocketException e) {
                         if (running) {
                             messageHandler.onServerStatus("Error accepting connection: " + e.getMessage());
@@ -120,6 +239,10 @@ public class Server {
             connectionMonitor.interrupt();
         }
 
+        if (cluster != null) {
+            cluster.stop();
+        }
+
         // Notify all clients that server is shutting down
         Message serverStopMsg = new Message("Server", "all", 
             "Server is shutting down", Message.MessageType.SERVER_SHUTDOWN);
@@ -139,6 +262,18 @@ public class Server {
         connections.clear();
         connectionUsernames.clear();
         lastHeartbeatTime.clear();
+        rooms.clear();
+        admission.stop();
+        pipeline.stop();
+        unregisterGauges();
+        if (metricsExporter != null) {
+            metricsExporter.stop();
+        }
+        if (flightRecording != null) {
+            flightRecording.stop();
+        }
+        presence.shutdown();
+        quizSessions.shutdown();
 
         // Close server socket
         if (serverSocket != null && !serverSocket.isClosed()) {
@@ -149,6 +284,9 @@ public class Server {
             }
         }
 
+        // Release idle pool workers (platform mode) instead of letting them linger
+        threadPool.shutdown();
+
         messageHandler.onServerStatus("Server stopped");
     }
     
@@ -171,7 +309,7 @@ public class Server {
             try {
                 fileData = java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(filePath));
             } catch (Exception e) {
-                System.err.println("[SERVER] Failed to read file from disk: " + e.getMessage());
+                LOG.error("Failed to read file from disk", "error", e.getMessage());
             }
         }
         
@@ -182,37 +320,213 @@ public class Server {
      * Broadcast message to all connected peers
      */
     public void broadcast(Message message) {
+        long started = System.nanoTime();
         // Create a copy to avoid ConcurrentModificationException
         List<PeerConnection> activeConnections = new ArrayList<>(connections);
         List<PeerConnection> deadConnections = new ArrayList<>();
         
+        // Serialize once; every connection queues the same immutable payload
+        byte[] payload = encodeOrNull(message);
+        if (payload == null) {
+            return;
+        }
+        TrafficClass lane = TrafficClass.of(message);
+        
         for (PeerConnection conn : activeConnections) {
             if (conn.isRunning()) {
-                conn.sendMessage(message);
+                conn.sendEncoded(lane, payload);
             } else {
                 // Mark dead connection for removal
                 deadConnections.add(conn);
             }
         }
+        Metrics.global().recordOut(message.getType(), payload.length,
+            activeConnections.size() - deadConnections.size());
+        Metrics.global().recordBroadcast(System.nanoTime() - started);
         
         // Clean up dead connections
         if (!deadConnections.isEmpty()) {
             for (PeerConnection conn : deadConnections) {
                 connections.remove(conn);
+                admission.release(conn);
+                rooms.leaveAll(conn);
                 String username = connectionUsernames.remove(conn);
                 if (username != null) {
-                    System.out.println("[SERVER] Removed dead connection: " + username);
-                    // Broadcast updated peer list
-                    broadcastPeerList();
+                    LOG.info("Removed dead connection", "user", username);
+                    presence.left(username);
                 }
             }
         }
     }
 
+    /**
+     * Broadcast message to the members of one room only
+     * @param room The room name
+     * @param message The message to send
+     */
+    public void broadcastToRoom(String room, Message message) {
+        long started = System.nanoTime();
+        PeerConnection[] members = rooms.members(room);
+        if (members.length == 0) {
+            return;
+        }
+        byte[] payload = encodeOrNull(message);
+        if (payload == null) {
+            return;
+        }
+        TrafficClass lane = TrafficClass.of(message);
+        int sent = 0;
+        for (PeerConnection conn : members) {
+            if (conn.isRunning()) {
+                conn.sendEncoded(lane, payload);
+                sent++;
+            }
+        }
+        Metrics.global().recordOut(message.getType(), payload.length, sent);
+        Metrics.global().recordBroadcast(System.nanoTime() - started);
+    }
+
+    private byte[] encodeOrNull(Message message) {
+        try {
+            return PeerConnection.encode(message);
+        } catch (IOException e) {
+            LOG.error("Failed to encode", "type", message.getType(), "error", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Fan the host's own chat message out to its room, or to everyone when it is not room-scoped
+     */
+    public void broadcastScoped(Message message) {
+        broadcastScoped(message, message, null);
+    }
+
+    /**
+     * Fan a chat/quiz message out to its room, or to everyone when it is not room-scoped
+     */
+    private void broadcastScoped(Message message, PeerConnection connection) {
+        broadcastScoped(message, message, connection);
+    }
+
+    /**
+     * Fan a message out to its room (or everyone), relaying a different form of it to other nodes
+     * @return false if it was dropped because the sender is not in the room
+     */
+    private boolean broadcastScoped(Message message, Message relayed, PeerConnection connection) {
+        String room = message.getRoom();
+        boolean fromNode = cluster != null && connection != null && cluster.isLink(connection);
+        if (room == null) {
+            broadcast(message);
+        } else if (connection == null || fromNode || rooms.isMember(room, connection)) {
+            broadcastToRoom(room, message);
+        } else {
+            LOG.warn("Dropped message from non-member", "type", message.getType(), "from", message.getSender(),
+                "room", room);
+            return false;
+        }
+        // Other nodes get one copy each and fan it out to their own clients
+        if (cluster != null) {
+            cluster.relay(relayed);
+        }
+        return true;
+    }
+
+    /**
+     * Entry point for messages read off client and cluster connections: queue them
+     * on the pipeline (inline for control traffic)
+     */
+    void dispatch(Message message, PeerConnection connection) {
+        if (message.getType() == Message.MessageType.QUIZ_ANSWER && !admitQuizAnswer(message, connection)) {
+            return;
+        }
+        pipeline.submit(message, connection);
+    }
+
+    /**
+     * Start the host's own quiz (which does not pass through the client message
+     * path): announce it and keep its clock
+     * @param quizStart QUIZ_START with the full quiz, scoped to a room or not
+     */
+    public void startQuiz(Message quizStart) {
+        publishQuiz(quizStart, null);
+    }
+
+    /**
+     * Called with a quiz's id once its deadline and grace period are over and no
+     * more answers to it will be admitted
+     */
+    public void setQuizRetiredListener(Consumer<String> listener) {
+        this.quizRetiredListener = listener;
+    }
+
+    /**
+     * Fan a QUIZ_START out as a manifest, with the questions loaded into the
+     * question bank for students to fetch in pages, then start the quiz's clock.
+     * Other cluster nodes get the full quiz so they can serve the pages too.
+     */
+    private void publishQuiz(Message quizStart, PeerConnection connection) {
+        Quiz quiz = quizStart.getQuizData();
+        Message announced = quizStart;
+        if (quiz != null && !quiz.isManifest()) {
+            try {
+                announced = new Message(quizStart.getSender(), quizStart.getRecipient(), quizStart.getContent(),
+                    Message.MessageType.QUIZ_START);
+                announced.setRoom(quizStart.getRoom());
+                announced.setQuizData(questionBank.register(quiz));
+            } catch (IOException e) {
+                LOG.error("Failed to page quiz, sending it whole", "quiz", quiz.getQuizId(), "error", e.getMessage());
+                announced = quizStart;
+            }
+        }
+        // Start the clock once clients have the quiz to apply its syncs to
+        if (broadcastScoped(announced, quizStart, connection) && quiz != null) {
+            quizSessions.start(quiz, quizStart.getRoom());
+        }
+    }
+
+    /**
+     * Check a quiz answer against the quiz deadline on arrival, before it waits on
+     * the quiz stage; late answers are answered with the quiz clock and dropped
+     */
+    private boolean admitQuizAnswer(Message message, PeerConnection connection) {
+        QuizAnswer answer = message.getQuizAnswer();
+        if (answer == null || quizSessions.admit(answer.getQuizId(), System.currentTimeMillis())) {
+            return true;
+        }
+        LOG.info("Rejected late quiz answer", "user", message.getSender(), "quiz", answer.getQuizId());
+        Message reply = quizSessions.syncMessage(answer.getQuizId());
+        if (reply != null && connection != null) {
+            reply.setRoom(null);
+            reply.setRecipient(message.getSender());
+            reply.setContent("Your answers arrived after the quiz closed and were not accepted.");
+            connection.sendMessage(reply);
+        }
+        return false;
+    }
+
     /**
      * Handle messages received from clients
      */
-    private void handleClientMessage(Message message, PeerConnection connection) {
+    void handleClientMessage(Message message, PeerConnection connection) {
+        MessageDispatchEvent event = new MessageDispatchEvent();
+        event.begin();
+        try {
+            routeClientMessage(message, connection);
+        } finally {
+            if (message.getType() == Message.MessageType.QUIZ_ANSWER && message.getQuizAnswer() != null) {
+                quizSessions.answerHandled(message.getQuizAnswer().getQuizId());
+            }
+            if (event.shouldCommit()) {
+                event.type = message.getType().name();
+                event.sender = message.getSender();
+                event.room = message.getRoom();
+                event.commit();
+            }
+        }
+    }
+
+    private void routeClientMessage(Message message, PeerConnection connection) {
         switch (message.getType()) {
             case USER_JOIN: {
                 // Store username for this connection
@@ -222,9 +536,14 @@ public class Server {
                 // Notify server UI (dashboard) about the join so it can update its view
                 messageHandler.onMessageReceived(message, connection);
 
-                // Broadcast the join message and updated peer list
+                // The joiner gets the current online list; everyone else hears about
+                // the joiner in the next presence delta
+                connection.sendMessage(presence.snapshotMessage());
                 broadcast(message);
-                broadcastPeerList();
+                presence.joined(username);
+                if (cluster != null) {
+                    cluster.publishJoin(username);
+                }
                 break;
             }
 
@@ -236,7 +555,7 @@ public class Server {
                 // Check if message is for the server (admin)
                 if (targetUser.equalsIgnoreCase("Server") || targetUser.equalsIgnoreCase(currentUsername)) {
                     // Message is for the server/admin, pass to main handler (already done above)
-                    System.out.println("[SERVER] Received P2P message from " + message.getSender() + " to Server");
+                    LOG.debug("Received P2P message for the server", "from", message.getSender());
                 } else {
                     // Forward to another client
                     PeerConnection targetConnection = null;
@@ -251,23 +570,66 @@ public class Server {
                     
                     if (targetConnection != null) {
                         targetConnection.sendMessage(message);
-                        String messageType = message.getType() == Message.MessageType.FILE ? "file" : "P2P message";
-                        System.out.println("[SERVER] Forwarded " + messageType + " from " + 
-                            message.getSender() + " to " + targetUser);
+                        LOG.debug("Forwarded", "type", message.getType(), "from", message.getSender(), "to", targetUser);
+                    } else if (cluster != null && message.getOriginNode() == null && cluster.route(message)) {
+                        LOG.debug("Routed to another node", "type", message.getType(), "to", targetUser);
                     } else {
-                        System.err.println("[SERVER] Target user not found: " + targetUser);
+                        LOG.warn("Target user not found", "to", targetUser, "from", message.getSender());
                     }
                 }
                 break;
             }
 
+            case QUIZ_START:
+                messageHandler.onMessageReceived(message, connection);
+                publishQuiz(message, connection);
+                break;
+
+            case QUIZ_PAGE: {
+                // A student fetching questions: the same pre-encoded page for everyone
+                QuizPage request = message.getQuizPage();
+                if (request != null && request.isRequest()) {
+                    byte[] page = questionBank.page(request.getQuizId(), request.getPageIndex());
+                    if (page != null) {
+                        connection.sendEncoded(TrafficClass.INTERACTIVE, page);
+                        Metrics.global().recordOut(Message.MessageType.QUIZ_PAGE, page.length, 1);
+                    } else {
+                        LOG.debug("Unknown quiz page", "quiz", request.getQuizId(), "page", request.getPageIndex());
+                    }
+                }
+                break;
+            }
+
+            case QUIZ_TIME_SYNC:
+                // Server -> client only
+                break;
+
             case TEXT:
             case BROADCAST:
-            case QUIZ_START:
             case QUIZ_ANSWER: {
-                // Let the server UI (dashboard) see the message, then broadcast
+                // Let the server UI (dashboard) see the message, then fan out to the room (or everyone)
                 messageHandler.onMessageReceived(message, connection);
-                broadcast(message);
+                broadcastScoped(message, connection);
+                break;
+            }
+
+            case ROOM_JOIN: {
+                String room = message.getRoom();
+                if (room != null && !room.trim().isEmpty() && rooms.join(room, connection)) {
+                    // Announce to the room, including the joiner as acknowledgement
+                    broadcastToRoom(room, message);
+                    LOG.info("Joined room", "user", message.getSender(), "room", room, "members", rooms.members(room).length);
+                }
+                break;
+            }
+
+            case ROOM_LEAVE: {
+                String room = message.getRoom();
+                if (room != null && rooms.isMember(room, connection)) {
+                    broadcastToRoom(room, message);
+                    rooms.leave(room, connection);
+                    LOG.info("Left room", "user", message.getSender(), "room", room);
+                }
                 break;
             }
                 
@@ -283,6 +645,7 @@ public class Server {
                 if (messageHandler != null) {
                     messageHandler.onMessageReceived(message, connection);
                 }
+                presence.statusChanged(message.getSender(), "in class");
                 break;
                 
             case CLASS_LEAVE:
@@ -290,12 +653,47 @@ public class Server {
                 if (messageHandler != null) {
                     messageHandler.onMessageReceived(message, connection);
                 }
+                presence.statusChanged(message.getSender(), "online");
+                break;
+
+            case PRESENCE_SNAPSHOT:
+                // Client missed a presence delta and asks to resynchronize
+                connection.sendMessage(presence.snapshotMessage());
+                break;
+
+            case LEADERBOARD_UPDATE:
+                // Only the quiz host publishes the leaderboard; from a client this is a
+                // snapshot request for the host
+                if (message.getLeaderboardUpdate() == null && messageHandler != null) {
+                    messageHandler.onMessageReceived(message, connection);
+                }
                 break;
                 
-            case USER_LEAVE:
-                connectionUsernames.remove(connection);
+            case USER_LEAVE: {
+                String leaving = connectionUsernames.remove(connection);
                 broadcast(message);
-                broadcastPeerList(); // Update peer list after someone leaves
+                if (leaving != null) {
+                    presence.left(leaving);
+                }
+                if (cluster != null && leaving != null) {
+                    cluster.publishLeave(leaving);
+                }
+                break;
+            }
+
+            case NODE_HELLO:
+                if (cluster != null && cluster.onHello(message, connection)) {
+                    // Node links are not clients: no fan-out, no heartbeat timeout, no client slot
+                    connections.remove(connection);
+                    lastHeartbeatTime.remove(connection);
+                    admission.release(connection);
+                }
+                break;
+
+            case NODE_PRESENCE:
+                if (cluster != null) {
+                    cluster.onPresence(message, connection);
+                }
                 break;
                 
             case FILE_LIST_REQUEST:
@@ -325,45 +723,33 @@ public class Server {
         }
     }
     
-    /**
-     * Broadcast the list of connected peers to all clients
-     */
-    private void broadcastPeerList() {
-        // Create a list of usernames including admin
-        StringBuilder peerList = new StringBuilder();
-        
-        // Add admin first so clients can message the admin
-        peerList.append("admin").append(",");
-        
-        // Add all connected clients
-        for (String username : connectionUsernames.values()) {
-            peerList.append(username).append(",");
-        }
-        
-        // Send peer list to all clients
-        Message peerListMsg = new Message("Server", "all", 
-            peerList.toString(), Message.MessageType.PEER_LIST);
-        broadcast(peerListMsg);
-    }
-
     /**
      * Remove a peer connection and clean up
      */
     public void removePeerConnection(PeerConnection connection) {
+        admission.release(connection);
+        if (cluster != null && cluster.onConnectionClosed(connection)) {
+            return;
+        }
         connections.remove(connection);
         String username = connectionUsernames.remove(connection);
         lastHeartbeatTime.remove(connection);
+        rooms.leaveAll(connection);
         
         if (username != null) {
-            System.out.println("[SERVER] Removed connection: " + username);
+            LOG.info("Removed connection", "user", username);
             
-            // Broadcast updated peer list to remaining clients
-            broadcastPeerList();
+            // Remaining clients hear about it in the next presence delta
+            presence.left(username);
             
             // Notify all clients that user left
             Message leaveMsg = new Message(username, "all", 
                 username + " has left the chat", Message.MessageType.USER_LEAVE);
             broadcast(leaveMsg);
+            
+            if (cluster != null) {
+                cluster.publishLeave(username);
+            }
         }
     }
 
@@ -375,6 +761,83 @@ public class Server {
         return port;
     }
 
+    /**
+     * Get the names of rooms that currently have members
+     */
+    public Set<String> getRooms() {
+        return rooms.getRoomNames();
+    }
+
+    /**
+     * Usernames connected directly to this server (not via other cluster nodes)
+     */
+    public List<String> getLocalUsernames() {
+        return new ArrayList<>(connectionUsernames.values());
+    }
+
+    /**
+     * Get the cluster manager, or null when not running as a cluster node
+     */
+    public ClusterManager getCluster() {
+        return cluster;
+    }
+
+    /**
+     * Called by the cluster manager when remote presence changed
+     */
+    void onClusterPresenceChanged() {
+        presence.syncRemoteUsers(cluster.getRemoteUsers());
+    }
+
+    /**
+     * Users currently online through this server, including admin and remote cluster users
+     */
+    public List<String> getOnlineUsers() {
+        return presence.getOnlineUsers();
+    }
+
+    private static final String[] GAUGES = {
+        "connections_active", "connections_queued", "outbound_queued_frames", "presence_online", "rooms_active",
+        "log_events_dropped", "pipeline_queued", "pipeline_queue_full", "quiz_open", "quiz_late_rejected"
+    };
+
+    private void registerGauges() {
+        Metrics metrics = Metrics.global();
+        metrics.registerGauge(GAUGES[0], () -> connections.size());
+        metrics.registerGauge(GAUGES[1], admission::getQueuedCount);
+        metrics.registerGauge(GAUGES[2], () -> {
+            long queued = 0;
+            for (PeerConnection conn : connections) {
+                queued += conn.getQueuedFrames();
+            }
+            return queued;
+        });
+        metrics.registerGauge(GAUGES[3], () -> presence.getOnlineUsers().size());
+        metrics.registerGauge(GAUGES[4], () -> rooms.getRoomNames().size());
+        metrics.registerGauge(GAUGES[5], Log::getDropped);
+        metrics.registerGauge(GAUGES[6], pipeline::getQueuedCount);
+        metrics.registerGauge(GAUGES[7], pipeline::getQueueFullCount);
+        metrics.registerGauge(GAUGES[8], quizSessions::getOpenCount);
+        metrics.registerGauge(GAUGES[9], quizSessions::getRejectedCount);
+    }
+
+    private void unregisterGauges() {
+        for (String gauge : GAUGES) {
+            Metrics.global().unregisterGauge(gauge);
+        }
+    }
+
+    /**
+     * Admission state: active and queued client counts
+     */
+    public AdmissionController getAdmission() {
+        return admission;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
     public List<PeerConnection> getConnections() {
         return new ArrayList<>(connections);
     }
@@ -387,7 +850,7 @@ public class Server {
      * Start monitoring client connections for timeouts
      */
     private void startConnectionMonitor() {
-        connectionMonitor = new Thread(() -> {
+        connectionMonitor = executionMode.newThread(() -> {
             while (running && !Thread.currentThread().isInterrupted()) {
                 try {
                     Thread.sleep(30000); // Check every 30 seconds
@@ -407,7 +870,7 @@ public class Server {
                             if (timeSinceLastHeartbeat > CLIENT_TIMEOUT) {
                                 // Connection has timed out
                                 String username = connectionUsernames.get(conn);
-                                System.err.println("[SERVER] Client timeout: " + username + " (no heartbeat for " + timeSinceLastHeartbeat + "ms)");
+                                LOG.warn("Client timeout", "user", username, "silentMs", timeSinceLastHeartbeat);
                                 deadConnections.add(conn);
                             }
                         }
@@ -424,9 +887,7 @@ public class Server {
                     break;
                 }
             }
-        });
-        connectionMonitor.setDaemon(true);
-        connectionMonitor.setName("ConnectionMonitor");
+        }, "ConnectionMonitor");
         connectionMonitor.start();
     }
     
@@ -438,8 +899,7 @@ public class Server {
             "FILE_LIST", Message.MessageType.FILE_LIST_RESPONSE);
         response.setFileList(new ArrayList<>(sharedFiles));
         connection.sendMessage(response);
-        System.out.println("[SERVER] Sent file list to " + connectionUsernames.get(connection) + 
-            " (" + sharedFiles.size() + " files)");
+        LOG.debug("Sent file list", "to", connectionUsernames.get(connection), "files", sharedFiles.size());
     }
     
     /**
@@ -450,6 +910,8 @@ public class Server {
         FileTransfer fileTransfer = message.getFileTransfer();
         
         if (metadata != null && fileTransfer != null) {
+            FileTransferEvent event = new FileTransferEvent();
+            event.begin();
             // Store file data
             fileStorage.put(metadata.getFileId(), fileTransfer.getFileData());
             
@@ -462,14 +924,21 @@ public class Server {
                 );
                 metadata.setFilePath(fileName);
             } catch (Exception e) {
-                System.err.println("[SERVER] Failed to save file to disk: " + e.getMessage());
+                LOG.error("Failed to save file to disk", "error", e.getMessage());
             }
             
             // Add to shared files list
             sharedFiles.add(metadata);
             
-            System.out.println("[SERVER] File uploaded: " + metadata.getFileName() + 
-                " by " + metadata.getUploader() + " (" + metadata.getFormattedSize() + ")");
+            LOG.info("File uploaded", "file", metadata.getFileName(), "by", metadata.getUploader(),
+                "size", metadata.getFormattedSize());
+            if (event.shouldCommit()) {
+                event.direction = "upload";
+                event.file = metadata.getFileName();
+                event.user = metadata.getUploader();
+                event.size = fileTransfer.getFileData().length;
+                event.commit();
+            }
             
             // Notify all clients about new file
             broadcastFileListUpdate();
@@ -490,6 +959,8 @@ public class Server {
         main.model.FileMetadata metadata = message.getFileMetadata();
         
         if (metadata != null) {
+            FileTransferEvent event = new FileTransferEvent();
+            event.begin();
             byte[] fileData = fileStorage.get(metadata.getFileId());
             
             if (fileData == null) {
@@ -501,7 +972,7 @@ public class Server {
                         );
                     }
                 } catch (Exception e) {
-                    System.err.println("[SERVER] Failed to read file from disk: " + e.getMessage());
+                    LOG.error("Failed to read file from disk", "error", e.getMessage());
                 }
             }
             
@@ -520,10 +991,16 @@ public class Server {
                 fileMessage.setFileTransfer(fileTransfer);
                 
                 connection.sendMessage(fileMessage);
-                System.out.println("[SERVER] File downloaded: " + metadata.getFileName() + 
-                    " by " + connectionUsernames.get(connection));
+                LOG.info("File downloaded", "file", metadata.getFileName(), "by", connectionUsernames.get(connection));
+                if (event.shouldCommit()) {
+                    event.direction = "download";
+                    event.file = metadata.getFileName();
+                    event.user = connectionUsernames.get(connection);
+                    event.size = fileData.length;
+                    event.commit();
+                }
             } else {
-                System.err.println("[SERVER] File not found: " + metadata.getFileId());
+                LOG.warn("File not found", "id", metadata.getFileId());
             }
         }
     }
@@ -555,17 +1032,15 @@ public class Server {
                         );
                     }
                 } catch (Exception e) {
-                    System.err.println("[SERVER] Failed to delete file from disk: " + e.getMessage());
+                    LOG.error("Failed to delete file from disk", "error", e.getMessage());
                 }
                 
-                System.out.println("[SERVER] File deleted: " + metadata.getFileName() + 
-                    " by " + requestUser);
+                LOG.info("File deleted", "file", metadata.getFileName(), "by", requestUser);
                 
                 // Notify all clients about file list update
                 broadcastFileListUpdate();
             } else {
-                System.err.println("[SERVER] Permission denied: " + requestUser + 
-                    " tried to delete " + metadata.getFileName());
+                LOG.warn("Delete denied", "user", requestUser, "file", metadata.getFileName());
             }
         }
     }
@@ -596,11 +1071,10 @@ public class Server {
                         );
                     }
                 } catch (Exception e) {
-                    System.err.println("[SERVER] Failed to delete file from disk: " + e.getMessage());
+                    LOG.error("Failed to delete file from disk", "error", e.getMessage());
                 }
                 
-                System.out.println("[SERVER] File deleted: " + metadata.getFileName() + 
-                    " by " + requestUser);
+                LOG.info("File deleted", "file", metadata.getFileName(), "by", requestUser);
                 
                 // Notify all clients about file list update
                 broadcastFileListUpdate();
@@ -0,0 +1,70 @@
+package main.network;
+
+import main.model.FileTransfer;
+import main.model.Message;
+
+/**
+ * Priority lanes multiplexed on every PeerConnection.
+ *
+ * CONTROL frames (heartbeats, presence, shutdown) are small and latency critical,
+ * INTERACTIVE frames carry chat and quiz traffic, BULK frames carry file payloads
+ * and are split into chunks so the other lanes can be interleaved between them.
+ * The weight is how many frames a lane may send per scheduling round.
+ *
+ * Order is only kept within a lane, so a message that must stay ordered against
+ * chat or quiz traffic rides INTERACTIVE even if it is small: a ROOM_LEAVE must
+ * not overtake the member's last room message, and a QUIZ_TIME_SYNC must not
+ * reach a client before the QUIZ_START it refers to.
+ */
+public enum TrafficClass {
+    CONTROL(8),
+    INTERACTIVE(4),
+    BULK(1);
+
+    private final int weight;
+
+    TrafficClass(int weight) {
+        this.weight = weight;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Classify an outgoing object (Message or FileTransfer)
+     */
+    public static TrafficClass of(Object payload) {
+        if (payload instanceof FileTransfer) {
+            return BULK;
+        }
+        if (!(payload instanceof Message)) {
+            return INTERACTIVE;
+        }
+        Message message = (Message) payload;
+        if (message.getFileTransfer() != null) {
+            return BULK;
+        }
+        switch (message.getType()) {
+            case HEARTBEAT:
+            case PEER_LIST:
+            case PRESENCE_SNAPSHOT:
+            case PRESENCE_DELTA:
+            case ADMISSION_STATUS:
+            case SERVER_SHUTDOWN:
+            case USER_JOIN:
+            case USER_LEAVE:
+            case CLASS_JOIN:
+            case CLASS_LEAVE:
+            case CLASS_INFO:
+            case NODE_HELLO:
+            case NODE_PRESENCE:
+                return CONTROL;
+            case FILE:
+            case FILE_UPLOAD:
+                return BULK;
+            default:
+                return INTERACTIVE;
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package main.network;
 
+import main.jfr.ScreenFrameEvent;
+import main.log.Log;
+import main.log.Logger;
+import main.metrics.Metrics;
 import main.model.ScreenFrame;
 
 import java.io.*;
@@ -24,6 +28,7 @@ public class UDPBroadcaster {
     private List<InetSocketAddress> clients = new ArrayList<>();
     
     // Broadcast settings
+    private static final Logger LOG = Log.get("UDP Broadcaster");
     private static final int FRAME_RATE = 2; // 2 frames per second
     private static final int DELAY_MS = 1000 / FRAME_RATE;
     private static final int SCALE_WIDTH = 640; // Scale to reasonable size
@@ -43,7 +48,7 @@ public class UDPBroadcaster {
             InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName(host), port);
             if (!clients.contains(addr)) {
                 clients.add(addr);
-                System.out.println("[UDP Broadcaster] Added client: " + host + ":" + port);
+                LOG.info("Added client", "host", host, "port", port);
             }
         } catch (UnknownHostException e) {
             e.printStackTrace();
@@ -57,7 +62,7 @@ public class UDPBroadcaster {
         try {
             InetSocketAddress addr = new InetSocketAddress(InetAddress.getByName(host), port);
             clients.remove(addr);
-            System.out.println("[UDP Broadcaster] Removed client: " + host + ":" + port);
+            LOG.info("Removed client", "host", host, "port", port);
         } catch (UnknownHostException e) {
             e.printStackTrace();
         }
@@ -76,7 +81,7 @@ public class UDPBroadcaster {
             captureThread.setName("ScreenCapture-" + port);
             captureThread.start();
             
-            System.out.println("[UDP Broadcaster] Started on port " + port);
+            LOG.info("Started", "port", port);
             return true;
         } catch (SocketException e) {
             e.printStackTrace();
@@ -98,7 +103,7 @@ public class UDPBroadcaster {
             socket.close();
         }
         
-        System.out.println("[UDP Broadcaster] Stopped");
+        LOG.info("Stopped", "port", port);
     }
     
     /**
@@ -117,20 +122,20 @@ public class UDPBroadcaster {
         
         while (broadcasting && !Thread.currentThread().isInterrupted()) {
             try {
+                ScreenFrameEvent event = new ScreenFrameEvent();
+                event.begin();
+
                 // Capture screen
+                long started = System.nanoTime();
                 BufferedImage screenshot = robot.createScreenCapture(screenRect);
+                long captured = System.nanoTime();
                 
-                // Scale down to reduce size
-                BufferedImage scaledImage = scaleImage(screenshot, SCALE_WIDTH, SCALE_HEIGHT);
-                
-                // Convert to byte array (JPEG for compression)
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                ImageIO.write(scaledImage, "jpg", baos);
-                byte[] imageData = baos.toByteArray();
+                // Scale down and compress
+                byte[] imageData = encodeImage(screenshot, SCALE_WIDTH, SCALE_HEIGHT);
                 
                 // Check size
                 if (imageData.length > MAX_PACKET_SIZE) {
-                    System.err.println("[UDP Broadcaster] Frame too large: " + imageData.length + " bytes");
+                    LOG.warn("Frame too large", "bytes", imageData.length);
                     Thread.sleep(DELAY_MS);
                     continue;
                 }
@@ -139,16 +144,31 @@ public class UDPBroadcaster {
                 ScreenFrame frame = new ScreenFrame(imageData, SCALE_WIDTH, SCALE_HEIGHT, username);
                 frame.setFrameNumber(frameNumber++);
                 
-                // Broadcast to all registered clients
+                // Serialize once, then send the same packet to all registered clients
+                byte[] packetData = encodeFrame(frame);
+                long encoded = System.nanoTime();
+                int viewers;
                 synchronized (this) {
                     for (InetSocketAddress client : clients) {
-                        broadcastToClient(client.getAddress().getHostAddress(), client.getPort(), frame);
+                        broadcastToClient(client, packetData);
                     }
+                    viewers = clients.size();
+                    Metrics.global().recordScreenFrameSent(viewers);
+                }
+
+                if (event.shouldCommit()) {
+                    event.frame = frame.getFrameNumber();
+                    event.viewers = viewers;
+                    event.size = packetData.length;
+                    event.capture = (captured - started) / 1000;
+                    event.encode = (encoded - captured) / 1000;
+                    event.send = (System.nanoTime() - encoded) / 1000;
+                    event.commit();
                 }
                 
-                if (clients.size() > 0) {
-                    System.out.println("[UDP Broadcaster] Frame " + frame.getFrameNumber() + 
-                        " broadcasted to " + clients.size() + " client(s) (" + imageData.length + " bytes)");
+                if (LOG.isDebugEnabled() && !clients.isEmpty()) {
+                    LOG.debug("Frame broadcast", "frame", frame.getFrameNumber(), "clients", clients.size(),
+                        "bytes", imageData.length);
                 }
                 
                 Thread.sleep(DELAY_MS);
@@ -163,35 +183,45 @@ public class UDPBroadcaster {
     }
     
     /**
-     * Broadcast frame to specific client
+     * Send an encoded frame to a specific client
      */
-    private void broadcastToClient(String clientIP, int clientPort, ScreenFrame frame) {
+    private void broadcastToClient(InetSocketAddress client, byte[] packetData) {
         if (!broadcasting || socket == null) {
             return;
         }
         
         try {
-            // Serialize frame
-            ByteArrayOutputStream objStream = new ByteArrayOutputStream();
-            ObjectOutputStream oos = new ObjectOutputStream(objStream);
-            oos.writeObject(frame);
-            oos.flush();
-            byte[] packetData = objStream.toByteArray();
-            
-            // Send packet
-            InetAddress address = InetAddress.getByName(clientIP);
-            DatagramPacket packet = new DatagramPacket(packetData, packetData.length, address, clientPort);
-            socket.send(packet);
-            
+            socket.send(new DatagramPacket(packetData, packetData.length, client));
         } catch (Exception e) {
-            System.err.println("[UDP Broadcaster] Error sending to " + clientIP + ":" + clientPort + " - " + e.getMessage());
+            LOG.warn("Send failed", "to", client, "error", e.getMessage());
         }
     }
     
+    /**
+     * Scale a captured screen and compress it as JPEG
+     */
+    public static byte[] encodeImage(BufferedImage screenshot, int width, int height) throws IOException {
+        BufferedImage scaledImage = scaleImage(screenshot, width, height);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(scaledImage, "jpg", baos);
+        return baos.toByteArray();
+    }
+    
+    /**
+     * Serialize a frame into one datagram payload (what UDPReceiver deserializes)
+     */
+    public static byte[] encodeFrame(ScreenFrame frame) throws IOException {
+        ByteArrayOutputStream objStream = new ByteArrayOutputStream(frame.getDataSize() + 512);
+        ObjectOutputStream oos = new ObjectOutputStream(objStream);
+        oos.writeObject(frame);
+        oos.flush();
+        return objStream.toByteArray();
+    }
+    
     /**
      * Scale image to target size
      */
-    private BufferedImage scaleImage(BufferedImage original, int targetWidth, int targetHeight) {
+    private static BufferedImage scaleImage(BufferedImage original, int targetWidth, int targetHeight) {
         BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
         Graphics2D g2d = scaled.createGraphics();
         g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
@@ -1,5 +1,8 @@
 package main.network;
 
+import main.log.Log;
+import main.log.Logger;
+import main.metrics.Metrics;
 import main.model.ScreenFrame;
 
 import java.io.*;
@@ -18,6 +21,7 @@ public class UDPReceiver {
     private int port;
     private ScreenFrameListener listener;
     
+    private static final Logger LOG = Log.get("UDP Receiver");
     private static final int BUFFER_SIZE = 70000; // Larger than max packet
     
     public interface ScreenFrameListener {
@@ -38,12 +42,9 @@ public class UDPReceiver {
             socket = new DatagramSocket(port);
             receiving = true;
             
-            receiveThread = new Thread(this::receiveFrames);
-            receiveThread.setDaemon(true);
-            receiveThread.setName("ScreenReceiver-" + port);
-            receiveThread.start();
+            receiveThread = ExecutionMode.current().start(this::receiveFrames, "ScreenReceiver-" + port);
             
-            System.out.println("[UDP Receiver] Started on port " + port);
+            LOG.info("Started", "port", port);
             return true;
         } catch (SocketException e) {
             e.printStackTrace();
@@ -68,7 +69,7 @@ public class UDPReceiver {
             socket.close();
         }
         
-        System.out.println("[UDP Receiver] Stopped");
+        LOG.info("Stopped", "port", port);
     }
     
     /**
@@ -76,6 +77,8 @@ public class UDPReceiver {
      */
     private void receiveFrames() {
         byte[] buffer = new byte[BUFFER_SIZE];
+        int lastFrameNumber = -1;
+        long lastArrival = 0;
         
         while (receiving && !Thread.currentThread().isInterrupted()) {
             try {
@@ -87,6 +90,14 @@ public class UDPReceiver {
                 ObjectInputStream ois = new ObjectInputStream(bais);
                 ScreenFrame frame = (ScreenFrame) ois.readObject();
                 
+                // Frame numbers are consecutive per broadcast; a jump means lost datagrams
+                long now = System.nanoTime();
+                int lost = lastFrameNumber >= 0 && frame.getFrameNumber() > lastFrameNumber
+                    ? frame.getFrameNumber() - lastFrameNumber - 1 : 0;
+                Metrics.global().recordScreenFrameReceived(lost, lastArrival == 0 ? 0 : now - lastArrival);
+                lastFrameNumber = frame.getFrameNumber();
+                lastArrival = now;
+                
                 // Convert byte array to image
                 ByteArrayInputStream imageStream = new ByteArrayInputStream(frame.getImageData());
                 BufferedImage image = ImageIO.read(imageStream);
@@ -97,12 +108,12 @@ public class UDPReceiver {
                 
             } catch (SocketException e) {
                 if (receiving) {
-                    System.err.println("[UDP Receiver] Socket error: " + e.getMessage());
+                    LOG.warn("Socket error", "error", e.getMessage());
                 }
                 break;
             } catch (IOException | ClassNotFoundException e) {
                 if (receiving) {
-                    System.err.println("[UDP Receiver] Error receiving frame: " + e.getMessage());
+                    LOG.warn("Error receiving frame", "error", e.getMessage());
                 }
             }
         }
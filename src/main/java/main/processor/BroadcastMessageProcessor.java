@@ -3,6 +3,8 @@ package main.processor;
 import main.model.Message;
 import main.network.PeerConnection;
 
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
 import java.util.function.Consumer;
 
 /**
@@ -10,16 +12,31 @@ import java.util.function.Consumer;
  * Follows Open/Closed Principle
  */
 public class BroadcastMessageProcessor implements MessageProcessor {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("hh:mm a");
+    private static final String SEPARATOR = "--------------------------------------------------";
+
     private final Consumer<String> broadcastLogger;
+    private final String currentUsername;
     
-    public BroadcastMessageProcessor(Consumer<String> broadcastLogger) {
+    /**
+     * Constructor
+     * @param broadcastLogger Callback to show an announcement line
+     * @param currentUsername Current user's username; their own broadcasts are not shown again
+     */
+    public BroadcastMessageProcessor(Consumer<String> broadcastLogger, String currentUsername) {
         this.broadcastLogger = broadcastLogger;
+        this.currentUsername = currentUsername;
     }
     
     @Override
     public void process(Message message, PeerConnection connection) {
-        String displayMessage = "[BROADCAST] " + message.getSender() + ": " + message.getContent();
-        broadcastLogger.accept(displayMessage);
+        if (message.getSender().equals(currentUsername)) {
+            return;
+        }
+        String timestamp = LocalTime.now().format(TIME_FORMAT);
+        broadcastLogger.accept("[" + timestamp + "] Announcement from " + message.getSender() + ": "
+            + message.getContent());
+        broadcastLogger.accept(SEPARATOR);
     }
     
     @Override
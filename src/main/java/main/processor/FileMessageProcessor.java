@@ -6,22 +6,30 @@ import main.network.PeerConnection;
 
 import javax.swing.*;
 import java.util.function.BiConsumer;
+import java.util.function.Predicate;
 
 /**
  * Processor for FILE message type
  * Handles file transfer reception and confirmation
+ *
+ * Files the user asked to download are saved by the requestedDownload callback;
+ * anything else (a peer sending a file unprompted) asks before saving.
  */
 public class FileMessageProcessor implements MessageProcessor {
     private final BiConsumer<FileTransfer, String> fileReceiver;
+    private final Predicate<FileTransfer> requestedDownload;
     private final JFrame parentFrame;
     
     /**
      * Constructor
      * @param fileReceiver Callback to handle received file (fileTransfer, senderName)
+     * @param requestedDownload Saves the file and returns true if it answers a download request
      * @param parentFrame Parent frame for dialogs
      */
-    public FileMessageProcessor(BiConsumer<FileTransfer, String> fileReceiver, JFrame parentFrame) {
+    public FileMessageProcessor(BiConsumer<FileTransfer, String> fileReceiver,
+                                Predicate<FileTransfer> requestedDownload, JFrame parentFrame) {
         this.fileReceiver = fileReceiver;
+        this.requestedDownload = requestedDownload;
         this.parentFrame = parentFrame;
     }
     
@@ -30,6 +38,9 @@ public class FileMessageProcessor implements MessageProcessor {
         if (message.getFileTransfer() != null) {
             FileTransfer fileTransfer = message.getFileTransfer();
             String sender = message.getSender();
+            if (requestedDownload.test(fileTransfer)) {
+                return;
+            }
             
             // Show confirmation dialog
             SwingUtilities.invokeLater(() -> {
@@ -0,0 +1,25 @@
+package main.processor;
+
+import main.model.Message;
+import main.network.PeerConnection;
+
+/**
+ * Cross-cutting hook around every message the registry dispatches
+ * (metrics, sender checks). Interceptors run in registration order.
+ */
+public interface MessageInterceptor {
+    /**
+     * Called before the processors run
+     * @return false to drop the message; its processors and later interceptors are skipped
+     */
+    default boolean beforeProcess(Message message, PeerConnection connection) {
+        return true;
+    }
+
+    /**
+     * Called after every processor for the message ran (not for dropped messages)
+     * @param elapsedNanos Time spent in the processors
+     */
+    default void afterProcess(Message message, PeerConnection connection, long elapsedNanos) {
+    }
+}
@@ -3,57 +3,214 @@ package main.processor;
 import main.model.Message;
 import main.network.PeerConnection;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiConsumer;
 
 /**
  * Registry for message processors
  * Uses Strategy Pattern to delegate message processing
  * Follows Open/Closed Principle
+ *
+ * Each message type maps (EnumMap) to an ordered chain of processors, run one after
+ * another; interceptors wrap every dispatch. Registration copies the tables and
+ * publishes them through a volatile field, so process() takes no lock, iterates
+ * plain arrays and allocates nothing. Messages with no registered processor are
+ * counted per type rather than logged.
  */
 public class MessageProcessorRegistry {
-    private final Map<Message.MessageType, MessageProcessor> processors;
-    
+    private static final MessageProcessor[] NONE = new MessageProcessor[0];
+    private static final Message.MessageType[] TYPES = Message.MessageType.values();
+
+    private final EnumMap<Message.MessageType, List<Registration>> registrations;
+    private final List<MessageInterceptor> interceptorList;
+    private final AtomicLongArray unhandled;
+    private volatile EnumMap<Message.MessageType, MessageProcessor[]> chains;
+    private volatile MessageInterceptor[] interceptors;
+    private int nextSequence;
+
     public MessageProcessorRegistry() {
-        this.processors = new HashMap<>();
+        this.registrations = new EnumMap<>(Message.MessageType.class);
+        this.interceptorList = new ArrayList<>();
+        this.unhandled = new AtomicLongArray(TYPES.length);
+        this.chains = new EnumMap<>(Message.MessageType.class);
+        this.interceptors = new MessageInterceptor[0];
     }
-    
+
     /**
-     * Register a processor for a specific message type
+     * Register a processor for a specific message type; it runs after the
+     * processors already registered for that type
      * @param processor The processor to register
      */
     public void register(MessageProcessor processor) {
-        processors.put(processor.getHandledType(), processor);
+        register(processor, 0);
+    }
+
+    /**
+     * Register a processor at a position in its type's chain. Lower orders run
+     * first; equal orders run in registration order.
+     * @param processor The processor to register
+     * @param order Position in the chain
+     */
+    public synchronized void register(MessageProcessor processor, int order) {
+        List<Registration> list = registrations.get(processor.getHandledType());
+        if (list == null) {
+            list = new ArrayList<>();
+            registrations.put(processor.getHandledType(), list);
+        }
+        list.add(new Registration(processor, order, nextSequence++));
+        list.sort((a, b) -> a.order != b.order ? Integer.compare(a.order, b.order)
+            : Integer.compare(a.sequence, b.sequence));
+        publish();
     }
-    
+
     /**
-     * Process a message using the appropriate processor
+     * Register a handler method as the processor for a type
+     */
+    public void register(Message.MessageType type, BiConsumer<Message, PeerConnection> handler) {
+        register(new MessageProcessor() {
+            @Override
+            public void process(Message message, PeerConnection connection) {
+                handler.accept(message, connection);
+            }
+
+            @Override
+            public Message.MessageType getHandledType() {
+                return type;
+            }
+        });
+    }
+
+    /**
+     * Mark types as deliberately not handled here, so they are not counted as unhandled
+     */
+    public synchronized void ignore(Message.MessageType... types) {
+        for (Message.MessageType type : types) {
+            if (!registrations.containsKey(type)) {
+                registrations.put(type, new ArrayList<>());
+            }
+        }
+        publish();
+    }
+
+    /**
+     * Add an interceptor; it runs after the ones already added
+     */
+    public synchronized void addInterceptor(MessageInterceptor interceptor) {
+        interceptorList.add(interceptor);
+        interceptors = interceptorList.toArray(new MessageInterceptor[0]);
+    }
+
+    /**
+     * Process a message using the appropriate processors
      * @param message The message to process
      * @param connection The connection the message came from
      */
     public void process(Message message, PeerConnection connection) {
-        MessageProcessor processor = processors.get(message.getType());
-        if (processor != null) {
+        Message.MessageType type = message.getType();
+        MessageProcessor[] chain = chains.get(type);
+        if (chain == null) {
+            unhandled.incrementAndGet(type.ordinal());
+            return;
+        }
+
+        MessageInterceptor[] around = interceptors;
+        for (MessageInterceptor interceptor : around) {
+            if (!interceptor.beforeProcess(message, connection)) {
+                return;
+            }
+        }
+        long started = around.length > 0 ? System.nanoTime() : 0;
+        for (MessageProcessor processor : chain) {
             processor.process(message, connection);
-        } else {
-            System.err.println("No processor found for message type: " + message.getType());
+        }
+        if (around.length > 0) {
+            long elapsed = System.nanoTime() - started;
+            for (MessageInterceptor interceptor : around) {
+                interceptor.afterProcess(message, connection, elapsed);
+            }
         }
     }
-    
+
     /**
      * Check if a processor exists for a message type
      * @param type The message type
      * @return true if processor exists
      */
     public boolean hasProcessor(Message.MessageType type) {
-        return processors.containsKey(type);
+        MessageProcessor[] chain = chains.get(type);
+        return chain != null && chain.length > 0;
     }
-    
+
     /**
-     * Remove a processor
+     * Processors registered for a type, in the order they run
+     */
+    public List<MessageProcessor> getProcessors(Message.MessageType type) {
+        List<MessageProcessor> list = new ArrayList<>();
+        MessageProcessor[] chain = chains.get(type);
+        if (chain != null) {
+            for (MessageProcessor processor : chain) {
+                list.add(processor);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Remove every processor for a message type
      * @param type The message type
      */
-    public void unregister(Message.MessageType type) {
-        processors.remove(type);
+    public synchronized void unregister(Message.MessageType type) {
+        registrations.remove(type);
+        publish();
+    }
+
+    /**
+     * Messages of this type that arrived with no processor registered
+     */
+    public long getUnhandledCount(Message.MessageType type) {
+        return unhandled.get(type.ordinal());
+    }
+
+    /**
+     * Messages of any type that arrived with no processor registered
+     */
+    public long getUnhandledCount() {
+        long total = 0;
+        for (int i = 0; i < TYPES.length; i++) {
+            total += unhandled.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Rebuild the lookup table read by process(); caller holds the lock
+     */
+    private void publish() {
+        EnumMap<Message.MessageType, MessageProcessor[]> table = new EnumMap<>(Message.MessageType.class);
+        for (Map.Entry<Message.MessageType, List<Registration>> entry : registrations.entrySet()) {
+            List<Registration> list = entry.getValue();
+            MessageProcessor[] chain = list.isEmpty() ? NONE : new MessageProcessor[list.size()];
+            for (int i = 0; i < chain.length; i++) {
+                chain[i] = list.get(i).processor;
+            }
+            table.put(entry.getKey(), chain);
+        }
+        chains = table;
+    }
+
+    private static final class Registration {
+        final MessageProcessor processor;
+        final int order;
+        final int sequence;
+
+        Registration(MessageProcessor processor, int order, int sequence) {
+            this.processor = processor;
+            this.order = order;
+            this.sequence = sequence;
+        }
     }
 }
@@ -0,0 +1,22 @@
+package main.processor;
+
+import main.metrics.Metrics;
+import main.model.Message;
+import main.network.PeerConnection;
+
+/**
+ * Records how long the processors for each message type take, so handling cost
+ * shows up per type in Metrics (handler_calls_total / handler_micros_total)
+ */
+public class MetricsInterceptor implements MessageInterceptor {
+    private final Metrics metrics;
+
+    public MetricsInterceptor(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void afterProcess(Message message, PeerConnection connection, long elapsedNanos) {
+        metrics.recordHandled(message.getType(), elapsedNanos);
+    }
+}
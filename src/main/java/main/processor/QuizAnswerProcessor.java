@@ -1,24 +1,29 @@
 package main.processor;
 
+import main.controller.QuizGradingEngine;
+import main.log.Log;
+import main.log.Logger;
 import main.model.Message;
 import main.model.QuizAnswer;
 import main.network.PeerConnection;
 
-import java.util.function.BiConsumer;
-
 /**
  * Processor for QUIZ_ANSWER message type
- * Handles quiz answer submissions from clients
+ * Hands quiz answer submissions to the grading engine and replies with the result
+ * once it is graded (on a grading thread, not the caller's). An answer the engine
+ * refuses (no quiz active, or another quiz) is logged and the student is told.
  */
 public class QuizAnswerProcessor implements MessageProcessor {
-    private final BiConsumer<QuizAnswer, String> answerHandler;
+    private static final Logger LOG = Log.get("QUIZ");
+    private final QuizGradingEngine grading;
     
     /**
      * Constructor
-     * @param answerHandler Callback to handle quiz answer (answer, username)
+     * @param grading Engine that grades against the active quiz; answers are ignored while
+     *                no quiz is active
      */
-    public QuizAnswerProcessor(BiConsumer<QuizAnswer, String> answerHandler) {
-        this.answerHandler = answerHandler;
+    public QuizAnswerProcessor(QuizGradingEngine grading) {
+        this.grading = grading;
     }
     
     @Override
@@ -26,7 +31,19 @@ public class QuizAnswerProcessor implements MessageProcessor {
         QuizAnswer answer = message.getQuizAnswer();
         if (answer != null) {
             String username = message.getSender();
-            answerHandler.accept(answer, username);
+            boolean queued = grading.submit(answer, username, connection == null ? null : result -> {
+                Message resultMsg = new Message("Server", username, "Quiz completed", Message.MessageType.QUIZ_RESULT);
+                resultMsg.setQuizResult(result);
+                connection.sendMessage(resultMsg);
+            });
+            if (!queued) {
+                LOG.warn("Quiz answer not graded", "user", username, "quiz", answer.getQuizId());
+                if (connection != null) {
+                    connection.sendMessage(new Message("Server", username,
+                        "Your answers could not be graded: the quiz is no longer running.",
+                        Message.MessageType.QUIZ_RESULT));
+                }
+            }
         }
     }
     
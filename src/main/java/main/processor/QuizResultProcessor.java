@@ -8,7 +8,8 @@ import java.util.function.Consumer;
 
 /**
  * Processor for QUIZ_RESULT message type
- * Handles quiz result notifications from admin
+ * Handles quiz result notifications from admin; a result message without a result
+ * explains why the answers were not graded
  */
 public class QuizResultProcessor implements MessageProcessor {
     private final Consumer<QuizResult> resultHandler;
@@ -32,6 +33,8 @@ public class QuizResultProcessor implements MessageProcessor {
                 result.getTotalQuestions() + " (" + 
                 String.format("%.1f%%", result.getPercentage()) + ")");
             resultHandler.accept(result);
+        } else if (message.getContent() != null && !message.getContent().isEmpty()) {
+            statusLogger.accept("[QUIZ] " + message.getContent());
         }
     }
     
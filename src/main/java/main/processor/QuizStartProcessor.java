@@ -29,7 +29,7 @@ public class QuizStartProcessor implements MessageProcessor {
         Quiz quiz = message.getQuizData();
         if (quiz != null) {
             statusLogger.accept("[QUIZ] Started: " + quiz.getTitle() + " (" + 
-                quiz.getQuestions().size() + " questions)");
+                quiz.getQuestionCount() + " questions)");
             quizStarter.accept(quiz);
         }
     }
@@ -0,0 +1,52 @@
+package main.processor;
+
+import main.model.Message;
+import main.network.PeerConnection;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Drops messages whose sender field does not match the username the connection
+ * joined with, for the given types. Connections with no known username (not joined
+ * yet, or a cluster link relaying for another node) are let through.
+ */
+public class SenderCheckInterceptor implements MessageInterceptor {
+    private final Set<Message.MessageType> checkedTypes;
+    private final Function<PeerConnection, String> usernameOf;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param usernameOf Username a connection joined with, or null if unknown
+     * @param checkedTypes Types whose sender must match the connection
+     */
+    public SenderCheckInterceptor(Function<PeerConnection, String> usernameOf, Message.MessageType... checkedTypes) {
+        this.usernameOf = usernameOf;
+        this.checkedTypes = EnumSet.noneOf(Message.MessageType.class);
+        for (Message.MessageType type : checkedTypes) {
+            this.checkedTypes.add(type);
+        }
+    }
+
+    @Override
+    public boolean beforeProcess(Message message, PeerConnection connection) {
+        if (connection == null || !checkedTypes.contains(message.getType())) {
+            return true;
+        }
+        String joinedAs = usernameOf.apply(connection);
+        if (joinedAs == null || joinedAs.equals(message.getSender())) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Messages dropped because the sender did not match
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
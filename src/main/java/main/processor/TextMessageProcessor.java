@@ -11,13 +11,23 @@ import java.util.function.Consumer;
  */
 public class TextMessageProcessor implements MessageProcessor {
     private final Consumer<String> chatLogger;
+    private final String currentUsername;
     
-    public TextMessageProcessor(Consumer<String> chatLogger) {
+    /**
+     * Constructor
+     * @param chatLogger Callback to show a chat line
+     * @param currentUsername Current user's username; their own messages are already shown as sent
+     */
+    public TextMessageProcessor(Consumer<String> chatLogger, String currentUsername) {
         this.chatLogger = chatLogger;
+        this.currentUsername = currentUsername;
     }
     
     @Override
     public void process(Message message, PeerConnection connection) {
+        if (message.getSender().equals(currentUsername)) {
+            return;
+        }
         String displayMessage = message.getSender() + ": " + message.getContent();
         chatLogger.accept(displayMessage);
     }
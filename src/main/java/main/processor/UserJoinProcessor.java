@@ -3,28 +3,26 @@ package main.processor;
 import main.model.Message;
 import main.network.PeerConnection;
 
-import java.util.function.Consumer;
+import java.util.function.BiConsumer;
 
 /**
  * Processor for USER_JOIN message type
  * Handles user connection notifications
  */
 public class UserJoinProcessor implements MessageProcessor {
-    private final Consumer<String> statusLogger;
+    private final BiConsumer<String, PeerConnection> joinHandler;
     
     /**
      * Constructor
-     * @param statusLogger Callback to log status messages
+     * @param joinHandler Callback for a user joining (username, connection they joined on)
      */
-    public UserJoinProcessor(Consumer<String> statusLogger) {
-        this.statusLogger = statusLogger;
+    public UserJoinProcessor(BiConsumer<String, PeerConnection> joinHandler) {
+        this.joinHandler = joinHandler;
     }
     
     @Override
     public void process(Message message, PeerConnection connection) {
-        String username = message.getSender();
-        String statusMsg = "[STATUS] " + username + " joined the network";
-        statusLogger.accept(statusMsg);
+        joinHandler.accept(message.getSender(), connection);
     }
     
     @Override
@@ -3,28 +3,26 @@ package main.processor;
 import main.model.Message;
 import main.network.PeerConnection;
 
-import java.util.function.Consumer;
+import java.util.function.BiConsumer;
 
 /**
  * Processor for USER_LEAVE message type
  * Handles user disconnection notifications
  */
 public class UserLeaveProcessor implements MessageProcessor {
-    private final Consumer<String> statusLogger;
+    private final BiConsumer<String, PeerConnection> leaveHandler;
     
     /**
      * Constructor
-     * @param statusLogger Callback to log status messages
+     * @param leaveHandler Callback for a user leaving (username, connection they were on)
      */
-    public UserLeaveProcessor(Consumer<String> statusLogger) {
-        this.statusLogger = statusLogger;
+    public UserLeaveProcessor(BiConsumer<String, PeerConnection> leaveHandler) {
+        this.leaveHandler = leaveHandler;
     }
     
     @Override
     public void process(Message message, PeerConnection connection) {
-        String username = message.getSender();
-        String statusMsg = "[STATUS] " + username + " left the network";
-        statusLogger.accept(statusMsg);
+        leaveHandler.accept(message.getSender(), connection);
     }
     
     @Override
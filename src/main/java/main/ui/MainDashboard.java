@@ -1,5 +1,14 @@
 package main.ui;
 
+import main.controller.LeaderboardIndex;
+import main.controller.LeaderboardManager;
+import main.controller.LeaderboardPublisher;
+import main.controller.QuizGradingEngine;
+import main.controller.QuizResultStore;
+import main.log.Log;
+import main.log.Logger;
+import main.metrics.Metrics;
+import main.metrics.MetricsExporter;
 import main.model.*;
 import main.network.Client;
 import main.network.MessageHandler;
@@ -8,23 +17,27 @@ import main.network.PeerConnection;
 import main.network.Server;
 import main.network.UDPBroadcaster;
 import main.network.UDPReceiver;
+import main.processor.*;
 import main.util.NetworkUtil;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.LineBorder;
 import java.awt.*;
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
 import java.awt.event.ActionListener;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Main Dashboard - Central hub for StudyConnect with Quiz, Broadcast & P2P Chat
  */
 public class MainDashboard extends JFrame implements MessageHandler {
+    private static final Logger LOG = Log.get("DASHBOARD");
+    private static final int SHARED_LEADERBOARD_ROWS = 50; // Rows of the host's board shown to students
+
     private User currentUser;
     private Server server;
     private Client serverClient;  // Client connection to server
@@ -75,6 +88,16 @@ public class MainDashboard extends JFrame implements MessageHandler {
     private JTextArea studentLeaderboardArea; // For students to view shared leaderboard
     private Quiz activeQuiz;
     private Map<String, QuizResult> quizResults;
+    private final LeaderboardIndex leaderboardIndex = new LeaderboardIndex(LeaderboardIndex.BY_TOTAL_SCORE); // Students ranked by points, updated per result
+    private final QuizGradingEngine quizGrading = new QuizGradingEngine(
+        Integer.getInteger("studyconnect.quiz.graders", Runtime.getRuntime().availableProcessors()),
+        this::onQuizGraded); // Grades QUIZ_ANSWERs off the pipeline and the EDT
+    private final AtomicBoolean leaderboardRefreshPending = new AtomicBoolean(); // A redraw is queued on the EDT
+    private final LeaderboardPublisher leaderboardPublisher; // Streams leaderboardIndex to students (admin)
+    private final LeaderboardIndex sharedLeaderboard = new LeaderboardIndex(LeaderboardIndex.BY_TOTAL_SCORE); // Host's board as received (EDT only)
+    private long leaderboardSequence = -1; // Last leaderboard update applied (EDT only); -1 until a snapshot arrives
+    private boolean leaderboardShown; // Switched to the results tab for the current board
+    private volatile QuizResultStore resultStore; // Every graded result, across restarts (admin; opened with the first quiz)
     private NotificationClient notificationClient;
 
     // UI Components
@@ -86,13 +109,17 @@ public class MainDashboard extends JFrame implements MessageHandler {
     private JButton disconnectFromServerButton;
     private JTextField serverIpField;
     private JTextField serverPortField;
+    private JTextField roomField;
+    private String currentRoom; // Room chat and quizzes are scoped to (EDT only); null for everyone
     private JLabel statusLabel;
     private JLabel ipLabel;
     private JTextField portField;
     private int serverPort = 0; // Store the server port for students
     private JList<String> peerList;
     private DefaultListModel<String> peerListModel;
+    private long presenceSequence = -1; // Last presence update applied (EDT only); -1 until a snapshot arrives
     private JTabbedPane tabbedPane;
+    private final MessageProcessorRegistry processors = new MessageProcessorRegistry(); // Dispatch for onMessageReceived
 
     public MainDashboard(User user) {
         this.currentUser = user;
@@ -101,7 +128,8 @@ public class MainDashboard extends JFrame implements MessageHandler {
         this.peerUsernames = new HashMap<>();
         this.connectionUsernames = new HashMap<>();
         this.peerListModel = new DefaultListModel<>();
-        this.quizResults = new HashMap<>();
+        this.quizResults = new ConcurrentHashMap<>(); // Written by the quiz worker, read on the EDT
+        this.leaderboardPublisher = new LeaderboardPublisher(leaderboardIndex, user.getUsername(), this::sendToAllStudents);
         this.p2pChatPanels = new HashMap<>();
         this.p2pInputFields = new HashMap<>();
         this.p2pPeerListModel = new DefaultListModel<>();
@@ -121,6 +149,7 @@ public class MainDashboard extends JFrame implements MessageHandler {
         setVisible(true);
 
         initComponents();
+        registerMessageProcessors();
         setLocationRelativeTo(null);
     }
 
@@ -217,6 +246,8 @@ public class MainDashboard extends JFrame implements MessageHandler {
             portPanel.add(portField);
             portPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
 
+            JPanel roomPanel = createRoomPanel("Send chat and quizzes to one room only (blank for everyone); press Enter to apply");
+
             // Start/Stop server buttons
             startServerButton = new JButton("Start Server");
             startServerButton.setBackground(new Color(52, 168, 83));
@@ -240,6 +271,7 @@ public class MainDashboard extends JFrame implements MessageHandler {
             serverPanel.add(infoLabel);
             serverPanel.add(Box.createVerticalStrut(10));
             serverPanel.add(portPanel);
+            serverPanel.add(roomPanel);
             serverPanel.add(Box.createVerticalStrut(10));
             serverPanel.add(startServerButton);
             serverPanel.add(Box.createVerticalStrut(5));
@@ -278,6 +310,8 @@ public class MainDashboard extends JFrame implements MessageHandler {
             portPanel.add(serverPortField);
             portPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
 
+            JPanel roomPanel = createRoomPanel("Room (e.g. your course section) to join on connect, blank for none; press Enter to switch");
+
             // Connect button
             connectToServerButton = new JButton("Connect to Server");
             connectToServerButton.setBackground(new Color(66, 133, 244));
@@ -336,6 +370,8 @@ public class MainDashboard extends JFrame implements MessageHandler {
                             currentUser.getUsername() + " has joined the chat",
                             Message.MessageType.USER_JOIN);
                         serverClient.sendMessage(greeting);
+                        currentRoom = null;
+                        selectRoom();
                         
                         // Update UI - keep connect button disabled, enable disconnect
                         connectToServerButton.setText("Connected");
@@ -377,6 +413,7 @@ public class MainDashboard extends JFrame implements MessageHandler {
             connectPanel.add(helpLabel);
             connectPanel.add(Box.createVerticalStrut(5));
             connectPanel.add(portPanel);
+            connectPanel.add(roomPanel);
             connectPanel.add(Box.createVerticalStrut(10));
             connectPanel.add(connectToServerButton);
             connectPanel.add(Box.createVerticalStrut(5));
@@ -405,6 +442,46 @@ public class MainDashboard extends JFrame implements MessageHandler {
         return panel;
     }
 
+    /**
+     * "Room:" row of the side panel; Enter applies the room right away
+     */
+    private JPanel createRoomPanel(String tooltip) {
+        JPanel roomPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        roomPanel.setOpaque(false);
+        roomPanel.add(new JLabel("Room:"));
+        roomField = new JTextField("", 8);
+        roomField.setToolTipText(tooltip);
+        roomField.addActionListener(e -> selectRoom());
+        roomPanel.add(roomField);
+        roomPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        return roomPanel;
+    }
+
+    /**
+     * Switch chat and quizzes to the room in the room field: leave the current room
+     * and join the new one on the servers we are connected to. The host only scopes
+     * what it sends, it is not a member of any room.
+     */
+    private void selectRoom() {
+        String room = roomField.getText().trim();
+        if (room.isEmpty()) {
+            room = null;
+        }
+        if (Objects.equals(room, currentRoom)) {
+            return;
+        }
+        for (Client client : connectedPeers) {
+            if (currentRoom != null) {
+                client.leaveRoom(currentRoom);
+            }
+            if (room != null) {
+                client.joinRoom(room);
+            }
+        }
+        currentRoom = room;
+        statusLabel.setText(room != null ? "Status: Room " + room : "Status: No room, chatting with everyone");
+    }
+
     private JPanel createTabbedPanel() {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBackground(Color.WHITE);
@@ -435,6 +512,8 @@ public class MainDashboard extends JFrame implements MessageHandler {
             tabbedPane.addTab("Create Quiz", createQuizCreatorTab());
             // Tab 6: Results Dashboard (admin can see all results)
             tabbedPane.addTab("Results", createLeaderboardTab());
+            // Tab 7: Server metrics (admin only)
+            tabbedPane.addTab("Metrics", createMetricsTab());
         } else {
             // Tab 5: Join Class (students)
             tabbedPane.addTab("Join Class", createJoinClassTab());
@@ -1433,21 +1512,27 @@ public class MainDashboard extends JFrame implements MessageHandler {
             // When quiz is created
             activeQuiz = quiz;
             activeQuiz.start();
+            openResultStore();
+            quizGrading.activate(quiz);
+            quizCreatorPanel.showStatistics(quizGrading.getStatistics());
 
             // Broadcast quiz to all connected peers
             Message quizMsg = new Message(currentUser.getUsername(), "all",
                     "New quiz started: " + quiz.getTitle(), Message.MessageType.QUIZ_START);
             quizMsg.setQuizData(quiz);
+            quizMsg.setRoom(currentRoom);
 
             for (Client client : connectedPeers) {
                 client.sendMessage(quizMsg);
             }
 
             if (server != null && server.isRunning()) {
-                server.broadcast(quizMsg);
+                // Students get a manifest and fetch the questions in pages
+                server.startQuiz(quizMsg);
             }
 
-            appendToBroadcast("[QUIZ] Started: " + quiz.getTitle());
+            appendToBroadcast("[QUIZ] Started: " + quiz.getTitle()
+                + (currentRoom != null ? " in room " + currentRoom : ""));
             // Popup removed - QuizCreatorPanel already shows confirmation
         });
 
@@ -1460,6 +1545,7 @@ public class MainDashboard extends JFrame implements MessageHandler {
             Message resultMsg = new Message(currentUser.getUsername(), "admin",
                     "Quiz completed", Message.MessageType.QUIZ_ANSWER);
             resultMsg.setQuizAnswer(result);
+            resultMsg.setRoom(currentRoom);
 
             // Send to server/clients
             for (Client client : connectedPeers) {
@@ -1474,6 +1560,7 @@ public class MainDashboard extends JFrame implements MessageHandler {
         if (quizParticipationPanel instanceof QuizParticipationPanel) {
             ((QuizParticipationPanel) quizParticipationPanel).username = currentUser.getUsername();
         }
+        quizParticipationPanel.setQuizPageListener(this::requestQuizPage);
 
         return quizParticipationPanel;
     }
@@ -1515,6 +1602,71 @@ public class MainDashboard extends JFrame implements MessageHandler {
         shareButton.addActionListener(e -> shareLeaderboard());
         buttonPanel.add(shareButton);
 
+        // Term report from the results log (admin only)
+        JButton termButton = new JButton("Term Report");
+        termButton.setBackground(new Color(251, 140, 0));
+        termButton.setForeground(Color.WHITE);
+        termButton.setFocusPainted(false);
+        termButton.addActionListener(e -> showTermReport());
+        buttonPanel.add(termButton);
+
+        panel.add(titleLabel, BorderLayout.NORTH);
+        panel.add(scrollPane, BorderLayout.CENTER);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+
+        return panel;
+    }
+
+    private JPanel createMetricsTab() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBackground(Color.WHITE);
+        panel.setBorder(new EmptyBorder(15, 15, 15, 15));
+
+        // Title
+        JLabel titleLabel = new JLabel("Server Metrics");
+        titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 18));
+        titleLabel.setBorder(new EmptyBorder(0, 0, 10, 0));
+
+        // Metrics area
+        JTextArea metricsArea = new JTextArea();
+        metricsArea.setEditable(false);
+        metricsArea.setFont(new Font("Consolas", Font.PLAIN, 12));
+        metricsArea.setText(Metrics.global().render());
+        JScrollPane scrollPane = new JScrollPane(metricsArea);
+
+        // Refresh every 2 seconds while the tab is visible
+        javax.swing.Timer refreshTimer = new javax.swing.Timer(2000, e -> {
+            if (metricsArea.isShowing()) {
+                int caret = metricsArea.getCaretPosition();
+                metricsArea.setText(Metrics.global().render());
+                metricsArea.setCaretPosition(Math.min(caret, metricsArea.getDocument().getLength()));
+            }
+        });
+        refreshTimer.start();
+
+        // Button panel
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 10));
+        buttonPanel.setOpaque(false);
+
+        JButton dumpButton = new JButton("Save to File...");
+        dumpButton.setBackground(new Color(66, 133, 244));
+        dumpButton.setForeground(Color.WHITE);
+        dumpButton.setFocusPainted(false);
+        dumpButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new java.io.File("studyconnect-metrics.prom"));
+            if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+                try {
+                    new MetricsExporter(Metrics.global()).dumpTo(chooser.getSelectedFile().toPath());
+                    statusLabel.setText("Status: Metrics saved to " + chooser.getSelectedFile().getName());
+                } catch (java.io.IOException ex) {
+                    JOptionPane.showMessageDialog(this, "Failed to save metrics: " + ex.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+        buttonPanel.add(dumpButton);
+
         panel.add(titleLabel, BorderLayout.NORTH);
         panel.add(scrollPane, BorderLayout.CENTER);
         panel.add(buttonPanel, BorderLayout.SOUTH);
@@ -1953,6 +2105,7 @@ public class MainDashboard extends JFrame implements MessageHandler {
             }
 
             server = new Server(port, this, currentUser.getUsername());
+            server.setQuizRetiredListener(quizGrading::deactivate);
             server.start();
 
             startServerButton.setEnabled(false);
@@ -2019,6 +2172,8 @@ public class MainDashboard extends JFrame implements MessageHandler {
                         currentUser.getUsername() + " has joined",
                         Message.MessageType.USER_JOIN);
                 client.sendMessage(greeting);
+                currentRoom = null;
+                selectRoom();
 
                 // Update file selector to show server/admin
                 SwingUtilities.invokeLater(() -> {
@@ -2071,6 +2226,7 @@ public class MainDashboard extends JFrame implements MessageHandler {
             // Clear connections
             connectedPeers.clear();
             peerListModel.clear();
+            currentRoom = null; // The server dropped our memberships with the connection
 
             // Clear peer selector
             SwingUtilities.invokeLater(() -> {
@@ -2125,10 +2281,11 @@ public class MainDashboard extends JFrame implements MessageHandler {
         }
 
         Message message = new Message(currentUser.getUsername(), "all", text, Message.MessageType.TEXT);
+        message.setRoom(currentRoom);
         
-        // If we're running a server (admin), broadcast to all server clients
+        // If we're running a server (admin), send to the room's members (or all server clients)
         if (server != null && server.isRunning()) {
-            server.broadcast(message);
+            server.broadcastScoped(message);
         }
         
         // If we're a client connected to a server, send through serverClient
@@ -2170,22 +2327,17 @@ public class MainDashboard extends JFrame implements MessageHandler {
             return;
         }
 
-        // Filter out admin from results and sort by score
-        List<Map.Entry<String, QuizResult>> sortedResults = new ArrayList<>();
-        for (Map.Entry<String, QuizResult> entry : quizResults.entrySet()) {
-            // Exclude admin from leaderboard
-            if (!entry.getKey().equalsIgnoreCase("admin")) {
-                sortedResults.add(entry);
-            }
+        // The index already holds the students (admin excluded) in rank order
+        List<LeaderboardManager.LeaderboardEntry> ranked;
+        synchronized (leaderboardIndex) {
+            ranked = leaderboardIndex.top(leaderboardIndex.size());
         }
 
-        if (sortedResults.isEmpty()) {
+        if (ranked.isEmpty()) {
             leaderboardArea.setText("No quiz results yet.\n\nWait for students to complete the quiz.");
             return;
         }
 
-        sortedResults.sort((a, b) -> Integer.compare(b.getValue().getEarnedPoints(), a.getValue().getEarnedPoints()));
-
         StringBuilder sb = new StringBuilder();
         sb.append("=======================================================\n");
         sb.append("                    === QUIZ LEADERBOARD ===\n");
@@ -2194,9 +2346,12 @@ public class MainDashboard extends JFrame implements MessageHandler {
         sb.append("-------------------------------------------------------\n");
 
         int rank = 1;
-        for (Map.Entry<String, QuizResult> entry : sortedResults) {
-            String username = entry.getKey();
-            QuizResult result = entry.getValue();
+        for (LeaderboardManager.LeaderboardEntry entry : ranked) {
+            String username = entry.getUsername();
+            QuizResult result = quizResults.get(username);
+            if (result == null) {
+                continue;
+            }
 
             String medal = "";
             if (rank == 1)
@@ -2213,13 +2368,25 @@ public class MainDashboard extends JFrame implements MessageHandler {
         }
 
         sb.append("───────────────────────────────────────────────────────\n");
-        sb.append(String.format("\nTotal Participants: %d\n", sortedResults.size()));
+        sb.append(String.format("\nTotal Participants: %d\n", rank - 1));
 
         if (leaderboardArea != null) {
             leaderboardArea.setText(sb.toString());
         }
     }
 
+    /**
+     * Keep a student's latest result for the leaderboard; the admin is not ranked
+     */
+    private void recordQuizResult(String username, QuizResult result) {
+        quizResults.put(username, result);
+        if (!username.equalsIgnoreCase("admin")) {
+            synchronized (leaderboardIndex) {
+                leaderboardIndex.put(username, result);
+            }
+        }
+    }
+
     private void sendP2PMessage() {
         String recipient = (peerSelector.getSelectedItem() != null) ? peerSelector.getSelectedItem().toString() : null;
         if (recipient == null || recipient.equals("Select a peer...")) {
@@ -2259,6 +2426,86 @@ public class MainDashboard extends JFrame implements MessageHandler {
         p2pMessageField.setText("");
     }
 
+    /**
+     * Open the results log the first time a quiz is run (admin)
+     */
+    private void openResultStore() {
+        if (resultStore != null) {
+            return;
+        }
+        String file = System.getProperty("studyconnect.results.file", "quiz_results/results.log");
+        try {
+            resultStore = QuizResultStore.open(java.nio.file.Paths.get(file));
+        } catch (java.io.IOException e) {
+            System.err.println("[Quiz] Results log unavailable, results will not be kept: " + e.getMessage());
+        }
+    }
+
+    private void closeResultStore() {
+        QuizResultStore store = resultStore;
+        resultStore = null;
+        if (store != null) {
+            try {
+                store.close();
+            } catch (java.io.IOException e) {
+                System.err.println("[Quiz] Error closing results log: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Term-long leaderboard and the active quiz's per-question correctness, from the results log
+     */
+    private void showTermReport() {
+        openResultStore();
+        QuizResultStore store = resultStore;
+        if (store == null) {
+            leaderboardArea.setText("Results log unavailable.");
+            return;
+        }
+        String quizId = activeQuiz != null ? activeQuiz.getQuizId() : null;
+        leaderboardArea.setText("Building term report...");
+
+        SwingWorker<String, Void> worker = new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() throws Exception {
+                StringBuilder sb = new StringBuilder();
+                sb.append("=======================================================\n");
+                sb.append("                    === TERM LEADERBOARD ===\n");
+                sb.append("=======================================================\n\n");
+                sb.append(String.format("%-5s %-20s %-10s %-10s %-10s\n",
+                    "Rank", "Username", "Avg Score", "Quizzes", "Total Pts"));
+                sb.append("-------------------------------------------------------\n");
+                int rank = 1;
+                for (LeaderboardManager.LeaderboardEntry entry : store.getTermLeaderboard()) {
+                    sb.append(String.format("%-5d %-20s %-10.1f%% %-10d %-10d\n", rank++, entry.getUsername(),
+                        entry.getAverageScore(), entry.getTotalQuizzes(), entry.getTotalScore()));
+                }
+                sb.append(String.format("\nResults on record: %d\n", store.getResultCount()));
+
+                if (quizId != null) {
+                    double[] rates = store.getQuestionCorrectRates(quizId);
+                    sb.append("\n=== CURRENT QUIZ: CORRECT ANSWERS PER QUESTION ===\n");
+                    for (int q = 0; q < rates.length; q++) {
+                        sb.append(String.format("Q%-4d %5.1f%%\n", q + 1, rates[q] * 100));
+                    }
+                }
+                return sb.toString();
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    leaderboardArea.setText(get());
+                    leaderboardArea.setCaretPosition(0);
+                } catch (Exception e) {
+                    leaderboardArea.setText("Could not build the term report: " + e.getMessage());
+                }
+            }
+        };
+        worker.execute();
+    }
+
     /**
      * Share leaderboard with all students
      */
@@ -2270,24 +2517,8 @@ public class MainDashboard extends JFrame implements MessageHandler {
             return;
         }
 
-        // Get leaderboard text
-        String leaderboardText = leaderboardArea.getText();
-
-        // Broadcast leaderboard to all students
-        Message leaderboardMsg = new Message(
-                "Admin",
-                "all",
-                leaderboardText,
-                Message.MessageType.BROADCAST);
-
-        // Send to all connected peers
-        for (Client client : connectedPeers) {
-            client.sendMessage(leaderboardMsg);
-        }
-
-        if (server != null && server.isRunning()) {
-            server.broadcast(leaderboardMsg);
-        }
+        // Students render the board from the snapshot
+        leaderboardPublisher.publishSnapshot();
 
         appendToBroadcast("[LEADERBOARD] Shared quiz results with all students");
     }
@@ -2762,6 +2993,9 @@ public class MainDashboard extends JFrame implements MessageHandler {
             if (server != null) {
                 server.stop();
             }
+            quizGrading.shutdown();
+            leaderboardPublisher.shutdown();
+            closeResultStore();
 
             for (Client client : connectedPeers) {
                 client.disconnect();
@@ -2828,6 +3062,68 @@ public class MainDashboard extends JFrame implements MessageHandler {
         });
     }
 
+    /**
+     * Apply a presence snapshot or delta to the peer lists and file target selector.
+     * Deltas must follow the last applied sequence; on a gap a fresh snapshot is requested.
+     */
+    private void applyPresenceUpdate(PresenceUpdate update) {
+        boolean isClientMode = !currentUser.getUsername().equalsIgnoreCase("admin") || 
+                              !currentUser.getPassword().equals("admin");
+        
+        if (update.isSnapshot()) {
+            if (isClientMode) {
+                peerListModel.clear();
+                p2pPeerListModel.clear();
+            }
+            if (fileTargetSelector != null) {
+                fileTargetSelector.removeAllItems();
+                fileTargetSelector.addItem("Select recipient...");
+            }
+        } else if (presenceSequence < 0 || update.getSequence() != presenceSequence + 1) {
+            // Missed (or not yet received) part of the stream: resynchronize
+            if (update.getSequence() > presenceSequence && serverClient != null && serverClient.isConnected()) {
+                LOG.debug("Presence gap, requesting snapshot", "after", presenceSequence, "received", update.getSequence());
+                serverClient.sendMessage(new Message(currentUser.getUsername(), "Server", "",
+                        Message.MessageType.PRESENCE_SNAPSHOT));
+            }
+            return;
+        }
+        presenceSequence = update.getSequence();
+        
+        for (PresenceUpdate.Entry entry : update.getEntries()) {
+            String peer = entry.getUsername();
+            if (peer.equals(currentUser.getUsername())) {
+                continue;
+            }
+            switch (entry.getChange()) {
+                case JOINED:
+                    if (isClientMode && !peerListModel.contains(peer)) {
+                        peerListModel.addElement(peer);
+                    }
+                    if (isClientMode && !p2pPeerListModel.contains(peer)) {
+                        p2pPeerListModel.addElement(peer);
+                    }
+                    if (fileTargetSelector != null
+                            && ((DefaultComboBoxModel<String>) fileTargetSelector.getModel()).getIndexOf(peer) < 0) {
+                        fileTargetSelector.addItem(peer);
+                    }
+                    break;
+                case LEFT:
+                    if (isClientMode) {
+                        peerListModel.removeElement(peer);
+                        p2pPeerListModel.removeElement(peer);
+                    }
+                    if (fileTargetSelector != null) {
+                        fileTargetSelector.removeItem(peer);
+                    }
+                    break;
+                default:
+                    // Status changes do not affect the lists
+                    break;
+            }
+        }
+    }
+
     private void updatePeerSelector(PeerConnection connection) {
         SwingUtilities.invokeLater(() -> {
             // Update file target selector
@@ -2899,514 +3195,579 @@ public class MainDashboard extends JFrame implements MessageHandler {
         });
     }
 
+    /**
+     * Wire every message type this dashboard handles into the processor registry.
+     * Handlers run on the connection's reader thread and hop to the EDT for UI work.
+     */
+    private void registerMessageProcessors() {
+        String username = currentUser.getUsername();
+        processors.addInterceptor(new SenderCheckInterceptor(connectionUsernames::get,
+            Message.MessageType.QUIZ_ANSWER));
+        processors.addInterceptor(new MetricsInterceptor(Metrics.global()));
+
+        processors.register(new TextMessageProcessor(this::appendToChat, username));
+        processors.register(new BroadcastMessageProcessor(this::appendToBroadcast, username));
+        processors.register(new PeerToPeerMessageProcessor(this::showP2PMessage));
+        processors.register(Message.MessageType.FILE, (message, connection) -> recordReceivedFile(message));
+        processors.register(new FileMessageProcessor((fileTransfer, sender) -> saveReceivedFile(fileTransfer),
+            this::saveRequestedDownload, this));
+        processors.register(new UserJoinProcessor(this::onUserJoined));
+        processors.register(new UserLeaveProcessor(this::onUserLeft));
+        processors.register(Message.MessageType.CLASS_JOIN, this::onClassJoin);
+        processors.register(Message.MessageType.CLASS_LEAVE, this::onClassLeave);
+        processors.register(Message.MessageType.ROOM_JOIN, (message, connection) ->
+            appendToSystemMessages("[ROOM] " + message.getContent()));
+        processors.register(Message.MessageType.ROOM_LEAVE, (message, connection) ->
+            appendToSystemMessages("[ROOM] " + message.getContent()));
+        processors.register(new PeerListMessageProcessor(this::applyPeerList));
+        processors.register(Message.MessageType.PRESENCE_SNAPSHOT, this::onPresenceMessage);
+        processors.register(Message.MessageType.PRESENCE_DELTA, this::onPresenceMessage);
+        processors.register(Message.MessageType.SERVER_SHUTDOWN, (message, connection) -> onServerShutdown());
+        processors.register(new QuizStartProcessor(this::startReceivedQuiz, this::appendToSystemMessages));
+        processors.register(new QuizAnswerProcessor(quizGrading));
+        processors.register(new QuizResultProcessor(this::onQuizResult, this::appendToSystemMessages));
+        processors.register(Message.MessageType.LEADERBOARD_UPDATE, this::onLeaderboardMessage);
+        processors.register(Message.MessageType.QUIZ_TIME_SYNC, this::onQuizTimeSync);
+        processors.register(Message.MessageType.QUIZ_PAGE, this::onQuizPage);
+        processors.register(Message.MessageType.FILE_LIST_RESPONSE, (message, connection) -> showSharedFiles(message));
+
+        // CLASS_INFO is kept for compatibility; file requests are handled in Server
+        processors.ignore(Message.MessageType.CLASS_INFO, Message.MessageType.FILE_UPLOAD,
+            Message.MessageType.FILE_DOWNLOAD_REQUEST, Message.MessageType.FILE_DELETE_REQUEST);
+
+        Metrics.global().registerGauge("dashboard_messages_unhandled", processors::getUnhandledCount);
+        Metrics.global().registerGauge("quiz_graded", quizGrading::getGradedCount);
+        Metrics.global().registerGauge("quiz_grading_pending", quizGrading::getPendingCount);
+    }
+
     // MessageHandler implementation
     @Override
     public void onMessageReceived(Message message, PeerConnection connection) {
-        switch (message.getType()) {
-            case TEXT:
-                // Don't show our own messages again (we already showed "You: message")
-                if (!message.getSender().equals(currentUser.getUsername())) {
-                    appendToChat(message.getSender() + ": " + message.getContent());
-                }
-                break;
-
-            case BROADCAST:
-                // Don't show our own broadcasts again
-                if (!message.getSender().equals(currentUser.getUsername())) {
-                    String content = message.getContent();
-
-                    System.out.println("[DEBUG BROADCAST] Received from: " + message.getSender());
-                    System.out.println("[DEBUG BROADCAST] Content contains leaderboard: "
-                            + content.contains("=== QUIZ LEADERBOARD ==="));
-                    System.out.println(
-                            "[DEBUG BROADCAST] studentLeaderboardArea null?: " + (studentLeaderboardArea == null));
-
-                    // Check if this is a shared leaderboard (starts with specific markers)
-                    if (content.contains("QUIZ LEADERBOARD") && studentLeaderboardArea != null) {
-                        System.out.println("[DEBUG BROADCAST] Updating student leaderboard!");
-                        // Update student leaderboard tab and switch to it
-                        SwingUtilities.invokeLater(() -> {
-                            studentLeaderboardArea.setText(content);
-                            // Auto-switch to leaderboard tab (index 4 for students: Chat, File, Broadcast,
-                            // Take Quiz, Leaderboard)
-                            tabbedPane.setSelectedIndex(4);
-                            System.out.println("[DEBUG BROADCAST] Leaderboard tab updated and switched!");
-                        });
-                    } else {
-                        System.out.println("[DEBUG BROADCAST] Showing in broadcast tab only");
-                        // Only show in broadcast tab, not in chat
-
-                        LocalTime time = LocalTime.now();
-                        String timestamp = time.format(DateTimeFormatter.ofPattern("hh:mm a"));
-                        String displayMessage = "[" + timestamp + "] Announcement from " + message.getSender() + ": "
-                                + message.getContent();
-                        appendToBroadcast(displayMessage);
-                        appendToBroadcast("--------------------------------------------------"); 
-                    }
-                }
-                break;
-                
-            case PEER_TO_PEER:
-                // P2P message received
-                String p2pSender = message.getSender();
-                String p2pContent = message.getContent();
-                
-                // Check if chat panel exists for this peer, if not create it
-                SwingUtilities.invokeLater(() -> {
-                    if (!p2pChatPanels.containsKey(p2pSender)) {
-                        createP2PChatPanel(p2pSender);
-                    }
-                    
-                    // Add message bubble to the chat panel
-                    JPanel messagesPanel = p2pChatPanels.get(p2pSender);
-                    if (messagesPanel != null) {
-                        addP2PBubble(messagesPanel, p2pSender, p2pContent, false);
-                    }
-                });
-                break;
-                
-            case FILE:
-                // File received
-                FileTransfer fileTransfer = message.getFileTransfer();
-                if (fileTransfer != null) {
-                    String sender = message.getSender();
-                    String fileName = fileTransfer.getFileName();
-                    long fileSize = fileTransfer.getFileData().length;
-                    
-                    appendToFileHistory("[" + getCurrentTime() + "] Received '" + fileName + 
-                        "' from " + sender + " (" + formatFileSize(fileSize) + ")");
-                    
-                    // Check if this is a response to a download request
-                    String savedPath = pendingDownloads.remove(fileName);
-                    if (savedPath != null) {
-                        // Auto-save to pre-selected location (from download request)
-                        SwingUtilities.invokeLater(() -> {
-                            try {
-                                java.nio.file.Files.write(
-                                    java.nio.file.Paths.get(savedPath), 
-                                    fileTransfer.getFileData()
-                                );
-                                uploadStatusLabel.setText("✓ Downloaded: " + fileName);
-                                JOptionPane.showMessageDialog(
-                                    this,
-                                    "File downloaded successfully!\nSaved to: " + savedPath,
-                                    "Download Complete",
-                                    JOptionPane.INFORMATION_MESSAGE
-                                );
-                            } catch (Exception e) {
-                                uploadStatusLabel.setText("✗ Download failed: " + fileName);
-                                JOptionPane.showMessageDialog(
-                                    this,
-                                    "Failed to save file: " + e.getMessage(),
-                                    "Download Error",
-                                    JOptionPane.ERROR_MESSAGE
-                                );
-                            }
-                        });
-                    } else {
-                        // P2P file transfer - show download dialog
-                        SwingUtilities.invokeLater(() -> {
-                            int choice = JOptionPane.showConfirmDialog(this,
-                                "Received file: " + fileName + "\n" +
-                                "From: " + sender + "\n" +
-                                "Size: " + formatFileSize(fileSize) + "\n\n" +
-                                "Do you want to save this file?",
-                                "File Received", 
-                                JOptionPane.YES_NO_OPTION,
-                                JOptionPane.QUESTION_MESSAGE);
-                            
-                            if (choice == JOptionPane.YES_OPTION) {
-                                saveReceivedFile(fileTransfer);
-                            }
-                        });
-                    }
-                }
-                break;
-
-            case USER_JOIN:
-                // Track username for this connection
-                String username = message.getSender();
-                String peerAddr = connection.getPeerAddress();
-                connectionUsernames.put(connection, username);
-                peerUsernames.put(peerAddr, username);
+        processors.process(message, connection);
+    }
+
+    /**
+     * Server clock of the running quiz; with content, the server rejected our answers as late
+     */
+    private void onQuizTimeSync(Message message, PeerConnection connection) {
+        QuizTimeSync sync = message.getQuizTimeSync();
+        if (sync == null) {
+            return;
+        }
+        if (message.getContent() != null && !message.getContent().isEmpty()) {
+            appendToSystemMessages("[QUIZ] " + message.getContent());
+        }
+        if (quizParticipationPanel != null && !isAdmin()) {
+            SwingUtilities.invokeLater(() -> quizParticipationPanel.applyTimeSync(sync));
+        }
+    }
+
+    /**
+     * Questions of the running quiz, fetched by the participation panel
+     */
+    private void onQuizPage(Message message, PeerConnection connection) {
+        QuizPage page = message.getQuizPage();
+        if (page != null && !page.isRequest() && quizParticipationPanel != null && !isAdmin()) {
+            SwingUtilities.invokeLater(() -> quizParticipationPanel.addPage(page));
+        }
+    }
+
+    /**
+     * Ask the server for a page of the running quiz's questions
+     */
+    private void requestQuizPage(String quizId, int pageIndex) {
+        if (serverClient != null && serverClient.isConnected()) {
+            Message request = new Message(currentUser.getUsername(), "Server", "", Message.MessageType.QUIZ_PAGE);
+            request.setQuizPage(QuizPage.request(quizId, pageIndex));
+            serverClient.sendMessage(request);
+        }
+    }
+
+    /**
+     * Leaderboard from the quiz host (students), or a student asking the host for a
+     * snapshot (admin)
+     */
+    private void onLeaderboardMessage(Message message, PeerConnection connection) {
+        LeaderboardUpdate update = message.getLeaderboardUpdate();
+        if (update == null) {
+            if (isAdmin() && connection != null) {
+                connection.sendMessage(leaderboardPublisher.snapshotMessage());
+            }
+            return;
+        }
+        if (studentLeaderboardArea != null) {
+            SwingUtilities.invokeLater(() -> applyLeaderboardUpdate(update));
+        }
+    }
+
+    /**
+     * Apply a leaderboard snapshot or delta in sequence order and redraw (EDT)
+     */
+    private void applyLeaderboardUpdate(LeaderboardUpdate update) {
+        if (update.isSnapshot()) {
+            if (update.getSequence() < leaderboardSequence) {
+                return; // an older snapshot overtaken by updates already applied
+            }
+            sharedLeaderboard.clear();
+        } else if (leaderboardSequence < 0 || update.getSequence() != leaderboardSequence + 1) {
+            // Missed (or not yet received) part of the stream: resynchronize
+            if (update.getSequence() > leaderboardSequence && serverClient != null && serverClient.isConnected()) {
+                serverClient.sendMessage(new Message(currentUser.getUsername(), "admin", "",
+                        Message.MessageType.LEADERBOARD_UPDATE));
+            }
+            return;
+        }
+        leaderboardSequence = update.getSequence();
+
+        for (LeaderboardUpdate.Entry entry : update.getEntries()) {
+            if (entry.isRemoved()) {
+                sharedLeaderboard.remove(entry.getUsername());
+            } else {
+                sharedLeaderboard.put(entry.getUsername(), entry.getPercentage(), entry.getPoints());
+            }
+        }
+        renderSharedLeaderboard();
+    }
+
+    /**
+     * Draw the top of the received board, plus this student's own line if they are further down
+     */
+    private void renderSharedLeaderboard() {
+        if (sharedLeaderboard.size() == 0) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("=======================================================\n");
+        sb.append("                    === QUIZ LEADERBOARD ===\n");
+        sb.append("=======================================================\n\n");
+        sb.append(String.format("%-5s %-20s %-10s %-10s %-10s\n", "Rank", "Player", "Score", "Percent", "Grade"));
+        sb.append("-------------------------------------------------------\n");
+
+        List<LeaderboardManager.LeaderboardEntry> top = sharedLeaderboard.top(SHARED_LEADERBOARD_ROWS);
+        for (int i = 0; i < top.size(); i++) {
+            appendLeaderboardRow(sb, i + 1, top.get(i));
+        }
+        int myRank = sharedLeaderboard.rank(currentUser.getUsername());
+        if (myRank > top.size()) {
+            sb.append("   ...\n");
+            appendLeaderboardRow(sb, myRank, sharedLeaderboard.get(currentUser.getUsername()));
+        }
+
+        sb.append("───────────────────────────────────────────────────────\n");
+        sb.append(String.format("\nTotal Participants: %d\n", sharedLeaderboard.size()));
+
+        studentLeaderboardArea.setText(sb.toString());
+        if (!leaderboardShown) {
+            leaderboardShown = true;
+            // Auto-switch to leaderboard tab (index 4 for students: Chat, File, Broadcast,
+            // Take Quiz, Leaderboard)
+            tabbedPane.setSelectedIndex(4);
+        }
+    }
+
+    private static void appendLeaderboardRow(StringBuilder sb, int rank, LeaderboardManager.LeaderboardEntry entry) {
+        String medal = "";
+        if (rank == 1)
+            medal = "[1st]";
+        else if (rank == 2)
+            medal = "[2nd]";
+        else if (rank == 3)
+            medal = "[3rd]";
+
+        sb.append(String.format("%-5s %-20s %-10d %-10.1f%% %-10s\n",
+                medal + rank, entry.getUsername(), entry.getTotalScore(),
+                entry.getAverageScore(), QuizResult.gradeFor(entry.getAverageScore())));
+    }
+
+    private void showP2PMessage(String p2pSender, String p2pContent) {
+        // Check if chat panel exists for this peer, if not create it
+        SwingUtilities.invokeLater(() -> {
+            if (!p2pChatPanels.containsKey(p2pSender)) {
+                createP2PChatPanel(p2pSender);
+            }
+            
+            // Add message bubble to the chat panel
+            JPanel messagesPanel = p2pChatPanels.get(p2pSender);
+            if (messagesPanel != null) {
+                addP2PBubble(messagesPanel, p2pSender, p2pContent, false);
+            }
+        });
+    }
+
+    private void recordReceivedFile(Message message) {
+        FileTransfer fileTransfer = message.getFileTransfer();
+        if (fileTransfer != null) {
+            appendToFileHistory("[" + getCurrentTime() + "] Received '" + fileTransfer.getFileName() + 
+                "' from " + message.getSender() + " (" + formatFileSize(fileTransfer.getFileData().length) + ")");
+        }
+    }
+
+    /**
+     * Save a file that answers one of our download requests to the location picked
+     * when it was requested
+     * @return false if nobody asked for this file
+     */
+    private boolean saveRequestedDownload(FileTransfer fileTransfer) {
+        String fileName = fileTransfer.getFileName();
+        String savedPath = pendingDownloads.remove(fileName);
+        if (savedPath == null) {
+            return false;
+        }
+        SwingUtilities.invokeLater(() -> {
+            try {
+                java.nio.file.Files.write(
+                    java.nio.file.Paths.get(savedPath), 
+                    fileTransfer.getFileData()
+                );
+                uploadStatusLabel.setText("✓ Downloaded: " + fileName);
+                JOptionPane.showMessageDialog(
+                    this,
+                    "File downloaded successfully!\nSaved to: " + savedPath,
+                    "Download Complete",
+                    JOptionPane.INFORMATION_MESSAGE
+                );
+            } catch (Exception e) {
+                uploadStatusLabel.setText("✗ Download failed: " + fileName);
+                JOptionPane.showMessageDialog(
+                    this,
+                    "Failed to save file: " + e.getMessage(),
+                    "Download Error",
+                    JOptionPane.ERROR_MESSAGE
+                );
+            }
+        });
+        return true;
+    }
+
+    private void onUserJoined(String username, PeerConnection connection) {
+        // Track username for this connection
+        String peerAddr = connection.getPeerAddress();
+        connectionUsernames.put(connection, username);
+        peerUsernames.put(peerAddr, username);
+        
+        // Update admin's peer list in real-time
+        updateAdminPeerList();
+        
+        // Show system message (admin only)
+        if (isAdmin()) {
+            appendToSystemMessages("✅ Client connected: " + username + " (" + peerAddr + ")");
+        }
+
+        // Peer lists are updated from the server's presence updates
+        // (avoid updating selectors here to prevent redundant UI rebuilds)
+    }
+
+    private void onUserLeft(String username, PeerConnection connection) {
+        String leavingUser = connectionUsernames.get(connection);
+        if (leavingUser != null) {
+            String leavingAddr = connection.getPeerAddress();
+            
+            // Remove from connectionUsernames
+            connectionUsernames.remove(connection);
+            
+            // Update admin's peer list in real-time
+            updateAdminPeerList();
+            
+            // Show system message (admin only)
+            if (isAdmin()) {
+                appendToSystemMessages("❌ Client disconnected: " + leavingUser + " (" + leavingAddr + ")");
+            }
+            
+            // Update peer selector
+            updatePeerSelector(connection);
+        }
+    }
+
+    private void onClassJoin(Message message, PeerConnection connection) {
+        // Student wants to join the class - get their UDP port and IP from message
+        if (udpBroadcaster != null && udpBroadcaster.isBroadcasting()) {
+            String clientIP = clientIpOf(message, connection);
+            
+            // Get the client's UDP port from the message
+            int clientUdpPort = message.getUdpPort();
+            
+            if (clientUdpPort > 0) {
+                // Add client to broadcaster with their specific UDP port
+                udpBroadcaster.addClient(clientIP, clientUdpPort);
+                updateClassStudentsList();
                 
-                // Update admin's peer list in real-time
-                updateAdminPeerList();
+                System.out.println("[Screen Sharing] Student " + message.getSender() + 
+                    " joined class from " + clientIP + ":" + clientUdpPort);
+            } else {
+                System.err.println("[Screen Sharing] Invalid UDP port from student: " + message.getSender());
+            }
+        }
+    }
+
+    private void onClassLeave(Message message, PeerConnection connection) {
+        // Student leaves the class - remove them from UDP broadcaster
+        if (udpBroadcaster != null) {
+            String clientIP = clientIpOf(message, connection);
+            
+            // Get the client's UDP port from the message (if provided)
+            int clientUdpPort = message.getUdpPort();
+            
+            if (clientUdpPort > 0) {
+                udpBroadcaster.removeClient(clientIP, clientUdpPort);
+                updateClassStudentsList();
                 
-                // Show system message (admin only)
-                boolean isAdmin = currentUser.getUsername().equalsIgnoreCase("admin") && 
-                                  currentUser.getPassword().equals("admin");
-                if (isAdmin) {
-                    appendToSystemMessages("✅ Client connected: " + username + " (" + peerAddr + ")");
-                }
+                System.out.println("[Screen Sharing] Student " + message.getSender() + 
+                    " left class from " + clientIP + ":" + clientUdpPort);
+            }
+        }
+    }
 
-                // Peer list will be updated via server's PEER_LIST broadcast
-                // (avoid updating selectors here to prevent redundant UI rebuilds)
-                break;
+    /**
+     * The IP a student reported for screen sharing (the client knows its real IP),
+     * falling back to the connection's address
+     */
+    private static String clientIpOf(Message message, PeerConnection connection) {
+        String clientIP = message.getClientIP();
+        if (clientIP == null || clientIP.equals("unknown")) {
+            String peerAddr = connection.getPeerAddress();
+            // Extract IP (might be in format "IP:Port")
+            clientIP = peerAddr.contains(":") ? peerAddr.split(":")[0] : peerAddr;
+        }
+        return clientIP;
+    }
 
-            case USER_LEAVE:
-                String leavingUser = connectionUsernames.get(connection);
-                if (leavingUser != null) {
-                    String leavingAddr = connection.getPeerAddress();
-                    
-                    // Remove from connectionUsernames
-                    connectionUsernames.remove(connection);
-                    
-                    // Update admin's peer list in real-time
-                    updateAdminPeerList();
-                    
-                    // Show system message (admin only)
-                    boolean isAdminLeave = currentUser.getUsername().equalsIgnoreCase("admin") && 
-                                          currentUser.getPassword().equals("admin");
-                    if (isAdminLeave) {
-                        appendToSystemMessages("❌ Client disconnected: " + leavingUser + " (" + leavingAddr + ")");
+    /**
+     * Received list of connected peers from server - update UI for clients
+     */
+    private void applyPeerList(String peerList) {
+        String[] peers = peerList.split(",");
+
+        SwingUtilities.invokeLater(() -> {
+            // Check if client (not admin)
+            boolean isClientMode = !currentUser.getUsername().equalsIgnoreCase("admin") || 
+                                  !currentUser.getPassword().equals("admin");
+            
+            if (isClientMode) {
+                // Build a set of unique peer names (avoid duplicates)
+                java.util.Set<String> uniquePeers = new java.util.LinkedHashSet<>();
+                
+                for (String peer : peers) {
+                    String trimmedPeer = peer.trim();
+                    if (!trimmedPeer.isEmpty() && 
+                        !trimmedPeer.equals(currentUser.getUsername())) {
+                        uniquePeers.add(trimmedPeer);
                     }
-                    
-                    // Update peer selector
-                    updatePeerSelector(connection);
                 }
-                break;
                 
-            case CLASS_JOIN:
-                // Student wants to join the class - get their UDP port and IP from message
-                if (udpBroadcaster != null && udpBroadcaster.isBroadcasting()) {
-                    // Get the client's IP from the message (client knows their real IP)
-                    String clientIP = message.getClientIP();
-                    
-                    // Fallback to connection IP if not provided in message
-                    if (clientIP == null || clientIP.equals("unknown")) {
-                        String joinPeerAddr = connection.getPeerAddress();
-                        // Extract IP (might be in format "IP:Port")
-                        clientIP = joinPeerAddr.contains(":") ? joinPeerAddr.split(":")[0] : joinPeerAddr;
-                    }
-                    
-                    // Get the client's UDP port from the message
-                    int clientUdpPort = message.getUdpPort();
-                    
-                    if (clientUdpPort > 0) {
-                        // Add client to broadcaster with their specific UDP port
-                        udpBroadcaster.addClient(clientIP, clientUdpPort);
-                        updateClassStudentsList();
-                        
-                        System.out.println("[Screen Sharing] Student " + message.getSender() + 
-                            " joined class from " + clientIP + ":" + clientUdpPort);
-                    } else {
-                        System.err.println("[Screen Sharing] Invalid UDP port from student: " + message.getSender());
+                // Only update if the list actually changed
+                boolean needsUpdate = false;
+                if (peerListModel.size() != uniquePeers.size()) {
+                    needsUpdate = true;
+                } else {
+                    // Check if content is different
+                    int i = 0;
+                    for (String peer : uniquePeers) {
+                        if (i >= peerListModel.size() || !peerListModel.get(i).equals(peer)) {
+                            needsUpdate = true;
+                            break;
+                        }
+                        i++;
                     }
                 }
-                break;
                 
-            case CLASS_LEAVE:
-                // Student leaves the class - remove them from UDP broadcaster
-                if (udpBroadcaster != null) {
-                    // Get the client's IP from the message (client knows their real IP)
-                    String clientIP = message.getClientIP();
-                    
-                    // Fallback to connection IP if not provided in message
-                    if (clientIP == null || clientIP.equals("unknown")) {
-                        String leavePeerAddr = connection.getPeerAddress();
-                        // Extract IP (might be in format "IP:Port")
-                        clientIP = leavePeerAddr.contains(":") ? leavePeerAddr.split(":")[0] : leavePeerAddr;
-                    }
-                    
-                    // Get the client's UDP port from the message (if provided)
-                    int clientUdpPort = message.getUdpPort();
-                    
-                    if (clientUdpPort > 0) {
-                        udpBroadcaster.removeClient(clientIP, clientUdpPort);
-                        updateClassStudentsList();
-                        
-                        System.out.println("[Screen Sharing] Student " + message.getSender() + 
-                            " left class from " + clientIP + ":" + clientUdpPort);
+                // Update peer list UI only if changed
+                if (needsUpdate) {
+                    peerListModel.clear();
+                    for (String peer : uniquePeers) {
+                        peerListModel.addElement(peer);
                     }
+                    System.out.println("[DEBUG] Client peer list updated: " + uniquePeers);
                 }
-                break;
-                
-            case CLASS_INFO:
-                // Not used in this implementation - kept for compatibility
-                System.out.println("[Screen Sharing] Received CLASS_INFO message (ignored)");
-                break;
                 
-            case PEER_LIST:
-                // Received list of connected peers from server - update UI for clients
-                String[] peers = message.getContent().split(",");
-
-                SwingUtilities.invokeLater(() -> {
-                    // Check if client (not admin)
-                    boolean isClientMode = !currentUser.getUsername().equalsIgnoreCase("admin") || 
-                                          !currentUser.getPassword().equals("admin");
-                    
-                    if (isClientMode) {
-                        // Build a set of unique peer names (avoid duplicates)
-                        java.util.Set<String> uniquePeers = new java.util.LinkedHashSet<>();
-                        
-                        for (String peer : peers) {
-                            String trimmedPeer = peer.trim();
-                            if (!trimmedPeer.isEmpty() && 
-                                !trimmedPeer.equals(currentUser.getUsername())) {
-                                uniquePeers.add(trimmedPeer);
-                            }
-                        }
-                        
-                        // Only update if the list actually changed
-                        boolean needsUpdate = false;
-                        if (peerListModel.size() != uniquePeers.size()) {
-                            needsUpdate = true;
-                        } else {
-                            // Check if content is different
-                            int i = 0;
-                            for (String peer : uniquePeers) {
-                                if (i >= peerListModel.size() || !peerListModel.get(i).equals(peer)) {
-                                    needsUpdate = true;
-                                    break;
-                                }
-                                i++;
-                            }
-                        }
-                        
-                        // Update peer list UI only if changed
-                        if (needsUpdate) {
-                            peerListModel.clear();
-                            for (String peer : uniquePeers) {
-                                peerListModel.addElement(peer);
-                            }
-                            System.out.println("[DEBUG] Client peer list updated: " + uniquePeers);
-                        }
-                        
-                        // Also update P2P chat peer list
-                        boolean p2pNeedsUpdate = false;
-                        if (p2pPeerListModel.size() != uniquePeers.size()) {
+                // Also update P2P chat peer list
+                boolean p2pNeedsUpdate = false;
+                if (p2pPeerListModel.size() != uniquePeers.size()) {
+                    p2pNeedsUpdate = true;
+                } else {
+                    int i = 0;
+                    for (String peer : uniquePeers) {
+                        if (i >= p2pPeerListModel.size() || !p2pPeerListModel.get(i).equals(peer)) {
                             p2pNeedsUpdate = true;
-                        } else {
-                            int i = 0;
-                            for (String peer : uniquePeers) {
-                                if (i >= p2pPeerListModel.size() || !p2pPeerListModel.get(i).equals(peer)) {
-                                    p2pNeedsUpdate = true;
-                                    break;
-                                }
-                                i++;
-                            }
-                        }
-                        
-                        if (p2pNeedsUpdate) {
-                            p2pPeerListModel.clear();
-                            for (String peer : uniquePeers) {
-                                p2pPeerListModel.addElement(peer);
-                            }
-                        }
-                    }
-                    
-                    // Update file target selector for all users
-                    fileTargetSelector.removeAllItems();
-                    fileTargetSelector.addItem("Select recipient...");
-                    
-                    // Use set to avoid duplicates in dropdown
-                    java.util.Set<String> uniqueTargets = new java.util.LinkedHashSet<>();
-                    for (String peer : peers) {
-                        String trimmedPeer = peer.trim();
-                        if (!trimmedPeer.isEmpty() && 
-                            !trimmedPeer.equals(currentUser.getUsername())) {
-                            uniqueTargets.add(trimmedPeer);
+                            break;
                         }
+                        i++;
                     }
-                    
-                    for (String peer : uniqueTargets) {
-                        fileTargetSelector.addItem(peer);
-                    }
-                });
-                break;
+                }
                 
-            case SERVER_SHUTDOWN:
-                // Server is shutting down - disconnect gracefully
-                SwingUtilities.invokeLater(() -> {
-                    // Close all client connections
-                    for (Client client : connectedPeers) {
-                        try {
-                            client.disconnect();
-                        } catch (Exception e) {
-                            System.err.println("Error disconnecting client: " + e.getMessage());
-                        }
-                    }
-                    
-                    // Clear all connection data
-                    connectedPeers.clear();
-                    peerListModel.clear();
-                    peerConnections.clear();
-                    peerUsernames.clear();
-                    connectionUsernames.clear();
-                    
-                    // Re-enable connect button
-                    if (connectToServerButton != null) {
-                        connectToServerButton.setEnabled(true);
-                        connectToServerButton.setText("Connect to Server");
-                    }
-                    
-                    if (disconnectFromServerButton != null) {
-                        disconnectFromServerButton.setEnabled(false);
+                if (p2pNeedsUpdate) {
+                    p2pPeerListModel.clear();
+                    for (String peer : uniquePeers) {
+                        p2pPeerListModel.addElement(peer);
                     }
-                    
-                    // Update status label
-                    if (statusLabel != null) {
-                        statusLabel.setText("Status: Server shut down");
-                        statusLabel.setForeground(new Color(244, 67, 54));
-                    }
-                    
-                    // Show notification to user
-                    appendToChat("\n--- Server has shut down. You have been disconnected. ---\n");
-                    
-                    JOptionPane.showMessageDialog(this,
-                        "The server has shut down.\nYou have been disconnected.",
-                        "Server Shutdown",
-                        JOptionPane.WARNING_MESSAGE);
-                });
-                break;
+                }
+            }
+            
+            // Update file target selector for all users
+            fileTargetSelector.removeAllItems();
+            fileTargetSelector.addItem("Select recipient...");
+            
+            // Use set to avoid duplicates in dropdown
+            java.util.Set<String> uniqueTargets = new java.util.LinkedHashSet<>();
+            for (String peer : peers) {
+                String trimmedPeer = peer.trim();
+                if (!trimmedPeer.isEmpty() && 
+                    !trimmedPeer.equals(currentUser.getUsername())) {
+                    uniqueTargets.add(trimmedPeer);
+                }
+            }
+            
+            for (String peer : uniqueTargets) {
+                fileTargetSelector.addItem(peer);
+            }
+        });
+    }
 
-            case QUIZ_START:
-                // New quiz started
-                Quiz quiz = message.getQuizData();
+    private void onPresenceMessage(Message message, PeerConnection connection) {
+        // Incremental presence from the server - apply in sequence order on the EDT
+        PresenceUpdate presenceUpdate = message.getPresenceUpdate();
+        if (presenceUpdate != null) {
+            SwingUtilities.invokeLater(() -> applyPresenceUpdate(presenceUpdate));
+        }
+    }
+
+    private void onServerShutdown() {
+        // Server is shutting down - disconnect gracefully
+        SwingUtilities.invokeLater(() -> {
+            // Close all client connections
+            for (Client client : connectedPeers) {
+                try {
+                    client.disconnect();
+                } catch (Exception e) {
+                    System.err.println("Error disconnecting client: " + e.getMessage());
+                }
+            }
+            
+            // Clear all connection data
+            connectedPeers.clear();
+            peerListModel.clear();
+            peerConnections.clear();
+            peerUsernames.clear();
+            connectionUsernames.clear();
+            
+            // Re-enable connect button
+            if (connectToServerButton != null) {
+                connectToServerButton.setEnabled(true);
+                connectToServerButton.setText("Connect to Server");
+            }
+            
+            if (disconnectFromServerButton != null) {
+                disconnectFromServerButton.setEnabled(false);
+            }
+            
+            // Update status label
+            if (statusLabel != null) {
+                statusLabel.setText("Status: Server shut down");
+                statusLabel.setForeground(new Color(244, 67, 54));
+            }
+            
+            // Show notification to user
+            appendToChat("\n--- Server has shut down. You have been disconnected. ---\n");
+            
+            JOptionPane.showMessageDialog(this,
+                "The server has shut down.\nYou have been disconnected.",
+                "Server Shutdown",
+                JOptionPane.WARNING_MESSAGE);
+        });
+    }
 
-                // Check if user is admin - admins should not take quizzes
-                boolean isAdminUser = currentUser.getUsername().equalsIgnoreCase("admin") &&
-                        currentUser.getPassword().equals("admin");
+    private void startReceivedQuiz(Quiz quiz) {
+        // Admins should not take quizzes
+        if (quizParticipationPanel != null && !isAdmin()) {
+            activeQuiz = quiz;
+            quizParticipationPanel.startQuiz(quiz);
+            // Don't show quiz messages in group chat
 
-                if (quiz != null && quizParticipationPanel != null && !isAdminUser) {
-                    activeQuiz = quiz;
-                    quizParticipationPanel.startQuiz(quiz);
-                    // Don't show quiz messages in group chat
+            // Automatically switch to quiz tab for students
+            // "Take Quiz" tab is at index 4 (after Study Chat, P2P Chat, Resources,
+            // Announcements)
+            tabbedPane.setSelectedIndex(4);
+        }
+    }
 
-                    // Automatically switch to quiz tab for students
-                    // "Take Quiz" tab is at index 4 (after Study Chat, P2P Chat, Resources,
-                    // Announcements)
-                    tabbedPane.setSelectedIndex(4);
-                }
-                break;
-
-            case QUIZ_ANSWER:
-                // Quiz answer received (admin side)
-                QuizAnswer answer = message.getQuizAnswer();
-                if (answer != null && activeQuiz != null) {
-                    // Calculate the score based on correct answers
-                    int correctCount = 0;
-                    int totalPoints = 0;
-                    int earnedPoints = 0;
-
-                    List<QuizQuestion> questions = activeQuiz.getQuestions();
-                    for (int i = 0; i < questions.size(); i++) {
-                        QuizQuestion question = questions.get(i);
-                        Integer userAnswer = answer.getAnswers().get(i);
-
-                        totalPoints += question.getPoints();
-
-                        if (userAnswer != null && userAnswer == question.getCorrectAnswer()) {
-                            correctCount++;
-                            earnedPoints += question.getPoints();
-                        }
-                    }
+    /**
+     * A student's answers were graded (admin side, on a grading thread): record the
+     * result and refresh the shared leaderboard. The processor sends the result back
+     * to the student; completions are not shown in group chat.
+     */
+    private void onQuizGraded(QuizResult result) {
+        recordQuizResult(result.getUsername(), result);
+        QuizResultStore store = resultStore;
+        if (store != null) {
+            try {
+                store.append(result);
+            } catch (java.io.IOException e) {
+                System.err.println("[Quiz] Could not record result for " + result.getUsername() + ": " + e.getMessage());
+            }
+        }
+        // Students get the change in the next rate-limited leaderboard update
+        leaderboardPublisher.changed(result.getUsername());
+        if (leaderboardRefreshPending.compareAndSet(false, true)) {
+            // One redraw for however many results arrive before the EDT gets to it
+            SwingUtilities.invokeLater(() -> {
+                leaderboardRefreshPending.set(false);
+                updateLeaderboard();
+            });
+        }
+    }
 
-                    // Create quiz result
-                    QuizResult result = new QuizResult(
-                            activeQuiz.getId(),
-                            message.getSender(),
-                            questions.size(),
-                            correctCount,
-                            totalPoints,
-                            earnedPoints);
-
-                    quizResults.put(message.getSender(), result);
-                    updateLeaderboard();
-
-                    // Automatically broadcast updated leaderboard to all students in real-time
-                    if (leaderboardArea != null) {
-                        String leaderboardText = leaderboardArea.getText();
-                        Message leaderboardMsg = new Message(
-                                currentUser.getUsername(),
-                                "all",
-                                leaderboardText,
-                                Message.MessageType.BROADCAST);
-
-                        // Send to all connected peers
-                        for (Client client : connectedPeers) {
-                            client.sendMessage(leaderboardMsg);
-                        }
+    /**
+     * Send a message to every student: through the hosted server and any servers we are connected to
+     */
+    private void sendToAllStudents(Message message) {
+        for (Client client : connectedPeers) {
+            client.sendMessage(message);
+        }
 
-                        if (server != null && server.isRunning()) {
-                            server.broadcast(leaderboardMsg);
-                        }
-                    }
+        if (server != null && server.isRunning()) {
+            server.broadcast(message);
+        }
+    }
 
-                    // Don't show quiz completion messages in group chat
+    private void onQuizResult(QuizResult myResult) {
+        // Store the result in the local quizResults map (but admin results won't be
+        // shown in leaderboard)
+        recordQuizResult(currentUser.getUsername(), myResult);
 
-                    // Send result back to the client
-                    Message resultMsg = new Message("Server", message.getSender(),
-                            "Quiz completed", Message.MessageType.QUIZ_RESULT);
-                    resultMsg.setQuizResult(result);
-                    connection.sendMessage(resultMsg);
-                }
-                break;
-
-            case QUIZ_RESULT:
-                // Quiz result received
-                QuizResult myResult = message.getQuizResult();
-                if (myResult != null) {
-                    // Store the result in the local quizResults map (but admin results won't be
-                    // shown in leaderboard)
-                    quizResults.put(currentUser.getUsername(), myResult);
-
-                    // Update the leaderboard to show the result (if admin)
-                    if (currentUser.getUsername().equalsIgnoreCase("admin") &&
-                            currentUser.getPassword().equals("admin")) {
-                        updateLeaderboard();
-                    } else {
-                        // For non-admin users, automatically switch to leaderboard tab
-                        // The leaderboard will be updated in real-time via broadcast
-                        // "My Results" tab is at index 5 (after Study Chat, P2P Chat, Resources,
-                        // Announcements, Take Quiz)
-                        SwingUtilities.invokeLater(() -> {
-                            tabbedPane.setSelectedIndex(5);
-                        });
-                    }
+        // Update the leaderboard to show the result (if admin)
+        if (isAdmin()) {
+            updateLeaderboard();
+        } else {
+            // For non-admin users, automatically switch to leaderboard tab
+            // The leaderboard will be updated in real-time via broadcast
+            // "My Results" tab is at index 5 (after Study Chat, P2P Chat, Resources,
+            // Announcements, Take Quiz)
+            SwingUtilities.invokeLater(() -> {
+                tabbedPane.setSelectedIndex(5);
+            });
+        }
+    }
 
-                    // Don't show quiz messages in group chat
-                }
-                break;
-                
-            case FILE_LIST_RESPONSE:
-                // Received list of shared files from server
-                java.util.List<FileMetadata> fileList = message.getFileList();
-                if (fileList != null) {
-                    SwingUtilities.invokeLater(() -> {
-                        sharedFilesListModel.clear();
-                        availableFiles.clear();
-                        for (FileMetadata file : fileList) {
-                            sharedFilesListModel.addElement(file);
-                            availableFiles.add(file);
-                        }
-                        uploadStatusLabel.setText("✓ Found " + fileList.size() + " shared file(s)");
-                        uploadStatusLabel.setForeground(new Color(100, 100, 100));
-                    });
+    private void showSharedFiles(Message message) {
+        // Received list of shared files from server
+        java.util.List<FileMetadata> fileList = message.getFileList();
+        if (fileList != null) {
+            SwingUtilities.invokeLater(() -> {
+                sharedFilesListModel.clear();
+                availableFiles.clear();
+                for (FileMetadata file : fileList) {
+                    sharedFilesListModel.addElement(file);
+                    availableFiles.add(file);
                 }
-                break;
-                
-            case FILE_UPLOAD:
-                // Server received file upload (server-side handling)
-                // This should be handled in Server.java
-                break;
-                
-            case FILE_DOWNLOAD_REQUEST:
-                // Server received download request (server-side handling)
-                // This should be handled in Server.java
-                break;
-                
-            case FILE_DELETE_REQUEST:
-                // Server received delete request (server-side handling)
-                // This should be handled in Server.java
-                break;
-                
-            default:
-                break;
+                uploadStatusLabel.setText("✓ Found " + fileList.size() + " shared file(s)");
+                uploadStatusLabel.setForeground(new Color(100, 100, 100));
+            });
         }
     }
 
+    private boolean isAdmin() {
+        return currentUser.getUsername().equalsIgnoreCase("admin") && currentUser.getPassword().equals("admin");
+    }
+
     @Override
     public void onFileReceived(FileTransfer fileTransfer, PeerConnection connection) {
         SwingUtilities.invokeLater(() -> {
@@ -3465,6 +3826,8 @@ public class MainDashboard extends JFrame implements MessageHandler {
                 // Clear peer lists
                 peerListModel.clear();
                 p2pPeerListModel.clear();
+                presenceSequence = -1;
+                leaderboardSequence = -1;
                 
                 // Notify user
                 appendToChat("\n⚠️ Connection to server lost! Please reconnect.\n");
@@ -1,15 +1,27 @@
 package main.ui;
 
+import main.controller.QuestionBankFile;
+import main.controller.QuizStatistics;
 import main.model.Quiz;
+import main.model.QuizAnswer;
 import main.model.QuizQuestion;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Quiz creator panel for server/host
+ *
+ * Also shows the running quiz's live answer statistics, redrawn at most once a
+ * second (and only when new submissions arrived) while the panel is visible.
+ *
+ * Questions can be imported from and exported to a CSV question bank (see
+ * QuestionBankFile); both run off the EDT, and an import is appended to the
+ * questions already added. A quiz holds at most QuizAnswer.MAX_QUESTIONS
+ * questions, the most an answer can carry; an import stops at that limit.
  */
 public class QuizCreatorPanel extends JPanel {
     private JTextField titleField;
@@ -19,9 +31,15 @@ public class QuizCreatorPanel extends JPanel {
     private List<QuizQuestion> questions;
     private JButton createQuizButton;
     private JButton addQuestionButton;
+    private JButton importButton;
+    private JTextArea statisticsArea;
+    private volatile QuizStatistics statistics;
+    private long shownSubmissions = -1;
     
     private QuizCreatedListener listener;
     
+    private static final int STATISTICS_REFRESH_MS = 1000;
+    
     public interface QuizCreatedListener {
         void onQuizCreated(Quiz quiz);
     }
@@ -71,7 +89,23 @@ public class QuizCreatorPanel extends JPanel {
         scrollPane.setPreferredSize(new Dimension(400, 200));
         centerPanel.add(scrollPane, BorderLayout.CENTER);
         
-        add(centerPanel, BorderLayout.CENTER);
+        // Live statistics of the running quiz
+        JPanel statisticsPanel = new JPanel(new BorderLayout(5, 5));
+        statisticsPanel.add(new JLabel("Live Answers:"), BorderLayout.NORTH);
+        statisticsArea = new JTextArea("No quiz running.");
+        statisticsArea.setEditable(false);
+        statisticsArea.setFont(new Font("Consolas", Font.PLAIN, 12));
+        JScrollPane statisticsScroll = new JScrollPane(statisticsArea);
+        statisticsScroll.setPreferredSize(new Dimension(400, 200));
+        statisticsPanel.add(statisticsScroll, BorderLayout.CENTER);
+
+        JPanel contentPanel = new JPanel(new GridLayout(1, 2, 10, 0));
+        contentPanel.add(centerPanel);
+        contentPanel.add(statisticsPanel);
+        add(contentPanel, BorderLayout.CENTER);
+
+        Timer refreshTimer = new Timer(STATISTICS_REFRESH_MS, e -> refreshStatistics());
+        refreshTimer.start();
         
         // Buttons panel
         JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 10));
@@ -84,6 +118,14 @@ public class QuizCreatorPanel extends JPanel {
         removeQuestionButton.addActionListener(e -> removeSelectedQuestion());
         buttonsPanel.add(removeQuestionButton);
         
+        importButton = new JButton("Import...");
+        importButton.addActionListener(e -> importQuestions());
+        buttonsPanel.add(importButton);
+        
+        JButton exportButton = new JButton("Export...");
+        exportButton.addActionListener(e -> exportQuestions());
+        buttonsPanel.add(exportButton);
+        
         createQuizButton = new JButton("Create & Start Quiz");
         createQuizButton.setBackground(new Color(76, 175, 80));
         createQuizButton.setForeground(Color.WHITE);
@@ -95,6 +137,10 @@ public class QuizCreatorPanel extends JPanel {
     }
     
     private void showAddQuestionDialog() {
+        if (questions.size() >= QuizAnswer.MAX_QUESTIONS) {
+            JOptionPane.showMessageDialog(this, "A quiz can have at most " + QuizAnswer.MAX_QUESTIONS + " questions!");
+            return;
+        }
         JDialog dialog = new JDialog((Frame) SwingUtilities.getWindowAncestor(this), 
                                      "Add Quiz Question", true);
         dialog.setLayout(new BorderLayout(10, 10));
@@ -190,6 +236,118 @@ public class QuizCreatorPanel extends JPanel {
         }
     }
     
+    /**
+     * Append the questions of a question bank file
+     */
+    private void importQuestions() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Import Question Bank (CSV)");
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        importButton.setEnabled(false);
+        List<QuizQuestion> imported = new ArrayList<>();
+        int[] overflow = {0}; // questions past what a quiz can hold are only counted
+        SwingWorker<QuestionBankFile.ImportResult, Void> worker = new SwingWorker<QuestionBankFile.ImportResult, Void>() {
+            @Override
+            protected QuestionBankFile.ImportResult doInBackground() throws Exception {
+                return QuestionBankFile.read(file.toPath(), question -> {
+                    if (imported.size() < QuizAnswer.MAX_QUESTIONS) {
+                        imported.add(question);
+                    } else {
+                        overflow[0]++;
+                    }
+                });
+            }
+            
+            @Override
+            protected void done() {
+                importButton.setEnabled(true);
+                QuestionBankFile.ImportResult result;
+                try {
+                    result = get();
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(QuizCreatorPanel.this, "Import failed: " + cause.getMessage(),
+                        "Import Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                
+                // Fill a fresh model so thousands of rows don't fire an event each on the visible list
+                int room = QuizAnswer.MAX_QUESTIONS - questions.size();
+                int added = Math.max(0, Math.min(room, imported.size()));
+                int leftOut = imported.size() - added + overflow[0];
+                questions.addAll(imported.subList(0, added));
+                DefaultListModel<String> model = new DefaultListModel<>();
+                for (int i = 0; i < questions.size(); i++) {
+                    QuizQuestion q = questions.get(i);
+                    model.addElement(String.format("Q%d: %s (%d pts)", i + 1, q.getQuestion(), q.getPoints()));
+                }
+                questionsModel = model;
+                questionsList.setModel(model);
+                
+                StringBuilder summary = new StringBuilder();
+                summary.append(String.format("Imported %d questions.", added));
+                if (leftOut > 0) {
+                    summary.append(String.format("\n%d more were left out: a quiz can have at most %d questions.",
+                        leftOut, QuizAnswer.MAX_QUESTIONS));
+                }
+                if (result.getRejected() > 0) {
+                    summary.append(String.format("\n%d rows skipped:", result.getRejected()));
+                    for (String error : result.getErrors()) {
+                        summary.append("\n  ").append(error);
+                    }
+                    if (result.getErrors().size() < result.getRejected()) {
+                        summary.append("\n  ...");
+                    }
+                }
+                JOptionPane.showMessageDialog(QuizCreatorPanel.this, summary.toString(), "Import",
+                    result.getRejected() > 0 || leftOut > 0 ? JOptionPane.WARNING_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
+            }
+        };
+        worker.execute();
+    }
+    
+    /**
+     * Save the current questions as a question bank file
+     */
+    private void exportQuestions() {
+        if (questions.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "There are no questions to export!");
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Export Question Bank (CSV)");
+        chooser.setSelectedFile(new File("questions.csv"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        List<QuizQuestion> snapshot = new ArrayList<>(questions);
+        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                QuestionBankFile.write(file.toPath(), snapshot);
+                return null;
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    get();
+                    JOptionPane.showMessageDialog(QuizCreatorPanel.this,
+                        String.format("Exported %d questions to %s", snapshot.size(), file.getName()));
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(QuizCreatorPanel.this, "Export failed: " + cause.getMessage(),
+                        "Export Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        worker.execute();
+    }
+    
     private void createQuiz() {
         String title = titleField.getText().trim();
         if (title.isEmpty()) {
@@ -202,6 +360,11 @@ public class QuizCreatorPanel extends JPanel {
             return;
         }
         
+        if (questions.size() > QuizAnswer.MAX_QUESTIONS) {
+            JOptionPane.showMessageDialog(this, "A quiz can have at most " + QuizAnswer.MAX_QUESTIONS + " questions!");
+            return;
+        }
+        
         int durationMinutes = (Integer) durationSpinner.getValue();
         int durationSeconds = durationMinutes * 60; // Convert minutes to seconds
         Quiz quiz = new Quiz(title, durationSeconds);
@@ -231,6 +394,27 @@ public class QuizCreatorPanel extends JPanel {
             "Quiz Started", JOptionPane.INFORMATION_MESSAGE);
     }
     
+    /**
+     * Show live statistics for this quiz from now on
+     */
+    public void showStatistics(QuizStatistics statistics) {
+        this.statistics = statistics;
+        refreshStatistics();
+    }
+    
+    private void refreshStatistics() {
+        QuizStatistics current = statistics;
+        if (current == null || !statisticsArea.isShowing()) {
+            return;
+        }
+        long submissions = current.getSubmissionCount();
+        if (submissions == shownSubmissions && submissions > 0) {
+            return;
+        }
+        shownSubmissions = submissions;
+        statisticsArea.setText(current.getFormattedStatistics());
+    }
+    
     public void setQuizCreatedListener(QuizCreatedListener listener) {
         this.listener = listener;
     }
@@ -2,16 +2,29 @@ package main.ui;
 
 import main.model.Quiz;
 import main.model.QuizAnswer;
+import main.model.QuizPage;
 import main.model.QuizQuestion;
+import main.model.QuizTimeSync;
 
 import javax.swing.*;
 import java.awt.*;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Quiz participation panel for clients
+ *
+ * The countdown runs on the server's clock once a QUIZ_TIME_SYNC has arrived:
+ * each sync gives the server time, from which the panel keeps the offset to the
+ * local clock, and the deadline. Until then it falls back to the quiz's own timer.
+ *
+ * A quiz that arrives as a manifest is shown a page at a time: pages are fetched
+ * through the QuizPageListener when shown, and the next page is prefetched once
+ * the student answers a question on the current one (so a whole class does not
+ * fetch two pages at the same instant). Answers on every page are kept.
  */
 public class QuizParticipationPanel extends JPanel {
     private Quiz quiz;
@@ -20,13 +33,27 @@ public class QuizParticipationPanel extends JPanel {
     private JButton submitButton;
     private Timer timer;
     private QuizSubmittedListener listener;
+    private QuizPageListener pageListener;
+    private final Map<Integer, JPanel> pagePanels = new HashMap<>(); // loaded pages (EDT only)
+    private final Set<Integer> requestedPages = new HashSet<>();
+    private int currentPage;
+    private JPanel pageHolder;
+    private JLabel pageLabel;
+    private JButton previousButton;
+    private JButton nextButton;
     public String username; // Public so MainDashboard can set it
     private JPanel contentPanel;
+    private long serverOffset; // server clock - local clock, from the last sync
+    private long deadline = -1; // server clock; -1 until the first sync for this quiz
     
     public interface QuizSubmittedListener {
         void onQuizSubmitted(QuizAnswer answer);
     }
     
+    public interface QuizPageListener {
+        void onPageNeeded(String quizId, int pageIndex);
+    }
+    
     public QuizParticipationPanel(QuizSubmittedListener listener) {
         this.listener = listener;
         this.answerGroups = new HashMap<>();
@@ -68,8 +95,12 @@ public class QuizParticipationPanel extends JPanel {
         }
         
         // Clear and reset everything
+        deadline = -1;
         removeAll();
         answerGroups.clear();
+        pagePanels.clear();
+        requestedPages.clear();
+        currentPage = 0;
         
         // Reinitialize with new quiz
         initComponents(username != null ? username : "Guest");
@@ -91,7 +122,7 @@ public class QuizParticipationPanel extends JPanel {
         titleLabel.setHorizontalAlignment(SwingConstants.CENTER);
         headerPanel.add(titleLabel, BorderLayout.NORTH);
         
-        timerLabel = new JLabel("Time Remaining: " + quiz.getRemainingTime() + "s");
+        timerLabel = new JLabel("Time Remaining: " + getRemainingSeconds() + "s");
         timerLabel.setFont(timerLabel.getFont().deriveFont(Font.BOLD, 16f));
         timerLabel.setForeground(new Color(76, 175, 80));
         timerLabel.setHorizontalAlignment(SwingConstants.CENTER);
@@ -99,24 +130,34 @@ public class QuizParticipationPanel extends JPanel {
         
         add(headerPanel, BorderLayout.NORTH);
         
-        // Questions panel
-        JPanel questionsPanel = new JPanel();
-        questionsPanel.setLayout(new BoxLayout(questionsPanel, BoxLayout.Y_AXIS));
-        
-        List<QuizQuestion> questions = quiz.getQuestions();
-        for (int i = 0; i < questions.size(); i++) {
-            QuizQuestion question = questions.get(i);
-            JPanel questionPanel = createQuestionPanel(i, question);
-            questionsPanel.add(questionPanel);
-            questionsPanel.add(Box.createVerticalStrut(15));
+        // Questions panel: the whole quiz, or the current page of a manifest
+        pageHolder = new JPanel(new BorderLayout());
+        if (quiz.isManifest()) {
+            pageHolder.add(new JLabel("Loading questions...", SwingConstants.CENTER), BorderLayout.CENTER);
+        } else {
+            pagePanels.put(0, createPagePanel(0, quiz.getQuestions()));
+            pageHolder.add(pagePanels.get(0), BorderLayout.CENTER);
         }
         
-        JScrollPane scrollPane = new JScrollPane(questionsPanel);
+        JScrollPane scrollPane = new JScrollPane(pageHolder);
         scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
         add(scrollPane, BorderLayout.CENTER);
         
-        // Submit button
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        
+        // Page navigation
+        if (quiz.getPageCount() > 1) {
+            previousButton = new JButton("< Previous");
+            previousButton.addActionListener(e -> showPage(currentPage - 1));
+            buttonPanel.add(previousButton);
+            pageLabel = new JLabel();
+            buttonPanel.add(pageLabel);
+            nextButton = new JButton("Next >");
+            nextButton.addActionListener(e -> showPage(currentPage + 1));
+            buttonPanel.add(nextButton);
+        }
+        
+        // Submit button
         submitButton = new JButton("Submit Quiz");
         submitButton.setBackground(new Color(33, 150, 243));
         submitButton.setForeground(Color.WHITE);
@@ -125,6 +166,66 @@ public class QuizParticipationPanel extends JPanel {
         buttonPanel.add(submitButton);
         
         add(buttonPanel, BorderLayout.SOUTH);
+        
+        if (quiz.isManifest()) {
+            showPage(0);
+        }
+    }
+    
+    /**
+     * Show a page, fetching it if it hasn't arrived yet
+     */
+    private void showPage(int page) {
+        if (page < 0 || page >= quiz.getPageCount()) {
+            return;
+        }
+        currentPage = page;
+        pageHolder.removeAll();
+        JPanel loaded = pagePanels.get(page);
+        if (loaded != null) {
+            pageHolder.add(loaded, BorderLayout.CENTER);
+        } else {
+            pageHolder.add(new JLabel("Loading questions...", SwingConstants.CENTER), BorderLayout.CENTER);
+            requestedPages.remove(page); // the student is waiting for it: ask again
+            requestPage(page);
+        }
+        if (pageLabel != null) {
+            pageLabel.setText(String.format("Page %d of %d", page + 1, quiz.getPageCount()));
+            previousButton.setEnabled(page > 0);
+            nextButton.setEnabled(page + 1 < quiz.getPageCount());
+        }
+        pageHolder.revalidate();
+        pageHolder.repaint();
+    }
+    
+    private void requestPage(int page) {
+        if (quiz.isManifest() && page < quiz.getPageCount() && requestedPages.add(page) && pageListener != null) {
+            pageListener.onPageNeeded(quiz.getQuizId(), page);
+        }
+    }
+    
+    /**
+     * A page of questions arrived from the server
+     */
+    public void addPage(QuizPage page) {
+        if (quiz == null || !quiz.getQuizId().equals(page.getQuizId()) || pagePanels.containsKey(page.getPageIndex())) {
+            return;
+        }
+        pagePanels.put(page.getPageIndex(), createPagePanel(page.getFirstQuestion(), page.getQuestions()));
+        if (page.getPageIndex() == currentPage) {
+            showPage(currentPage);
+        }
+    }
+    
+    private JPanel createPagePanel(int firstQuestion, List<QuizQuestion> questions) {
+        JPanel questionsPanel = new JPanel();
+        questionsPanel.setLayout(new BoxLayout(questionsPanel, BoxLayout.Y_AXIS));
+        for (int i = 0; i < questions.size(); i++) {
+            JPanel questionPanel = createQuestionPanel(firstQuestion + i, questions.get(i));
+            questionsPanel.add(questionPanel);
+            questionsPanel.add(Box.createVerticalStrut(15));
+        }
+        return questionsPanel;
     }
     
     private JPanel createQuestionPanel(int index, QuizQuestion question) {
@@ -154,6 +255,8 @@ public class QuizParticipationPanel extends JPanel {
             );
             radioButton.setActionCommand(String.valueOf(i));
             radioButton.setBackground(Color.WHITE);
+            // Answering on this page: fetch the next one meanwhile
+            radioButton.addActionListener(e -> requestPage(currentPage + 1));
             group.add(radioButton);
             panel.add(radioButton);
             panel.add(Box.createVerticalStrut(5));
@@ -164,7 +267,7 @@ public class QuizParticipationPanel extends JPanel {
     
     private void startTimer() {
         timer = new Timer(1000, e -> {
-            int remaining = quiz.getRemainingTime();
+            int remaining = getRemainingSeconds();
             timerLabel.setText("Time Remaining: " + remaining + "s");
             
             if (remaining <= 10) {
@@ -173,7 +276,7 @@ public class QuizParticipationPanel extends JPanel {
                 timerLabel.setForeground(new Color(255, 152, 0));
             }
             
-            if (quiz.isExpired()) {
+            if (deadline >= 0 ? remaining == 0 : quiz.isExpired()) {
                 timer.stop();
                 JOptionPane.showMessageDialog(this, 
                     "Time's up! Quiz will be auto-submitted.", 
@@ -188,7 +291,7 @@ public class QuizParticipationPanel extends JPanel {
         timer.stop();
         submitButton.setEnabled(false);
         
-        QuizAnswer answer = new QuizAnswer(quiz.getQuizId(), username);
+        QuizAnswer answer = new QuizAnswer(quiz.getQuizId(), username, quiz.getQuestionCount());
         
         for (Map.Entry<Integer, ButtonGroup> entry : answerGroups.entrySet()) {
             int questionIndex = entry.getKey();
@@ -251,6 +354,36 @@ public class QuizParticipationPanel extends JPanel {
         repaint();
     }
     
+    /**
+     * Take the server's clock for the current quiz; a closed quiz is submitted right away
+     */
+    public void applyTimeSync(QuizTimeSync sync) {
+        if (quiz == null || !quiz.getQuizId().equals(sync.getQuizId())) {
+            return;
+        }
+        serverOffset = sync.getServerTime() - System.currentTimeMillis();
+        deadline = sync.getDeadline();
+        if (sync.isClosed() && timer != null && timer.isRunning()) {
+            timer.stop();
+            submitButton.doClick();
+        }
+    }
+    
+    /**
+     * Seconds left on the server's clock, or on the quiz's own before the first sync
+     */
+    private int getRemainingSeconds() {
+        if (deadline < 0) {
+            return quiz.getRemainingTime();
+        }
+        long serverNow = System.currentTimeMillis() + serverOffset;
+        return (int) Math.max(0, (deadline - serverNow + 999) / 1000);
+    }
+    
+    public void setQuizPageListener(QuizPageListener pageListener) {
+        this.pageListener = pageListener;
+    }
+    
     public void setQuizSubmittedListener(QuizSubmittedListener listener) {
         this.listener = listener;
     }
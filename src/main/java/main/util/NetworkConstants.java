@@ -16,7 +16,23 @@ public class NetworkConstants {
     
     // Connection Settings
     public static final int CONNECTION_TIMEOUT = 10000; // 10 seconds
-    public static final int MAX_CONNECTIONS = 50;
+    public static final int MAX_CONNECTIONS = 50; // default active clients (-Dstudyconnect.maxConnections)
+    
+    // Admission Control (login storms)
+    public static final int ACCEPT_BACKLOG = 256; // pending TCP connections the OS may hold
+    public static final int MAX_ADMISSION_QUEUE = 1000; // default clients waiting for a slot (-Dstudyconnect.maxQueued)
+    public static final int CONNECTS_PER_IP_PER_SECOND = 20; // sustained, per remote IP (-Dstudyconnect.connectRate)
+    public static final int CONNECT_BURST_PER_IP = 100; // back-to-back connects per remote IP (-Dstudyconnect.connectBurst)
+    
+    // Message Pipeline (server-side handling off the reader threads)
+    public static final int PIPELINE_QUEUE_CAPACITY = 1024; // messages per shard before readers block (-Dstudyconnect.pipeline.queue)
+    public static final int PIPELINE_FILE_WORKERS = 2; // uploads, downloads, forwarded files (-Dstudyconnect.pipeline.fileWorkers)
+    public static final int PIPELINE_QUIZ_WORKERS = 1; // answer grading (-Dstudyconnect.pipeline.quizWorkers)
+    
+    // Write Coalescing (PeerConnection writer)
+    public static final int WRITE_BATCH_BYTES = 64 * 1024; // flush once a batch reaches this size
+    public static final long INTERACTIVE_LINGER_MICROS = 1000; // max extra wait for chat/quiz frames
+    public static final long BULK_LINGER_MICROS = 2000; // gathering window for file chunks
     
     // IP Service
     public static final String PUBLIC_IP_SERVICE = "https://api.ipify.org";